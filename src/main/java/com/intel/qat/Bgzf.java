@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+/**
+ * Helpers for the BGZF format of the SAM/BAM specification: gzip members of at most 64 KB, each
+ * recording its own size in a 'BC' extra subfield, ending with an empty member as an EOF marker.
+ * Positions are virtual offsets: the offset of a block in the file shifted left by 16 bits, plus
+ * the offset of a byte in the block's uncompressed data.
+ */
+final class Bgzf {
+  /** The largest number of uncompressed bytes in a block, as written by bgzip. */
+  static final int MAX_BLOCK_DATA = 0xFF00;
+
+  /** The largest size of a block. */
+  static final int MAX_BLOCK_SIZE = 0x10000;
+
+  /** The length of a block header: the fixed gzip header, XLEN and the 'BC' subfield. */
+  static final int HEADER_LENGTH = 18;
+
+  /** The empty block that ends a BGZF file. */
+  static final byte[] EOF_MARKER = {
+    0x1f,
+    (byte) 0x8b,
+    8,
+    4,
+    0,
+    0,
+    0,
+    0,
+    0,
+    (byte) 0xff,
+    6,
+    0,
+    'B',
+    'C',
+    2,
+    0,
+    0x1b,
+    0,
+    3,
+    0,
+    0,
+    0,
+    0,
+    0,
+    0,
+    0,
+    0,
+    0
+  };
+
+  private Bgzf() {}
+
+  /**
+   * Rewrites a single gzip member as a BGZF block.
+   *
+   * @param src the array holding the member
+   * @param len the length of the member
+   * @param dst the destination array, which may be <code>src</code>
+   * @param off the offset at which to write the block
+   * @return the block size, or -1 if the data is not a single member or does not fit in a block.
+   */
+  static int fromMember(byte[] src, int len, byte[] dst, int off) {
+    Gzip.Header header = Gzip.Header.parse(src, 0, len);
+    if (header == null) return -1;
+    int payload = len - header.length - Gzip.TRAILER_LENGTH;
+    if (header.destSize >= 0 && header.destSize != payload) return -1;
+    int size = HEADER_LENGTH + payload + Gzip.TRAILER_LENGTH;
+    if (size > MAX_BLOCK_SIZE || dst.length - off < size) return -1;
+    // The payload moves first, as the new header may overlap it when rewriting in place.
+    System.arraycopy(src, header.length, dst, off + HEADER_LENGTH, payload + Gzip.TRAILER_LENGTH);
+    System.arraycopy(EOF_MARKER, 0, dst, off, 16);
+    Gzip.writeShort(dst, off + 16, size - 1);
+    return size;
+  }
+
+  /**
+   * Returns the size of the block whose header is at the given offset.
+   *
+   * @return the block size, or -1 if the header is not complete yet.
+   * @throws QatException if the bytes are not a BGZF block header.
+   */
+  static int blockSize(byte[] b, int off, int len) {
+    Gzip.Header header = Gzip.Header.parse(b, off, len);
+    if (header == null) return -1;
+    int bc = header.findSubfield(b, off, 'B', 'C');
+    if (bc < 0 || Gzip.readShort(b, off + bc - 2) != 2)
+      throw new QatException("QZ_DATA_ERROR: Input is not in BGZF format.");
+    return Gzip.readShort(b, off + bc) + 1;
+  }
+
+  static long virtualOffset(long blockAddress, int offset) {
+    return blockAddress << 16 | offset;
+  }
+}
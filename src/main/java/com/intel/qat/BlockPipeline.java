@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.Future;
+
+/**
+ * Splits data written to it into fixed-size blocks, compresses them concurrently on a {@link
+ * SessionPool}, and writes the results to an output stream in order. Once the given number of
+ * blocks are queued or being compressed, writes wait for the oldest block to be written. This is
+ * the pipeline of {@link ParallelQatCompressorOutputStream} and {@link QatBgzfOutputStream}, which
+ * differ only in how a block is compressed.
+ */
+final class BlockPipeline {
+  private final ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+  private final ArrayDeque<Block> freeBlocks = new ArrayDeque<>();
+  private final OutputStream out;
+  private final SessionPool pool;
+  private final Compressor compressor;
+  private final int blockSize;
+  private final int maxCompressedLength;
+  private final int maxInFlight;
+  private Block block;
+
+  /** The number of compressed bytes written to the output stream. */
+  private long position;
+
+  private Throwable failure;
+  private boolean closed;
+
+  /** Compresses a block with a session taken from the pool. */
+  interface Compressor {
+    /**
+     * Compresses the first bytes of a block's input into its output, which has room for {@link
+     * SessionPool#maxCompressedLength} of the block size.
+     *
+     * @return the compressed length.
+     */
+    int compress(QatZipper qzip, byte[] input, int length, byte[] output);
+  }
+
+  /**
+   * Creates a pipeline that takes ownership of the given pool, and ends its sessions when closed.
+   */
+  BlockPipeline(
+      OutputStream out, SessionPool pool, int blockSize, int maxInFlight, Compressor compressor) {
+    this.out = out;
+    this.pool = pool;
+    this.compressor = compressor;
+    this.blockSize = blockSize;
+    this.maxCompressedLength = pool.maxCompressedLength(blockSize);
+    this.maxInFlight = maxInFlight;
+    block = new Block(blockSize, maxCompressedLength);
+  }
+
+  void write(int b) throws IOException {
+    ensureOpen();
+    if (block.length == blockSize) emitBlock();
+    block.input[block.length++] = (byte) b;
+  }
+
+  void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    Objects.requireNonNull(b);
+    if (off < 0 || len < 0 || off + len > b.length) throw new IndexOutOfBoundsException();
+
+    while (len > 0) {
+      if (block.length == blockSize) emitBlock();
+      int n = Math.min(len, blockSize - block.length);
+      System.arraycopy(b, off, block.input, block.length, n);
+      block.length += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Compresses all buffered data, and waits for every pending block to be written to the output
+   * stream.
+   */
+  void writeAll() throws IOException {
+    ensureOpen();
+    if (block.length > 0) emitBlock();
+    while (!pending.isEmpty()) writeNextBlock();
+  }
+
+  /**
+   * Waits for every pending block, and the buffered data if it fills a block, to be written to the
+   * output stream, so that {@link #position()} and {@link #buffered()} locate the next byte.
+   */
+  void writeFullBlocks() throws IOException {
+    ensureOpen();
+    if (block.length == blockSize) emitBlock();
+    while (!pending.isEmpty()) writeNextBlock();
+  }
+
+  /** Returns the number of compressed bytes written to the output stream. */
+  long position() {
+    return position;
+  }
+
+  /** Returns the number of bytes buffered for the next block. */
+  int buffered() {
+    return block.length;
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Discards the blocks not yet written, waits for the sessions to finish, and ends them. The
+   * output stream is left open.
+   */
+  void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    for (Future<Block> f : pending) f.cancel(false);
+    pending.clear();
+    try {
+      pool.close();
+    } finally {
+      block = null;
+      freeBlocks.clear();
+    }
+  }
+
+  void ensureOpen() throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+    // A block is missing from the output, so nothing more may be written.
+    if (failure != null) throw new IOException("A previous block could not be written.", failure);
+  }
+
+  /** Hands the current block to a session, writing out the oldest blocks while too many wait. */
+  private void emitBlock() throws IOException {
+    Block full = block;
+    pending.add(
+        pool.submit(
+            qzip -> {
+              full.compressedLength =
+                  compressor.compress(qzip, full.input, full.length, full.output);
+              return full;
+            }));
+    while (pending.size() >= maxInFlight) writeNextBlock();
+    block = freeBlocks.isEmpty() ? new Block(blockSize, maxCompressedLength) : freeBlocks.pop();
+  }
+
+  /** Waits for the oldest pending block and writes it to the output stream. */
+  private void writeNextBlock() throws IOException {
+    Block b;
+    try {
+      b = SessionPool.get(pending.peek());
+    } catch (InterruptedIOException e) {
+      throw e;
+    } catch (IOException | RuntimeException | Error e) {
+      failure = e;
+      throw e;
+    }
+    pending.remove();
+    try {
+      out.write(b.output, 0, b.compressedLength);
+    } catch (IOException e) {
+      failure = e;
+      throw e;
+    }
+    position += b.compressedLength;
+    b.length = 0;
+    freeBlocks.push(b);
+  }
+
+  /** An input block and the compressed data it produced. */
+  private static final class Block {
+    final byte[] input;
+    final byte[] output;
+    int length;
+    int compressedLength;
+
+    Block(int inputSize, int outputSize) {
+      input = new byte[inputSize];
+      output = new byte[outputSize];
+    }
+  }
+}
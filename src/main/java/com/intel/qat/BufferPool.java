@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * A process-wide pool of direct buffers, keyed by capacity. Allocating and freeing direct memory is
+ * expensive, so streams return their buffers here on close for the next stream to reuse.
+ */
+final class BufferPool {
+  /** The maximum number of idle buffers kept for each capacity. */
+  private static final int MAX_IDLE_BUFFERS = 16;
+
+  private static final ConcurrentHashMap<Integer, ConcurrentLinkedDeque<ByteBuffer>> idle =
+      new ConcurrentHashMap<>();
+
+  private BufferPool() {}
+
+  /**
+   * Returns a cleared direct buffer with exactly the given capacity.
+   *
+   * @param capacity the capacity of the buffer
+   * @return a pooled or newly allocated direct buffer.
+   */
+  static ByteBuffer acquire(int capacity) {
+    ConcurrentLinkedDeque<ByteBuffer> buffers = idle.get(capacity);
+    ByteBuffer buffer = buffers == null ? null : buffers.pollFirst();
+    if (buffer == null) return ByteBuffer.allocateDirect(capacity);
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Returns a buffer obtained from {@link #acquire} to the pool. The caller must not use it again.
+   *
+   * @param buffer the buffer
+   */
+  static void release(ByteBuffer buffer) {
+    ConcurrentLinkedDeque<ByteBuffer> buffers =
+        idle.computeIfAbsent(buffer.capacity(), k -> new ConcurrentLinkedDeque<>());
+    if (buffers.size() < MAX_IDLE_BUFFERS) buffers.offerFirst(buffer);
+  }
+}
@@ -0,0 +1,369 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Splits the lines of a compressed file at runs of whole members, for {@link QatFiles#lines}.
+ *
+ * <p>Each spliterator covers a range of runs and decompresses them with its own session. As in
+ * Hadoop's line reader, a spliterator that does not start at the beginning of the file skips the
+ * line in progress at its start, and every spliterator reads on past the end of its range to finish
+ * a line that starts there. Lines are found by their '\n' and '\r' bytes, so only charsets in which
+ * those bytes always encode line terminators are split, as for {@link Files#lines}.
+ */
+final class CompressedLineSpliterator implements Spliterator<String> {
+  private final Source source;
+  private int from;
+  private int to;
+  private Segment segment;
+  private boolean done;
+
+  private CompressedLineSpliterator(Source source, int from, int to) {
+    this.source = source;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Opens a stream of the lines of a compressed file, which must be closed to release its sessions
+   * and the file.
+   */
+  static Stream<String> lines(Path path, Charset charset, Algorithm algorithm, Mode mode)
+      throws IOException {
+    Objects.requireNonNull(path);
+    Objects.requireNonNull(charset);
+    if (!charset.equals(StandardCharsets.UTF_8)
+        && !charset.equals(StandardCharsets.ISO_8859_1)
+        && !charset.equals(StandardCharsets.US_ASCII)) {
+      BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(
+                  new QatDecompressorInputStream(
+                      Files.newInputStream(path), QatZipper.MIN_BLOCK_SIZE, algorithm, mode),
+                  charset.newDecoder()));
+      return reader
+          .lines()
+          .onClose(
+              () -> {
+                try {
+                  reader.close();
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+    }
+    Source source = new Source(path, charset, algorithm, mode);
+    return StreamSupport.stream(new CompressedLineSpliterator(source, 0, source.count()), false)
+        .onClose(source::close);
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super String> action) {
+    Objects.requireNonNull(action);
+    if (done) return false;
+    String line;
+    try {
+      if (segment == null) segment = source.open(from, to);
+      line = segment.readLine();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (line == null) {
+      done = true;
+      source.close(segment);
+      return false;
+    }
+    action.accept(line);
+    return true;
+  }
+
+  @Override
+  public Spliterator<String> trySplit() {
+    if (segment != null || to - from < 2) return null;
+    int mid = (from + to) >>> 1;
+    Spliterator<String> prefix = new CompressedLineSpliterator(source, from, mid);
+    from = mid;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return source.size(from, to);
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+  /** A compressed file and its runs of whole members, shared by the spliterators of a stream. */
+  private static final class Source {
+    final FileChannel in;
+    final Charset charset;
+    final Algorithm algorithm;
+    final Mode mode;
+
+    /** The compressed offset of each run, and of the end of the last. */
+    final long[] starts;
+
+    /** The uncompressed offset of each run, and of the end of the last. */
+    final long[] offsets;
+
+    /** Whether the last run is the rest of the file, which cannot be split. */
+    final boolean tail;
+
+    final Set<Segment> segments = ConcurrentHashMap.newKeySet();
+
+    Source(Path path, Charset charset, Algorithm algorithm, Mode mode) throws IOException {
+      this.charset = charset;
+      this.algorithm = algorithm;
+      this.mode = mode;
+      in = FileChannel.open(path, StandardOpenOption.READ);
+      try {
+        long size = in.size();
+        int targetSize = QatZipper.defaultBlockSize(algorithm, mode);
+        List<long[]> runs = new ArrayList<>();
+        long off = 0;
+        long out = 0;
+        int[] unit;
+        while ((unit = QatFiles.nextUnit(in, off, size, algorithm, targetSize)) != null) {
+          runs.add(new long[] {off, out});
+          off += unit[0];
+          out += unit[1];
+        }
+        tail = off < size;
+        if (tail) runs.add(new long[] {off, out});
+        starts = new long[runs.size() + 1];
+        offsets = new long[runs.size() + 1];
+        for (int i = 0; i < runs.size(); i++) {
+          starts[i] = runs.get(i)[0];
+          offsets[i] = runs.get(i)[1];
+        }
+        starts[runs.size()] = size;
+        offsets[runs.size()] = tail ? Long.MAX_VALUE : out;
+      } catch (IOException | RuntimeException e) {
+        in.close();
+        throw e;
+      }
+    }
+
+    int count() {
+      return starts.length - 1;
+    }
+
+    long size(int from, int to) {
+      return offsets[to] == Long.MAX_VALUE ? Long.MAX_VALUE : offsets[to] - offsets[from];
+    }
+
+    Segment open(int from, int to) {
+      Segment segment = new Segment(this, from, offsets[to]);
+      segments.add(segment);
+      return segment;
+    }
+
+    void close(Segment segment) {
+      if (segments.remove(segment)) segment.close();
+    }
+
+    void close() {
+      try {
+        for (Segment segment : segments) close(segment);
+      } finally {
+        try {
+          in.close();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+
+  /** Reads the lines that start in a range of runs, decompressing runs in order. */
+  private static final class Segment {
+    private final Source source;
+    private final long end;
+    private int run;
+    private QatZipper qzip;
+    private InputStream tail;
+    private final CharsetDecoder decoder;
+
+    private byte[] buf = new byte[0];
+    private int pos;
+    private int limit;
+
+    /** The uncompressed offset of the byte at pos. */
+    private long position;
+
+    private byte[] line = new byte[256];
+    private boolean skipFirst;
+
+    Segment(Source source, int from, long end) {
+      this.source = source;
+      this.end = end;
+      this.run = from;
+      this.position = source.offsets[from];
+      this.skipFirst = from > 0;
+      this.decoder = source.charset.newDecoder();
+    }
+
+    /** Returns the next line that starts in the range, or null if there is none. */
+    String readLine() throws IOException {
+      if (skipFirst) {
+        skipFirst = false;
+        if (readLine(false) < 0) return null;
+      }
+      if (position > end) return null;
+      int len = readLine(true);
+      if (len < 0) return null;
+      try {
+        return decoder.decode(ByteBuffer.wrap(line, 0, len)).toString();
+      } catch (CharacterCodingException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Reads up to and past the next line terminator, keeping the bytes before it if asked.
+     *
+     * @return the length of the line, or -1 if the data ends before the line starts.
+     */
+    private int readLine(boolean keep) throws IOException {
+      int len = 0;
+      boolean started = false;
+      while (pos < limit || fill()) {
+        started = true;
+        int i = pos;
+        while (i < limit && buf[i] != '\n' && buf[i] != '\r') i++;
+        if (keep) {
+          if (line.length - len < i - pos)
+            line = Arrays.copyOf(line, Math.max(2 * line.length, len + i - pos));
+          System.arraycopy(buf, pos, line, len, i - pos);
+          len += i - pos;
+        }
+        position += i - pos;
+        pos = i;
+        if (i < limit) {
+          byte terminator = buf[pos++];
+          position++;
+          if (terminator == '\r' && (pos < limit || fill()) && buf[pos] == '\n') {
+            pos++;
+            position++;
+          }
+          return len;
+        }
+      }
+      return started ? len : -1;
+    }
+
+    /** Decompresses the next run, returning false at the end of the file. */
+    private boolean fill() throws IOException {
+      while (true) {
+        if (tail != null) {
+          int n = tail.read(buf, 0, buf.length);
+          if (n < 0) return false;
+          pos = 0;
+          limit = n;
+          if (n > 0) return true;
+          continue;
+        }
+        if (run >= source.count()) return false;
+        int r = run++;
+        long start = source.starts[r];
+        int len = (int) (source.starts[r + 1] - start);
+        if (source.tail && r == source.count() - 1) {
+          tail =
+              new QatDecompressorInputStream(
+                  new PositionalInputStream(source.in, start),
+                  QatZipper.MIN_BLOCK_SIZE,
+                  source.algorithm,
+                  source.mode);
+          if (buf.length < QatZipper.MIN_BLOCK_SIZE) buf = new byte[QatZipper.MIN_BLOCK_SIZE];
+          continue;
+        }
+        int n = (int) (source.offsets[r + 1] - source.offsets[r]);
+        if (n == 0) continue;
+        if (qzip == null) qzip = new QatZipper(source.algorithm, source.mode);
+        if (buf.length < n + 1) buf = new byte[n + 1];
+        QatFiles.decompressRun(qzip, source.in, start, len, ByteBuffer.wrap(buf), n);
+        pos = 0;
+        limit = n;
+        return true;
+      }
+    }
+
+    void close() {
+      try {
+        if (qzip != null) qzip.end();
+        if (tail != null) tail.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        qzip = null;
+        tail = null;
+      }
+    }
+  }
+
+  /** Reads a file from an offset with positional reads, leaving the channel's position alone. */
+  private static final class PositionalInputStream extends InputStream {
+    private final FileChannel in;
+    private long position;
+
+    PositionalInputStream(FileChannel in, long position) {
+      this.in = in;
+      this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, b.length);
+      if (len == 0) return 0;
+      int n = in.read(ByteBuffer.wrap(b, off, len), position);
+      if (n > 0) position += n;
+      return n;
+    }
+
+    @Override
+    public void close() {
+      // The channel is shared, and is closed with the stream of lines.
+    }
+  }
+}
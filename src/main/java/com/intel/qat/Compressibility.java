@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Cheap estimates of how well data compresses, made from a sample of its bytes without compressing
+ * it.
+ *
+ * <p>The sample is a few evenly spaced slices of the data. A greedy parse of each slice finds
+ * repeated 4-byte sequences, as deflate and LZ4 do, both within the slice and in a sparse index of
+ * the window that precedes it, and extends each to its full length. The predicted size charges
+ * every match a fixed number of bytes, and every literal either a byte (LZ4) or the order-0 entropy
+ * of the literals (deflate, whose Huffman coding gets close to it).
+ */
+final class Compressibility {
+  /** The number of evenly spaced slices taken from the data. */
+  private static final int SLICES = 8;
+
+  /** The length of each slice. */
+  private static final int SLICE_LENGTH = 1024;
+
+  /** The least number of bytes for which {@link #looksIncompressible} takes a sample. */
+  static final int MIN_LENGTH = 4096;
+
+  /**
+   * The predicted compressed size, as a fraction of the input, from which data is taken to be
+   * compressed or encrypted.
+   */
+  private static final double INCOMPRESSIBLE_RATIO = 0.97;
+
+  private static final int MIN_MATCH = 4;
+  private static final int HASH_LOG = 14;
+
+  /** The spacing of the positions indexed in the window before each slice. */
+  private static final int WINDOW_STEP = 8;
+
+  /** The bytes charged for a match: a length and a distance code, or a token and an offset. */
+  private static final double DEFLATE_MATCH_COST = 2;
+
+  private static final double LZ4_MATCH_COST = 3;
+
+  /** The framing charged for every 64 KB of input: a gzip-ext member or an LZ4 frame. */
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private static final int DEFLATE_CHUNK_OVERHEAD = Gzip.EXT_HEADER_LENGTH + Gzip.TRAILER_LENGTH;
+  private static final int LZ4_CHUNK_OVERHEAD = Lz4.FRAME_OVERHEAD;
+
+  private Compressibility() {}
+
+  /**
+   * Returns true if a sample of the buffer's remaining bytes looks like compressed or encrypted
+   * data. Inputs shorter than {@link #MIN_LENGTH} are never taken to be incompressible. The
+   * buffer's position and limit are not changed.
+   */
+  static boolean looksIncompressible(ByteBuffer src, Algorithm algorithm) {
+    int len = src.remaining();
+    return len >= MIN_LENGTH && predict(src, algorithm) >= INCOMPRESSIBLE_RATIO * len;
+  }
+
+  /**
+   * Predicts the compressed size of the buffer's remaining bytes. The buffer's position and limit
+   * are not changed.
+   *
+   * @return the predicted size in bytes, framing included.
+   */
+  static long predict(ByteBuffer src, Algorithm algorithm) {
+    int start = src.position();
+    int len = src.remaining();
+    int slices = len <= SLICES * SLICE_LENGTH ? 1 : SLICES;
+    int sliceLength = slices == 1 ? len : SLICE_LENGTH;
+    // The slices end at the end of the data and start no earlier than one stride in, so that each
+    // has a history to match against, as the bytes of a long input mostly do.
+    long stride = slices == 1 ? 0 : (len - sliceLength) / slices;
+    int window = algorithm == Algorithm.DEFLATE ? 32 * 1024 : 64 * 1024 - 1;
+
+    int[] table = new int[1 << HASH_LOG];
+    int[] literals = new int[256];
+    int literalCount = 0;
+    int matches = 0;
+    for (int s = 0; s < slices; s++) {
+      Arrays.fill(table, -1);
+      int p = start + (int) ((s + (slices == 1 ? 0 : 1)) * stride);
+      int end = p + sliceLength;
+      // Index every WINDOW_STEP-th position of the window before the slice, which finds any
+      // repeat from there that runs for WINDOW_STEP + MIN_MATCH bytes or more.
+      for (int q = Math.max(start, p - window); q < p; q += WINDOW_STEP)
+        table[hash(src.getInt(q))] = q;
+      while (p < end) {
+        if (end - p >= MIN_MATCH) {
+          int seq = src.getInt(p);
+          int h = hash(seq);
+          int ref = table[h];
+          table[h] = p;
+          if (ref >= 0 && src.getInt(ref) == seq) {
+            int matchLen = MIN_MATCH;
+            while (p + matchLen < end && src.get(ref + matchLen) == src.get(p + matchLen))
+              matchLen++;
+            matches++;
+            p += matchLen;
+            continue;
+          }
+        }
+        literals[src.get(p) & 0xFF]++;
+        literalCount++;
+        p++;
+      }
+    }
+
+    double sampleSize;
+    if (algorithm == Algorithm.DEFLATE) {
+      double literalBits = literalCount == 0 ? 0 : entropy(literals, literalCount);
+      sampleSize = literalCount * literalBits / 8 + matches * DEFLATE_MATCH_COST;
+    } else {
+      sampleSize = literalCount + matches * LZ4_MATCH_COST;
+    }
+    long chunks = Math.max(1, (len + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    int overhead = algorithm == Algorithm.DEFLATE ? DEFLATE_CHUNK_OVERHEAD : LZ4_CHUNK_OVERHEAD;
+    return (long) Math.ceil(sampleSize * len / ((long) slices * sliceLength)) + chunks * overhead;
+  }
+
+  private static int hash(int seq) {
+    return (seq * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  /**
+   * Returns the order-0 entropy of a histogram in bits per symbol, with the Miller-Madow correction
+   * for the bias of small samples.
+   */
+  static double entropy(int[] histogram, int total) {
+    double sum = 0;
+    int symbols = 0;
+    for (int count : histogram) {
+      if (count == 0) continue;
+      symbols++;
+      sum += count * Math.log(count);
+    }
+    double h = Math.log(total) - sum / total + (symbols - 1) / (2.0 * total);
+    return Math.min(8, h / Math.log(2));
+  }
+}
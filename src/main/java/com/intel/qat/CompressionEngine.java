@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A service provider interface for the back end that {@link QatZipper} uses to compress and
+ * decompress data. Engines are discovered with {@link java.util.ServiceLoader}; among the engines
+ * that are available on the host and support the requested {@link Mode}, the one with the highest
+ * {@link #priority()} is used. Setting the system property <code>com.intel.qat.engine</code> to the
+ * {@link #name()} of an engine forces that engine.
+ *
+ * <p>Two engines are provided: {@link QatEngine}, which uses Intel&reg; QuickAssist Technology
+ * through QATzip, and {@link JavaEngine}, a pure-Java engine for hosts without QATzip. Data
+ * compressed by one engine can be decompressed by the other.
+ */
+public interface CompressionEngine {
+  /**
+   * Returns the name of this engine.
+   *
+   * @return the name of this engine.
+   */
+  String name();
+
+  /**
+   * Returns the priority of this engine. When several engines are available, the one with the
+   * highest priority is used.
+   *
+   * @return the priority of this engine.
+   */
+  int priority();
+
+  /**
+   * Checks whether this engine can be used on this host.
+   *
+   * @return true if this engine can be used, false otherwise.
+   */
+  boolean isAvailable();
+
+  /**
+   * Checks whether this engine supports the given {@link Mode} of execution.
+   *
+   * @param mode the {@link Mode} of execution
+   * @return true if the mode is supported, false otherwise.
+   */
+  boolean supports(Mode mode);
+
+  /**
+   * Returns the size of the chunks that this engine compresses independently, such as the QATzip
+   * hardware buffer size. Callers that split data into blocks should use a multiple of it.
+   *
+   * @param algorithm the compression {@link Algorithm}
+   * @return the chunk size in bytes.
+   */
+  int hardwareBufferSize(Algorithm algorithm);
+
+  /**
+   * Creates a new session with the given parameters. The parameters are validated by the caller.
+   *
+   * @param algorithm the compression {@link Algorithm}
+   * @param level the compression level.
+   * @param mode the {@link Mode} of execution
+   * @param retryCount the number of attempts to acquire hardware resources
+   * @return a new session.
+   * @throws QatException if the session cannot be created.
+   */
+  Session createSession(Algorithm algorithm, int level, Mode mode, int retryCount);
+
+  /**
+   * A compression session created by a {@link CompressionEngine}. Arguments are validated by {@link
+   * QatZipper} before they reach a session. Sessions are not thread-safe.
+   */
+  interface Session {
+    /**
+     * Returns the maximum compressed length for the given source length.
+     *
+     * @param len the length of the source data
+     * @return the maximum compressed length.
+     */
+    int maxCompressedLength(long len);
+
+    /**
+     * Compresses a range of the source array into the destination array.
+     *
+     * @param src the source array
+     * @param srcOffset the start offset of the source data
+     * @param srcLen the length of source data
+     * @param dst the destination array
+     * @param dstOffset the start offset in the destination array
+     * @param dstLen the maximum length that can be written to the destination array
+     * @return the size of the compressed data in bytes
+     */
+    int compress(byte[] src, int srcOffset, int srcLen, byte[] dst, int dstOffset, int dstLen);
+
+    /**
+     * Decompresses a range of the source array into the destination array.
+     *
+     * @param src the source array
+     * @param srcOffset the start offset of the compressed data
+     * @param srcLen the length of compressed data
+     * @param dst the destination array
+     * @param dstOffset the start offset in the destination array
+     * @param dstLen the maximum length that can be written to the destination array
+     * @return the size of the decompressed data in bytes
+     */
+    int decompress(byte[] src, int srcOffset, int srcLen, byte[] dst, int dstOffset, int dstLen);
+
+    /**
+     * Compresses the remaining bytes of the source buffer into the destination buffer, advancing
+     * the positions of both buffers.
+     *
+     * @param src the source buffer
+     * @param dst the destination buffer
+     * @return the size of the compressed data in bytes
+     */
+    int compress(ByteBuffer src, ByteBuffer dst);
+
+    /**
+     * Decompresses the remaining bytes of the source buffer into the destination buffer, advancing
+     * the positions of both buffers.
+     *
+     * @param src the source buffer
+     * @param dst the destination buffer
+     * @return the size of the decompressed data in bytes
+     */
+    int decompress(ByteBuffer src, ByteBuffer dst);
+
+    /**
+     * Changes the compression {@link Algorithm} and level of this session.
+     *
+     * @param algorithm the new compression {@link Algorithm}
+     * @param level the new compression level.
+     */
+    void reconfigure(Algorithm algorithm, int level);
+
+    /**
+     * Returns whether this session has consumed part of a member that it has not finished
+     * decompressing, so that the end of the compressed data is unexpected. Sessions that decompress
+     * only whole members, and leave the rest in the source, need not override this method.
+     *
+     * @return true if a member is partially decompressed
+     */
+    default boolean hasPartialMember() {
+      return false;
+    }
+
+    /** Releases the resources held by this session. */
+    void end();
+  }
+}
@@ -0,0 +1,395 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Compresses every regular file under a directory into a parallel tree, for {@link
+ * QatFiles#compressTree}.
+ *
+ * <p>Files smaller than a block are gathered into batches of about a block, and each batch is
+ * compressed by one task. Larger files are split into blocks that are compressed by separate tasks
+ * and written to their target in order by whichever task completes the next block. The walk waits
+ * before submitting work while too many files are open or too many bytes are queued.
+ */
+final class FileTreeCompressor extends SimpleFileVisitor<Path> {
+  private final Path root;
+  private final Path target;
+  private final Path skipped;
+  private final String suffix;
+  private final int blockSize;
+  private final SessionPool pool;
+  private final Semaphore openFiles;
+  private final Budget budget;
+  private final QatFiles.TreeListener listener;
+
+  private final List<Path> batch = new ArrayList<>();
+  private long batchBytes;
+
+  /** Large files that are not finished, guarded by this. */
+  private final Set<FileJob> unfinished = new HashSet<>();
+
+  private long files;
+  private long failedFiles;
+  private long bytesRead;
+  private long bytesWritten;
+  private IOException failure;
+
+  FileTreeCompressor(
+      Path root,
+      Path target,
+      Algorithm algorithm,
+      int level,
+      Mode mode,
+      int sessions,
+      int maxOpenFiles,
+      long maxInFlightBytes,
+      QatFiles.TreeListener listener) {
+    if (maxOpenFiles <= 0 || maxInFlightBytes <= 0) throw new IllegalArgumentException();
+    this.root = root;
+    this.target = target;
+    this.skipped = target.toAbsolutePath().normalize();
+    this.suffix = algorithm == Algorithm.DEFLATE ? ".gz" : ".lz4";
+    this.blockSize = QatZipper.defaultBlockSize(algorithm, mode);
+    this.openFiles = new Semaphore(maxOpenFiles);
+    this.budget = new Budget(maxInFlightBytes);
+    this.listener = listener;
+    this.pool = new SessionPool(algorithm, level, mode, sessions);
+  }
+
+  /**
+   * Walks the tree and waits for every file to be compressed.
+   *
+   * @throws IOException if the tree could not be walked, or a file could not be compressed
+   */
+  QatFiles.TreeStats run() throws IOException {
+    try (pool) {
+      Files.walkFileTree(root, this);
+      submitBatch();
+    } finally {
+      failUnfinished();
+    }
+    synchronized (this) {
+      if (failure != null)
+        throw new IOException(failedFiles + " files could not be compressed", failure);
+      return stats();
+    }
+  }
+
+  @Override
+  public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+    return dir.toAbsolutePath().normalize().equals(skipped)
+        ? FileVisitResult.SKIP_SUBTREE
+        : FileVisitResult.CONTINUE;
+  }
+
+  @Override
+  public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+    if (!attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+    long size = attrs.size();
+    if (size < blockSize) {
+      batch.add(file);
+      batchBytes += size;
+      if (batchBytes >= blockSize) submitBatch();
+    } else {
+      submitFile(file, size);
+    }
+    return FileVisitResult.CONTINUE;
+  }
+
+  @Override
+  public FileVisitResult visitFileFailed(Path file, IOException e) {
+    report(file, null, 0, 0, 0, e);
+    return FileVisitResult.CONTINUE;
+  }
+
+  /** Hands the gathered small files to a single task. */
+  private void submitBatch() throws IOException {
+    if (batch.isEmpty()) return;
+    Path[] paths = batch.toArray(new Path[0]);
+    long bytes = batchBytes;
+    batch.clear();
+    batchBytes = 0;
+    acquire(openFiles);
+    try {
+      budget.acquire(bytes);
+    } catch (InterruptedIOException e) {
+      openFiles.release();
+      throw e;
+    }
+    pool.submit(
+        qzip -> {
+          ByteBuffer src = BufferPool.acquire(blockSize);
+          ByteBuffer dst = BufferPool.acquire(qzip.maxCompressedLength(blockSize));
+          try {
+            for (Path file : paths) compressSmall(qzip, file, src, dst);
+          } finally {
+            BufferPool.release(src);
+            BufferPool.release(dst);
+            budget.release(bytes);
+            openFiles.release();
+          }
+          return null;
+        });
+  }
+
+  /** Compresses a small file through the batch's buffers, reading it rather than mapping it. */
+  private void compressSmall(QatZipper qzip, Path file, ByteBuffer src, ByteBuffer dst) {
+    long start = System.nanoTime();
+    Path out = targetOf(file);
+    src.clear();
+    dst.clear();
+    long read = 0;
+    long written = 0;
+    try {
+      Files.createDirectories(out.getParent());
+      try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+          FileChannel sink = QatFiles.openDestination(out)) {
+        // The file may have grown since it was listed, so it is read to its end.
+        boolean eof = false;
+        while (!eof) {
+          while (src.hasRemaining() && !eof) eof = in.read(src) < 0;
+          if (src.position() == 0) break;
+          src.flip();
+          read += src.remaining();
+          qzip.compress(src, dst);
+          dst.flip();
+          while (dst.hasRemaining()) written += sink.write(dst);
+          src.clear();
+          dst.clear();
+        }
+      }
+      report(file, out, read, written, System.nanoTime() - start, null);
+    } catch (IOException | RuntimeException e) {
+      deletePartial(out);
+      report(file, out, read, written, System.nanoTime() - start, asIOException(e));
+    }
+  }
+
+  /** Opens a large file and hands each of its blocks to a task. */
+  private void submitFile(Path file, long size) throws IOException {
+    acquire(openFiles);
+    Path out = targetOf(file);
+    FileJob job;
+    try {
+      Files.createDirectories(out.getParent());
+      job = new FileJob(file, out, size);
+    } catch (IOException e) {
+      openFiles.release();
+      report(file, out, 0, 0, 0, e);
+      return;
+    }
+    try {
+      for (int i = 0; i < job.blocks.length; i++) {
+        int index = i;
+        long position = (long) i * blockSize;
+        int len = (int) Math.min(blockSize, size - position);
+        budget.acquire(len);
+        pool.submit(
+            qzip -> {
+              try {
+                if (!job.failed())
+                  job.complete(index, QatFiles.compressBlock(qzip, job.in, position, len));
+              } catch (IOException | RuntimeException e) {
+                job.fail(asIOException(e));
+              } finally {
+                budget.release(len);
+              }
+              return null;
+            });
+      }
+    } catch (IOException | RuntimeException e) {
+      // The rest of the file will never be compressed, so its target is incomplete.
+      job.fail(asIOException(e));
+      throw e;
+    }
+  }
+
+  /**
+   * Fails the large files that are still open once the pool has stopped, whose remaining blocks
+   * were dropped because closing the pool was interrupted.
+   */
+  private void failUnfinished() {
+    List<FileJob> jobs;
+    synchronized (this) {
+      jobs = new ArrayList<>(unfinished);
+    }
+    for (FileJob job : jobs) job.fail(new InterruptedIOException());
+  }
+
+  private Path targetOf(Path file) {
+    return target.resolve(root.relativize(file).toString() + suffix);
+  }
+
+  /** Records the outcome of a file and passes it to the listener. */
+  private synchronized void report(
+      Path source, Path out, long size, long compressedSize, long nanos, IOException e) {
+    if (e == null) {
+      files++;
+      bytesRead += size;
+      bytesWritten += compressedSize;
+    } else {
+      failedFiles++;
+      if (failure == null) failure = e;
+    }
+    if (listener != null)
+      listener.fileCompressed(
+          new QatFiles.FileStats(source, out, size, compressedSize, nanos, e), stats());
+  }
+
+  private QatFiles.TreeStats stats() {
+    return new QatFiles.TreeStats(files, failedFiles, bytesRead, bytesWritten);
+  }
+
+  /** Removes the incomplete target of a file that could not be compressed. */
+  private static void deletePartial(Path out) {
+    try {
+      Files.deleteIfExists(out);
+    } catch (IOException e) {
+      // The failure of the file itself is reported instead.
+    }
+  }
+
+  private static IOException asIOException(Exception e) {
+    return e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+  }
+
+  private static void acquire(Semaphore semaphore) throws InterruptedIOException {
+    try {
+      semaphore.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  /** A large file whose blocks are written in order as they are compressed. */
+  private final class FileJob {
+    final Path source;
+    final Path out;
+    final long size;
+    final long start = System.nanoTime();
+    final FileChannel in;
+    final FileChannel sink;
+    final ByteBuffer[] blocks;
+    int next;
+    long written;
+    boolean done;
+
+    FileJob(Path source, Path out, long size) throws IOException {
+      this.source = source;
+      this.out = out;
+      this.size = size;
+      in = FileChannel.open(source, StandardOpenOption.READ);
+      try {
+        sink = QatFiles.openDestination(out);
+      } catch (IOException e) {
+        in.close();
+        throw e;
+      }
+      blocks = new ByteBuffer[(int) ((size + blockSize - 1) / blockSize)];
+      synchronized (FileTreeCompressor.this) {
+        unfinished.add(this);
+      }
+    }
+
+    synchronized boolean failed() {
+      return done;
+    }
+
+    /** Stores a compressed block, then writes every block that is next in order. */
+    synchronized void complete(int index, ByteBuffer block) throws IOException {
+      if (done) {
+        BufferPool.release(block);
+        return;
+      }
+      blocks[index] = block;
+      while (next < blocks.length && blocks[next] != null) {
+        ByteBuffer b = blocks[next];
+        blocks[next++] = null;
+        try {
+          while (b.hasRemaining()) written += sink.write(b, written);
+        } finally {
+          BufferPool.release(b);
+        }
+      }
+      if (next == blocks.length) finish(null);
+    }
+
+    synchronized void fail(IOException e) {
+      if (done) return;
+      for (int i = next; i < blocks.length; i++) {
+        if (blocks[i] != null) BufferPool.release(blocks[i]);
+        blocks[i] = null;
+      }
+      finish(e);
+    }
+
+    private void finish(IOException e) {
+      done = true;
+      synchronized (FileTreeCompressor.this) {
+        unfinished.remove(this);
+      }
+      try {
+        in.close();
+        sink.close();
+      } catch (IOException closeFailure) {
+        if (e == null) e = closeFailure;
+      } finally {
+        openFiles.release();
+      }
+      if (e != null) deletePartial(out);
+      report(source, out, size, written, System.nanoTime() - start, e);
+    }
+  }
+
+  /** A number of bytes that may be queued or being compressed at once. */
+  private static final class Budget {
+    private final long limit;
+    private long held;
+
+    Budget(long limit) {
+      this.limit = limit;
+    }
+
+    /** Waits until the given number of bytes fit, or until nothing else is held. */
+    synchronized void acquire(long bytes) throws InterruptedIOException {
+      while (held > 0 && held + bytes > limit) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+      held += bytes;
+    }
+
+    synchronized void release(long bytes) {
+      held -= bytes;
+      notifyAll();
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import java.util.zip.CRC32;
+
+/**
+ * Helpers for the gzip member format (RFC 1952) and the QATzip gzip extension, which records the
+ * uncompressed and compressed sizes of a member in a 'QZ' extra subfield.
+ */
+final class Gzip {
+  static final int ID1 = 0x1f;
+  static final int ID2 = 0x8b;
+  static final int CM_DEFLATE = 8;
+
+  static final int FHCRC = 0x02;
+  static final int FEXTRA = 0x04;
+  static final int FNAME = 0x08;
+  static final int FCOMMENT = 0x10;
+
+  /** The operating system field used by QATzip. */
+  static final int OS_UNKNOWN = 255;
+
+  /** The length of the fixed part of a gzip header. */
+  static final int HEADER_LENGTH = 10;
+
+  /** The length of a gzip trailer: CRC32 and ISIZE. */
+  static final int TRAILER_LENGTH = 8;
+
+  /** The length of a QATzip gzip-ext header: fixed header, XLEN and the 'QZ' subfield. */
+  static final int EXT_HEADER_LENGTH = 24;
+
+  /** The largest number of bytes in a stored deflate block. */
+  static final int MAX_STORED_BLOCK = 65535;
+
+  private Gzip() {}
+
+  /**
+   * Writes a QATzip gzip-ext header.
+   *
+   * @param b the destination array
+   * @param off the offset at which to write the header
+   * @param srcSize the uncompressed size of the member
+   * @param destSize the size of the deflate payload of the member
+   */
+  static void writeExtHeader(byte[] b, int off, int srcSize, int destSize) {
+    b[off] = (byte) ID1;
+    b[off + 1] = (byte) ID2;
+    b[off + 2] = (byte) CM_DEFLATE;
+    b[off + 3] = (byte) FEXTRA;
+    writeInt(b, off + 4, 0); // MTIME
+    b[off + 8] = 0; // XFL
+    b[off + 9] = (byte) OS_UNKNOWN;
+    writeShort(b, off + 10, 12); // XLEN
+    b[off + 12] = 'Q';
+    b[off + 13] = 'Z';
+    writeShort(b, off + 14, 8);
+    writeInt(b, off + 16, srcSize);
+    writeInt(b, off + 20, destSize);
+  }
+
+  /**
+   * Writes the source range as a gzip-ext member whose deflate payload is made of stored blocks.
+   * The destination must have room for the source, the header and trailer, and five bytes for every
+   * {@link #MAX_STORED_BLOCK} bytes of the source or part thereof.
+   *
+   * @return the member size.
+   */
+  static int writeStoredMember(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+    int pos = dstOff + EXT_HEADER_LENGTH;
+    int done = 0;
+    do {
+      int n = Math.min(MAX_STORED_BLOCK, srcLen - done);
+      dst[pos] = (byte) (done + n == srcLen ? 1 : 0); // BFINAL, BTYPE 00
+      writeShort(dst, pos + 1, n);
+      writeShort(dst, pos + 3, ~n);
+      System.arraycopy(src, srcOff + done, dst, pos + 5, n);
+      pos += 5 + n;
+      done += n;
+    } while (done < srcLen);
+
+    CRC32 crc = new CRC32();
+    crc.update(src, srcOff, srcLen);
+    writeExtHeader(dst, dstOff, srcLen, pos - dstOff - EXT_HEADER_LENGTH);
+    writeInt(dst, pos, (int) crc.getValue());
+    writeInt(dst, pos + 4, srcLen);
+    return pos + TRAILER_LENGTH - dstOff;
+  }
+
+  /**
+   * Checks whether the given bytes start with the gzip magic number.
+   *
+   * @return true if at least two bytes are available and they are the gzip magic number.
+   */
+  static boolean isGzip(byte[] b, int off, int len) {
+    return len >= 2 && (b[off] & 0xFF) == ID1 && (b[off + 1] & 0xFF) == ID2;
+  }
+
+  static void writeShort(byte[] b, int off, int v) {
+    b[off] = (byte) v;
+    b[off + 1] = (byte) (v >>> 8);
+  }
+
+  static void writeInt(byte[] b, int off, int v) {
+    b[off] = (byte) v;
+    b[off + 1] = (byte) (v >>> 8);
+    b[off + 2] = (byte) (v >>> 16);
+    b[off + 3] = (byte) (v >>> 24);
+  }
+
+  static int readShort(byte[] b, int off) {
+    return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8;
+  }
+
+  static int readInt(byte[] b, int off) {
+    return (b[off] & 0xFF)
+        | (b[off + 1] & 0xFF) << 8
+        | (b[off + 2] & 0xFF) << 16
+        | (b[off + 3] & 0xFF) << 24;
+  }
+
+  /** A parsed gzip member header. */
+  static final class Header {
+    /** The total length of the header in bytes. */
+    int length;
+
+    /** The offset of the extra field data relative to the start of the header, or -1. */
+    int extraOffset = -1;
+
+    /** The length of the extra field data. */
+    int extraLength;
+
+    /** The uncompressed size from the 'QZ' subfield, or -1 if absent. */
+    int srcSize = -1;
+
+    /** The deflate payload size from the 'QZ' subfield, or -1 if absent. */
+    int destSize = -1;
+
+    /**
+     * Parses a gzip member header.
+     *
+     * @param b the array holding the header
+     * @param off the offset of the header
+     * @param len the number of bytes available
+     * @return the parsed header, or null if the header is not complete yet.
+     * @throws QatException if the bytes are not a gzip header.
+     */
+    static Header parse(byte[] b, int off, int len) {
+      if (len < HEADER_LENGTH) {
+        if (len >= 1 && (b[off] & 0xFF) != ID1) throw notGzip();
+        if (len >= 2 && (b[off + 1] & 0xFF) != ID2) throw notGzip();
+        return null;
+      }
+      if (!isGzip(b, off, len) || (b[off + 2] & 0xFF) != CM_DEFLATE) throw notGzip();
+
+      Header header = new Header();
+      int flags = b[off + 3] & 0xFF;
+      int pos = HEADER_LENGTH;
+      if ((flags & FEXTRA) != 0) {
+        if (len < pos + 2) return null;
+        int xlen = readShort(b, off + pos);
+        pos += 2;
+        if (len < pos + xlen) return null;
+        header.extraOffset = pos;
+        header.extraLength = xlen;
+        int qz = header.findSubfield(b, off, 'Q', 'Z');
+        if (qz >= 0 && readShort(b, off + qz - 2) >= 8) {
+          header.srcSize = readInt(b, off + qz);
+          header.destSize = readInt(b, off + qz + 4);
+        }
+        pos += xlen;
+      }
+      if ((flags & FNAME) != 0) {
+        do {
+          if (pos >= len) return null;
+        } while (b[off + pos++] != 0);
+      }
+      if ((flags & FCOMMENT) != 0) {
+        do {
+          if (pos >= len) return null;
+        } while (b[off + pos++] != 0);
+      }
+      if ((flags & FHCRC) != 0) {
+        pos += 2;
+        if (pos > len) return null;
+      }
+      header.length = pos;
+      return header;
+    }
+
+    /**
+     * Finds an extra subfield with the given identifier.
+     *
+     * @param b the array holding the header
+     * @param off the offset of the header
+     * @param si1 the first subfield identifier byte
+     * @param si2 the second subfield identifier byte
+     * @return the offset of the subfield data relative to the start of the header, or -1.
+     */
+    int findSubfield(byte[] b, int off, int si1, int si2) {
+      if (extraOffset < 0) return -1;
+      int pos = extraOffset;
+      int end = extraOffset + extraLength;
+      while (pos + 4 <= end) {
+        int sublen = readShort(b, off + pos + 2);
+        if (b[off + pos] == (byte) si1 && b[off + pos + 1] == (byte) si2) {
+          return pos + 4 + sublen <= end ? pos + 4 : -1;
+        }
+        pos += 4 + sublen;
+      }
+      return -1;
+    }
+
+    private static QatException notGzip() {
+      return new QatException("QZ_DATA_ERROR: Input is not in gzip format.");
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A streaming decoder for a sequence of gzip members, with or without the QATzip 'QZ' extra
+ * subfield. Like the QATzip software path, it keeps its state between calls, so members may be
+ * split across any number of calls.
+ */
+final class GzipDecoder {
+  private static final int HEADER = 0;
+  private static final int BODY = 1;
+  private static final int TRAILER = 2;
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private final Inflater inflater = new Inflater(true);
+  private final CRC32 crc = new CRC32();
+  private byte[] pending = new byte[Gzip.EXT_HEADER_LENGTH];
+  private int pendingLen;
+  private int state = HEADER;
+  private long memberSize;
+  private int consumed;
+
+  /**
+   * Decompresses as much of the source range as possible. Decoding stops when the source is
+   * exhausted or the destination is full. If bytes that do not start a gzip member follow at least
+   * one byte of output, decoding stops before them, as QATzip does.
+   *
+   * @return the number of bytes written to the destination.
+   * @throws QatException if the data is not valid gzip data.
+   */
+  int decode(byte[] src, int off, int len, byte[] dst, int dstOff, int dstLen) {
+    int ip = off;
+    int end = off + len;
+    int op = dstOff;
+    int oend = dstOff + dstLen;
+    try {
+      loop:
+      while (true) {
+        switch (state) {
+          case HEADER:
+            {
+              if (ip == end) break loop;
+              if (pendingLen == 0) {
+                if (op > dstOff && !startsMember(src, ip, end - ip)) break loop;
+                Gzip.Header header = Gzip.Header.parse(src, ip, end - ip);
+                if (header != null) {
+                  ip += header.length;
+                  state = BODY;
+                  break;
+                }
+              }
+              // The header straddles calls; collect it one byte at a time.
+              while (ip < end) {
+                append(src[ip++]);
+                if (Gzip.Header.parse(pending, 0, pendingLen) != null) {
+                  pendingLen = 0;
+                  state = BODY;
+                  break;
+                }
+              }
+              break;
+            }
+          case BODY:
+            {
+              int start = ip;
+              if (ip < end) inflater.setInput(src, ip, end - ip);
+              else inflater.setInput(EMPTY);
+              int n = inflater.inflate(dst, op, oend - op);
+              ip = end - inflater.getRemaining();
+              crc.update(dst, op, n);
+              op += n;
+              memberSize += n;
+              if (inflater.finished()) {
+                state = TRAILER;
+                break;
+              }
+              if (inflater.needsDictionary())
+                throw new QatException("QZ_DATA_ERROR: Unexpected preset dictionary.");
+              if (n == 0 && ip == start) break loop;
+              break;
+            }
+          default: // TRAILER
+            {
+              int trailer;
+              byte[] b;
+              if (pendingLen == 0 && end - ip >= Gzip.TRAILER_LENGTH) {
+                b = src;
+                trailer = ip;
+                ip += Gzip.TRAILER_LENGTH;
+              } else {
+                while (ip < end && pendingLen < Gzip.TRAILER_LENGTH) append(src[ip++]);
+                if (pendingLen < Gzip.TRAILER_LENGTH) break loop;
+                b = pending;
+                trailer = 0;
+                pendingLen = 0;
+              }
+              if ((int) crc.getValue() != Gzip.readInt(b, trailer)
+                  || (int) memberSize != Gzip.readInt(b, trailer + 4))
+                throw new QatException("QZ_DATA_ERROR: CRC or length mismatch.");
+              resetMember();
+              break;
+            }
+        }
+      }
+    } catch (DataFormatException e) {
+      throw new QatException("QZ_DATA_ERROR: " + e.getMessage());
+    }
+    consumed = ip - off;
+    return op - dstOff;
+  }
+
+  /** Returns the number of source bytes consumed by the last call to {@link #decode}. */
+  int consumed() {
+    return consumed;
+  }
+
+  /** Returns true if no member is partially decoded. */
+  boolean atMemberBoundary() {
+    return state == HEADER && pendingLen == 0;
+  }
+
+  /** Discards any partially decoded member. */
+  void reset() {
+    pendingLen = 0;
+    resetMember();
+  }
+
+  /** Releases the resources held by this decoder. */
+  void end() {
+    inflater.end();
+  }
+
+  private void resetMember() {
+    state = HEADER;
+    inflater.reset();
+    crc.reset();
+    memberSize = 0;
+  }
+
+  private void append(byte b) {
+    if (pendingLen == pending.length) pending = Arrays.copyOf(pending, 2 * pendingLen);
+    pending[pendingLen++] = b;
+  }
+
+  private static boolean startsMember(byte[] b, int off, int len) {
+    return (b[off] & 0xFF) == Gzip.ID1 && (len < 2 || (b[off + 1] & 0xFF) == Gzip.ID2);
+  }
+}
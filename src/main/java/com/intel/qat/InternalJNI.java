@@ -17,10 +17,14 @@ class InternalJNI {
     Native.loadLibrary();
   }
 
-  static native void setup(QatZipper qzip, int mode, int codec, int level);
+  static native void setup(QatEngine.QatSession session, int mode, int codec, int level);
+
+  static native void reconfigure(long session, int mode, int codec, int level);
 
   static native int maxCompressedSize(long session, long sourceSize);
 
+  static native int hardwareBufferSize(int codec);
+
   static native int compressByteArray(
       long session,
       byte[] src,
@@ -126,4 +130,6 @@ class InternalJNI {
       int retryCount);
 
   static native int teardown(long session);
+
+  static native void close();
 }
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A pure-Java {@link CompressionEngine} for hosts without QATzip. It writes the same formats as
+ * QATzip, so data compressed by either engine can be decompressed by the other:
+ *
+ * <ul>
+ *   <li>{@link Algorithm#DEFLATE} data is a sequence of gzip members, each holding up to {@link
+ *       #CHUNK_SIZE} bytes, with the QATzip 'QZ' extra subfield. Plain gzip members are also
+ *       accepted on decompression.
+ *   <li>{@link Algorithm#LZ4} data is a sequence of LZ4 frames, each holding up to {@link
+ *       #CHUNK_SIZE} bytes, with content size and content checksum.
+ * </ul>
+ *
+ * Only {@link Mode#AUTO} is supported, as this engine never uses hardware.
+ */
+public final class JavaEngine implements CompressionEngine {
+  /** The name of this engine. */
+  public static final String NAME = "java";
+
+  /** The number of uncompressed bytes held by each gzip member or LZ4 frame. */
+  public static final int CHUNK_SIZE = 64 * 1024;
+
+  /** Creates a new pure-Java engine. Used by {@link java.util.ServiceLoader}. */
+  public JavaEngine() {}
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public int priority() {
+    return 0;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return true;
+  }
+
+  @Override
+  public boolean supports(Mode mode) {
+    return mode == Mode.AUTO;
+  }
+
+  @Override
+  public int hardwareBufferSize(Algorithm algorithm) {
+    return CHUNK_SIZE;
+  }
+
+  @Override
+  public Session createSession(Algorithm algorithm, int level, Mode mode, int retryCount) {
+    return new JavaSession(algorithm, level);
+  }
+
+  /** A session that compresses with java.util.zip and a Java LZ4 block codec. */
+  static final class JavaSession implements Session {
+    private Algorithm algorithm;
+    private int level;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final GzipDecoder gzipDecoder = new GzipDecoder();
+    private final Lz4FrameDecoder lz4Decoder = new Lz4FrameDecoder();
+    private final int[] lz4Table = new int[Lz4.HASH_TABLE_SIZE];
+    private byte[] srcScratch;
+    private byte[] dstScratch;
+
+    /** The number of source bytes consumed by the last decompression. */
+    private int consumed;
+
+    JavaSession(Algorithm algorithm, int level) {
+      this.algorithm = algorithm;
+      this.level = level;
+      this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public int maxCompressedLength(long len) {
+      long chunks = Math.max(1, (len + CHUNK_SIZE - 1) / CHUNK_SIZE);
+      long max;
+      if (algorithm == Algorithm.DEFLATE) {
+        max =
+            len
+                + ((len + 7) >> 3)
+                + ((len + 63) >> 6)
+                + chunks * (7 + Gzip.EXT_HEADER_LENGTH + Gzip.TRAILER_LENGTH);
+      } else {
+        max = Lz4.maxBlockLength(len) + chunks * (16 + Lz4.FRAME_OVERHEAD);
+      }
+      return (int) Math.min(max, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int compress(
+        byte[] src, int srcOffset, int srcLen, byte[] dst, int dstOffset, int dstLen) {
+      int end = srcOffset + srcLen;
+      int op = dstOffset;
+      int dend = dstOffset + dstLen;
+      for (int ip = srcOffset; ip < end; ip += CHUNK_SIZE) {
+        int n = Math.min(CHUNK_SIZE, end - ip);
+        int written =
+            algorithm == Algorithm.DEFLATE
+                ? writeMember(src, ip, n, dst, op, dend - op)
+                : Lz4.writeFrame(src, ip, n, dst, op, dend - op, lz4Table);
+        if (written < 0) throw bufferError();
+        op += written;
+      }
+      return op - dstOffset;
+    }
+
+    @Override
+    public int decompress(
+        byte[] src, int srcOffset, int srcLen, byte[] dst, int dstOffset, int dstLen) {
+      // The decoders keep state between calls; a failed call must not leave them part way through
+      // a member or frame, or every later call on this session would fail too.
+      if (algorithm == Algorithm.DEFLATE) {
+        int n;
+        try {
+          n = gzipDecoder.decode(src, srcOffset, srcLen, dst, dstOffset, dstLen);
+        } catch (RuntimeException e) {
+          gzipDecoder.reset();
+          throw e;
+        }
+        consumed = gzipDecoder.consumed();
+        return n;
+      } else {
+        int n;
+        try {
+          n = lz4Decoder.decode(src, srcOffset, srcLen, dst, dstOffset, dstLen);
+        } catch (RuntimeException e) {
+          lz4Decoder.reset();
+          throw e;
+        }
+        consumed = lz4Decoder.consumed();
+        return n;
+      }
+    }
+
+    @Override
+    public int compress(ByteBuffer src, ByteBuffer dst) {
+      int srcLen = src.remaining();
+      byte[] s = src.hasArray() ? src.array() : stageSource(src);
+      int srcOffset = src.hasArray() ? src.arrayOffset() + src.position() : 0;
+
+      int compressedSize;
+      if (dst.hasArray()) {
+        int dstOffset = dst.arrayOffset() + dst.position();
+        compressedSize = compress(s, srcOffset, srcLen, dst.array(), dstOffset, dst.remaining());
+        dst.position(dst.position() + compressedSize);
+      } else {
+        int dstLen = Math.min(dst.remaining(), maxCompressedLength(srcLen));
+        byte[] d = destinationScratch(dstLen);
+        compressedSize = compress(s, srcOffset, srcLen, d, 0, dstLen);
+        dst.put(d, 0, compressedSize);
+      }
+      src.position(src.limit());
+      return compressedSize;
+    }
+
+    @Override
+    public int decompress(ByteBuffer src, ByteBuffer dst) {
+      int srcLen = src.remaining();
+      byte[] s = src.hasArray() ? src.array() : stageSource(src);
+      int srcOffset = src.hasArray() ? src.arrayOffset() + src.position() : 0;
+
+      int decompressedSize;
+      if (dst.hasArray()) {
+        int dstOffset = dst.arrayOffset() + dst.position();
+        decompressedSize =
+            decompress(s, srcOffset, srcLen, dst.array(), dstOffset, dst.remaining());
+        dst.position(dst.position() + decompressedSize);
+      } else {
+        byte[] d = destinationScratch(dst.remaining());
+        decompressedSize = decompress(s, srcOffset, srcLen, d, 0, dst.remaining());
+        dst.put(d, 0, decompressedSize);
+      }
+      src.position(src.position() + consumed);
+      return decompressedSize;
+    }
+
+    @Override
+    public boolean hasPartialMember() {
+      return algorithm == Algorithm.DEFLATE
+          ? !gzipDecoder.atMemberBoundary()
+          : !lz4Decoder.atFrameBoundary();
+    }
+
+    @Override
+    public void reconfigure(Algorithm algorithm, int level) {
+      if (algorithm != this.algorithm) {
+        gzipDecoder.reset();
+        lz4Decoder.reset();
+      }
+      this.algorithm = algorithm;
+      this.level = level;
+      deflater.setLevel(level);
+    }
+
+    @Override
+    public void end() {
+      deflater.end();
+      gzipDecoder.end();
+      srcScratch = null;
+      dstScratch = null;
+    }
+
+    /**
+     * Writes one gzip-ext member holding the given source range.
+     *
+     * @return the member size, or -1 if the member does not fit in the destination.
+     */
+    private int writeMember(byte[] src, int srcOffset, int srcLen, byte[] dst, int off, int len) {
+      int payload = off + Gzip.EXT_HEADER_LENGTH;
+      int limit = off + len - Gzip.TRAILER_LENGTH;
+      if (payload > limit) return -1;
+
+      deflater.reset();
+      deflater.setInput(src, srcOffset, srcLen);
+      deflater.finish();
+      int pos = payload;
+      while (!deflater.finished()) {
+        if (pos == limit) return -1;
+        pos += deflater.deflate(dst, pos, limit - pos);
+      }
+
+      crc.reset();
+      crc.update(src, srcOffset, srcLen);
+      Gzip.writeExtHeader(dst, off, srcLen, pos - payload);
+      Gzip.writeInt(dst, pos, (int) crc.getValue());
+      Gzip.writeInt(dst, pos + 4, srcLen);
+      return pos + Gzip.TRAILER_LENGTH - off;
+    }
+
+    private byte[] stageSource(ByteBuffer src) {
+      int len = src.remaining();
+      if (srcScratch == null || srcScratch.length < len) srcScratch = new byte[len];
+      src.duplicate().get(srcScratch, 0, len);
+      return srcScratch;
+    }
+
+    private byte[] destinationScratch(int len) {
+      if (dstScratch == null || dstScratch.length < len) dstScratch = new byte[len];
+      return dstScratch;
+    }
+
+    private static QatException bufferError() {
+      return new QatException("QZ_BUF_ERROR: Destination buffer is too small.");
+    }
+  }
+}
@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import java.util.Arrays;
+
+/**
+ * A pure-Java LZ4 block codec and helpers for the LZ4 frame format. Frames written by {@link
+ * #writeFrame} have the same layout as the frames produced by QATzip: content size and content
+ * checksum present, independent blocks of at most 64 KB, and no block checksums.
+ */
+final class Lz4 {
+  /** The LZ4 frame magic number. */
+  static final int MAGIC = 0x184D2204;
+
+  /** The magic number of skippable frames, ignoring the low four bits. */
+  static final int SKIPPABLE_MAGIC = 0x184D2A50;
+
+  static final int FLG_VERSION = 0x40;
+  static final int FLG_BLOCK_INDEPENDENCE = 0x20;
+  static final int FLG_BLOCK_CHECKSUM = 0x10;
+  static final int FLG_CONTENT_SIZE = 0x08;
+  static final int FLG_CONTENT_CHECKSUM = 0x04;
+  static final int FLG_DICT_ID = 0x01;
+
+  /** The block descriptor for a maximum block size of 64 KB. */
+  static final int BD_64KB = 0x40;
+
+  /** The high bit of a block size that marks an uncompressed block. */
+  static final int UNCOMPRESSED_BIT = 0x80000000;
+
+  /** The length of the frame header written by {@link #writeFrame}. */
+  static final int FRAME_HEADER_LENGTH = 15;
+
+  /** The overhead of a frame written by {@link #writeFrame}, besides its block data. */
+  static final int FRAME_OVERHEAD = FRAME_HEADER_LENGTH + 4 + 4 + 4;
+
+  /** The size of the hash table passed to {@link #compress}. */
+  static final int HASH_TABLE_SIZE = 1 << 12;
+
+  private static final int HASH_LOG = 12;
+  private static final int MIN_MATCH = 4;
+  private static final int MFLIMIT = 12;
+  private static final int LAST_LITERALS = 5;
+  private static final int MAX_DISTANCE = 65535;
+
+  private Lz4() {}
+
+  /**
+   * Returns the maximum size of an LZ4 block that holds the given number of bytes.
+   *
+   * @param len the uncompressed length
+   * @return the maximum compressed block size.
+   */
+  static long maxBlockLength(long len) {
+    return len + len / 255 + 16;
+  }
+
+  /**
+   * Returns the maximum block size in bytes encoded by the given block descriptor.
+   *
+   * @param bd the block descriptor byte
+   * @return the maximum block size.
+   */
+  static int maxBlockSize(int bd) {
+    int id = (bd >>> 4) & 0x7;
+    if (id < 4) throw new QatException("QZ_DATA_ERROR: Invalid LZ4 block maximum size.");
+    return 1 << (8 + 2 * id);
+  }
+
+  /**
+   * Returns the block descriptor for the smallest maximum block size that fits the given size.
+   *
+   * @param blockSize the block size in bytes, up to 4 MB
+   * @return the block descriptor byte.
+   */
+  static int blockDescriptor(int blockSize) {
+    for (int id = 4; id <= 7; id++) {
+      if (blockSize <= 1 << (8 + 2 * id)) return id << 4;
+    }
+    throw new IllegalArgumentException("LZ4 block size must not exceed 4 MB.");
+  }
+
+  /**
+   * Compresses the source range into a single LZ4 block.
+   *
+   * @param src the source array
+   * @param srcOff the start offset of the source data
+   * @param srcLen the length of the source data
+   * @param dst the destination array
+   * @param dstOff the start offset in the destination array
+   * @param dstLen the space available in the destination array
+   * @param table a hash table of {@link #HASH_TABLE_SIZE} entries; its contents are overwritten
+   * @return the compressed size, or -1 if the block does not fit in the destination.
+   */
+  static int compress(
+      byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen, int[] table) {
+    int ip = srcOff;
+    int end = srcOff + srcLen;
+    int anchor = srcOff;
+    int op = dstOff;
+    int oend = dstOff + dstLen;
+
+    if (srcLen > MFLIMIT) {
+      Arrays.fill(table, -1);
+      int mflimit = end - MFLIMIT;
+      int matchlimit = end - LAST_LITERALS;
+      while (ip <= mflimit) {
+        int seq = readInt(src, ip);
+        int h = hash(seq);
+        int ref = table[h];
+        table[h] = ip;
+        if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != seq) {
+          ip += 1 + ((ip - anchor) >>> 6);
+          continue;
+        }
+
+        while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+          ip--;
+          ref--;
+        }
+        int matchLen = MIN_MATCH;
+        while (ip + matchLen < matchlimit && src[ip + matchLen] == src[ref + matchLen]) matchLen++;
+
+        op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLen, dst, op, oend);
+        if (op < 0) return -1;
+
+        ip += matchLen;
+        anchor = ip;
+        if (ip <= mflimit) table[hash(readInt(src, ip - 2))] = ip - 2;
+      }
+    }
+
+    op = writeSequence(src, anchor, end - anchor, 0, 0, dst, op, oend);
+    return op < 0 ? -1 : op - dstOff;
+  }
+
+  /**
+   * Decompresses a single LZ4 block.
+   *
+   * @param src the source array
+   * @param srcOff the start offset of the block
+   * @param srcLen the length of the block
+   * @param dst the destination array
+   * @param dstOff the start offset in the destination array
+   * @param dstLen the space available in the destination array
+   * @param dstBase the lowest destination index that matches may refer to
+   * @return the decompressed size, or -1 if the block does not fit in the destination.
+   * @throws QatException if the block is malformed.
+   */
+  static int decompress(
+      byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen, int dstBase) {
+    int ip = srcOff;
+    int iend = srcOff + srcLen;
+    int op = dstOff;
+    int oend = dstOff + dstLen;
+
+    while (true) {
+      if (ip >= iend) throw malformed();
+      int token = src[ip++] & 0xFF;
+
+      int lit = token >>> 4;
+      if (lit == 15) {
+        int b;
+        do {
+          if (ip >= iend) throw malformed();
+          b = src[ip++] & 0xFF;
+          lit += b;
+        } while (b == 255);
+      }
+      if (lit < 0 || lit > iend - ip) throw malformed();
+      if (lit > oend - op) return -1;
+      System.arraycopy(src, ip, dst, op, lit);
+      ip += lit;
+      op += lit;
+
+      if (ip == iend) break;
+
+      if (iend - ip < 2) throw malformed();
+      int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+      ip += 2;
+      if (offset == 0 || op - offset < dstBase) throw malformed();
+
+      int matchLen = token & 15;
+      if (matchLen == 15) {
+        int b;
+        do {
+          if (ip >= iend) throw malformed();
+          b = src[ip++] & 0xFF;
+          matchLen += b;
+        } while (b == 255);
+      }
+      matchLen += MIN_MATCH;
+      if (matchLen < 0) throw malformed();
+      if (matchLen > oend - op) return -1;
+
+      int ref = op - offset;
+      if (offset >= matchLen) {
+        System.arraycopy(dst, ref, dst, op, matchLen);
+      } else {
+        for (int i = 0; i < matchLen; i++) dst[op + i] = dst[ref + i];
+      }
+      op += matchLen;
+    }
+    return op - dstOff;
+  }
+
+  /**
+   * Writes the source range as a QATzip-compatible LZ4 frame holding a single block. The source
+   * must not be longer than 64 KB.
+   *
+   * @param table a hash table of {@link #HASH_TABLE_SIZE} entries; its contents are overwritten
+   * @return the frame size, or -1 if the frame does not fit in the destination.
+   */
+  static int writeFrame(
+      byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen, int[] table) {
+    if (dstLen < FRAME_OVERHEAD) return -1;
+    int flags = FLG_CONTENT_SIZE | FLG_CONTENT_CHECKSUM;
+    int op = writeFrameHeader(dst, dstOff, flags, BD_64KB, srcLen);
+
+    int blockSpace = Math.min(dstLen - FRAME_OVERHEAD, srcLen - 1);
+    int blockLen =
+        blockSpace > 0 ? compress(src, srcOff, srcLen, dst, op + 4, blockSpace, table) : -1;
+    if (blockLen < 0) {
+      if (dstLen - FRAME_OVERHEAD < srcLen) return -1;
+      return writeStoredFrame(src, srcOff, srcLen, dst, dstOff);
+    }
+    Gzip.writeInt(dst, op, blockLen);
+    op += 4 + blockLen;
+
+    Gzip.writeInt(dst, op, 0);
+    Gzip.writeInt(dst, op + 4, XXHash32.hash(src, srcOff, srcLen, 0));
+    return op + 8 - dstOff;
+  }
+
+  /**
+   * Writes the source range as a QATzip-compatible LZ4 frame holding a single uncompressed block.
+   * The source must not be longer than 64 KB, and the destination must have room for {@link
+   * #FRAME_OVERHEAD} bytes more than the source.
+   *
+   * @return the frame size.
+   */
+  static int writeStoredFrame(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+    int flags = FLG_CONTENT_SIZE | FLG_CONTENT_CHECKSUM;
+    int op = writeFrameHeader(dst, dstOff, flags, BD_64KB, srcLen);
+    Gzip.writeInt(dst, op, srcLen | UNCOMPRESSED_BIT);
+    System.arraycopy(src, srcOff, dst, op + 4, srcLen);
+    op += 4 + srcLen;
+    Gzip.writeInt(dst, op, 0);
+    Gzip.writeInt(dst, op + 4, XXHash32.hash(src, srcOff, srcLen, 0));
+    return op + 8 - dstOff;
+  }
+
+  /**
+   * Writes an LZ4 frame header.
+   *
+   * @param dst the destination array
+   * @param off the offset at which to write the header
+   * @param flags the FLG bits besides the version and block independence bits
+   * @param bd the block descriptor byte
+   * @param contentSize the content size, written only if {@link #FLG_CONTENT_SIZE} is set
+   * @return the offset just past the header.
+   */
+  static int writeFrameHeader(byte[] dst, int off, int flags, int bd, long contentSize) {
+    Gzip.writeInt(dst, off, MAGIC);
+    int flg = FLG_VERSION | FLG_BLOCK_INDEPENDENCE | flags;
+    dst[off + 4] = (byte) flg;
+    dst[off + 5] = (byte) bd;
+    int pos = off + 6;
+    if ((flg & FLG_CONTENT_SIZE) != 0) {
+      Gzip.writeInt(dst, pos, (int) contentSize);
+      Gzip.writeInt(dst, pos + 4, (int) (contentSize >>> 32));
+      pos += 8;
+    }
+    dst[pos] = (byte) (XXHash32.hash(dst, off + 4, pos - off - 4, 0) >>> 8);
+    return pos + 1;
+  }
+
+  /**
+   * Returns the length of the frame header at the given offset, or -1 if it is not complete.
+   *
+   * @throws QatException if the bytes are not an LZ4 frame header.
+   */
+  static int frameHeaderLength(byte[] src, int off, int len) {
+    if (len < 7) return -1;
+    int flg = src[off + 4] & 0xFF;
+    if ((flg & 0xC0) != FLG_VERSION) throw malformed();
+    int headerLen =
+        7 + ((flg & FLG_CONTENT_SIZE) != 0 ? 8 : 0) + ((flg & FLG_DICT_ID) != 0 ? 4 : 0);
+    if (len < headerLen) return -1;
+    int hc = (XXHash32.hash(src, off + 4, headerLen - 5, 0) >>> 8) & 0xFF;
+    if (hc != (src[off + headerLen - 1] & 0xFF))
+      throw new QatException("QZ_DATA_ERROR: LZ4 frame header checksum mismatch.");
+    return headerLen;
+  }
+
+  private static int writeSequence(
+      byte[] src, int litOff, int litLen, int offset, int matchLen, byte[] dst, int op, int oend) {
+    long worstCase = 1L + litLen / 255 + 1 + litLen + 2 + matchLen / 255 + 1;
+    if (worstCase > oend - op) return -1;
+
+    int tokenPos = op++;
+    int token;
+    if (litLen >= 15) {
+      token = 15 << 4;
+      int len = litLen - 15;
+      for (; len >= 255; len -= 255) dst[op++] = (byte) 255;
+      dst[op++] = (byte) len;
+    } else {
+      token = litLen << 4;
+    }
+    System.arraycopy(src, litOff, dst, op, litLen);
+    op += litLen;
+
+    if (matchLen > 0) {
+      dst[op++] = (byte) offset;
+      dst[op++] = (byte) (offset >>> 8);
+      int len = matchLen - MIN_MATCH;
+      if (len >= 15) {
+        token |= 15;
+        len -= 15;
+        for (; len >= 255; len -= 255) dst[op++] = (byte) 255;
+        dst[op++] = (byte) len;
+      } else {
+        token |= len;
+      }
+    }
+    dst[tokenPos] = (byte) token;
+    return op;
+  }
+
+  private static int hash(int seq) {
+    return (seq * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  private static int readInt(byte[] b, int off) {
+    return Gzip.readInt(b, off);
+  }
+
+  private static QatException malformed() {
+    return new QatException("QZ_DATA_ERROR: Malformed LZ4 data.");
+  }
+}
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import java.util.Arrays;
+
+/**
+ * A streaming decoder for a sequence of LZ4 frames and skippable frames. Like the QATzip software
+ * path, it keeps its state between calls, so frames may be split across any number of calls. Both
+ * independent and linked blocks are supported; dictionaries are not.
+ */
+final class Lz4FrameDecoder {
+  private static final int HEADER = 0;
+  private static final int BLOCK_SIZE = 1;
+  private static final int BLOCK = 2;
+  private static final int CHECKSUM = 3;
+  private static final int SKIP = 4;
+
+  /** The history that linked blocks may refer to. */
+  private static final int WINDOW_SIZE = 64 * 1024;
+
+  private final XXHash32 contentHash = new XXHash32();
+  private byte[] pending = new byte[Lz4.FRAME_HEADER_LENGTH + 4];
+  private int pendingLen;
+  private int state = HEADER;
+  private int flg;
+  private int maxBlock;
+  private int blockSize;
+  private long skipRemaining;
+
+  /** The content size declared by the frame header, or -1 if there is none. */
+  private long contentSize;
+
+  /** The number of bytes decoded from the blocks of the current frame. */
+  private long decoded;
+
+  /** Decoded bytes not yet returned, and the history of linked blocks. */
+  private byte[] window;
+
+  private int histLen;
+  private int outPos;
+  private int outLen;
+  private int consumed;
+
+  /**
+   * Decompresses as much of the source range as possible. Decoding stops when the source is
+   * exhausted or the destination is full. If bytes that do not start a frame follow at least one
+   * byte of output, decoding stops before them, as QATzip does.
+   *
+   * @return the number of bytes written to the destination.
+   * @throws QatException if the data is not valid LZ4 frame data or a checksum does not match.
+   */
+  int decode(byte[] src, int off, int len, byte[] dst, int dstOff, int dstLen) {
+    int ip = off;
+    int end = off + len;
+    int op = dstOff;
+    int oend = dstOff + dstLen;
+    loop:
+    while (true) {
+      if (outPos < outLen) {
+        int n = Math.min(outLen - outPos, oend - op);
+        System.arraycopy(window, outPos, dst, op, n);
+        if ((flg & Lz4.FLG_CONTENT_CHECKSUM) != 0) contentHash.update(dst, op, n);
+        outPos += n;
+        op += n;
+        if (outPos < outLen) break loop;
+      }
+
+      switch (state) {
+        case HEADER:
+          {
+            if (ip == end) break loop;
+            if (pendingLen == 0 && op > dstOff && !startsFrame(src[ip])) break loop;
+            ip = gather(src, ip, end, 4);
+            if (pendingLen < 4) break loop;
+            int magic = Gzip.readInt(pending, 0);
+            if ((magic & 0xFFFFFFF0) == Lz4.SKIPPABLE_MAGIC) {
+              ip = gather(src, ip, end, 8);
+              if (pendingLen < 8) break loop;
+              skipRemaining = Gzip.readInt(pending, 4) & 0xFFFFFFFFL;
+              pendingLen = 0;
+              state = SKIP;
+              break;
+            }
+            if (magic != Lz4.MAGIC) throw malformed();
+            ip = gather(src, ip, end, 7);
+            if (pendingLen < 7) break loop;
+            if ((pending[4] & Lz4.FLG_DICT_ID) != 0)
+              throw new QatException("QZ_DATA_ERROR: LZ4 dictionaries are not supported.");
+            ip = gather(src, ip, end, 7 + ((pending[4] & Lz4.FLG_CONTENT_SIZE) != 0 ? 8 : 0));
+            if (Lz4.frameHeaderLength(pending, 0, pendingLen) < 0) break loop;
+            flg = pending[4] & 0xFF;
+            maxBlock = Lz4.maxBlockSize(pending[5] & 0xFF);
+            contentSize =
+                (flg & Lz4.FLG_CONTENT_SIZE) != 0
+                    ? (Gzip.readInt(pending, 6) & 0xFFFFFFFFL)
+                        | ((long) Gzip.readInt(pending, 10) << 32)
+                    : -1;
+            decoded = 0;
+            int windowLen = maxBlock + (linked() ? 2 * WINDOW_SIZE : 0);
+            if (window == null || window.length < windowLen) window = new byte[windowLen];
+            histLen = 0;
+            contentHash.reset();
+            pendingLen = 0;
+            state = BLOCK_SIZE;
+            break;
+          }
+        case BLOCK_SIZE:
+          {
+            ip = gather(src, ip, end, 4);
+            if (pendingLen < 4) break loop;
+            blockSize = Gzip.readInt(pending, 0);
+            pendingLen = 0;
+            if (blockSize == 0) {
+              if (contentSize >= 0 && decoded != contentSize)
+                throw new QatException("QZ_DATA_ERROR: LZ4 content size mismatch.");
+              state = (flg & Lz4.FLG_CONTENT_CHECKSUM) != 0 ? CHECKSUM : HEADER;
+            } else {
+              if ((blockSize & ~Lz4.UNCOMPRESSED_BIT) > maxBlock) throw malformed();
+              state = BLOCK;
+            }
+            break;
+          }
+        case BLOCK:
+          {
+            int dataLen = blockSize & ~Lz4.UNCOMPRESSED_BIT;
+            int blockLen = dataLen + ((flg & Lz4.FLG_BLOCK_CHECKSUM) != 0 ? 4 : 0);
+            byte[] b;
+            int bo;
+            if (pendingLen == 0 && end - ip >= blockLen) {
+              b = src;
+              bo = ip;
+              ip += blockLen;
+            } else {
+              if (pending.length < blockLen) pending = Arrays.copyOf(pending, blockLen);
+              ip = gather(src, ip, end, blockLen);
+              if (pendingLen < blockLen) break loop;
+              b = pending;
+              bo = 0;
+              pendingLen = 0;
+            }
+            if ((flg & Lz4.FLG_BLOCK_CHECKSUM) != 0
+                && XXHash32.hash(b, bo, dataLen, 0) != Gzip.readInt(b, bo + dataLen))
+              throw new QatException("QZ_DATA_ERROR: LZ4 block checksum mismatch.");
+            state = BLOCK_SIZE;
+
+            boolean stored = (blockSize & Lz4.UNCOMPRESSED_BIT) != 0;
+            if (!linked()) {
+              // Decode straight into the destination when the block fits.
+              int n;
+              if (stored) {
+                n = dataLen <= oend - op ? dataLen : -1;
+                if (n >= 0) System.arraycopy(b, bo, dst, op, n);
+              } else {
+                n = Lz4.decompress(b, bo, dataLen, dst, op, oend - op, op);
+              }
+              if (n >= 0) {
+                if ((flg & Lz4.FLG_CONTENT_CHECKSUM) != 0) contentHash.update(dst, op, n);
+                decoded += n;
+                op += n;
+                break;
+              }
+            }
+            decodeToWindow(b, bo, dataLen, stored);
+            break;
+          }
+        case CHECKSUM:
+          {
+            ip = gather(src, ip, end, 4);
+            if (pendingLen < 4) break loop;
+            pendingLen = 0;
+            if (contentHash.getValue() != Gzip.readInt(pending, 0))
+              throw new QatException("QZ_DATA_ERROR: LZ4 content checksum mismatch.");
+            state = HEADER;
+            break;
+          }
+        default: // SKIP
+          {
+            int n = (int) Math.min(skipRemaining, end - ip);
+            ip += n;
+            skipRemaining -= n;
+            if (skipRemaining > 0) break loop;
+            state = HEADER;
+            break;
+          }
+      }
+    }
+    consumed = ip - off;
+    return op - dstOff;
+  }
+
+  /** Returns the number of source bytes consumed by the last call to {@link #decode}. */
+  int consumed() {
+    return consumed;
+  }
+
+  /** Returns true if no frame is partially decoded and all decoded bytes have been returned. */
+  boolean atFrameBoundary() {
+    return state == HEADER && pendingLen == 0 && outPos == outLen;
+  }
+
+  /** Discards any partially decoded frame. */
+  void reset() {
+    state = HEADER;
+    pendingLen = 0;
+    outPos = outLen = histLen = 0;
+  }
+
+  private boolean linked() {
+    return (flg & Lz4.FLG_BLOCK_INDEPENDENCE) == 0;
+  }
+
+  /** Decodes a block into the window, from where it is returned by later iterations. */
+  private void decodeToWindow(byte[] b, int bo, int dataLen, boolean stored) {
+    if (linked()) {
+      if (histLen + maxBlock > window.length) {
+        System.arraycopy(window, histLen - WINDOW_SIZE, window, 0, WINDOW_SIZE);
+        histLen = WINDOW_SIZE;
+      }
+    } else {
+      histLen = 0;
+    }
+    int n;
+    if (stored) {
+      System.arraycopy(b, bo, window, histLen, dataLen);
+      n = dataLen;
+    } else {
+      n = Lz4.decompress(b, bo, dataLen, window, histLen, maxBlock, 0);
+      if (n < 0) throw malformed();
+    }
+    decoded += n;
+    outPos = histLen;
+    outLen = histLen + n;
+    if (linked()) histLen += n;
+  }
+
+  /** Copies source bytes into the pending buffer until it holds the given number of bytes. */
+  private int gather(byte[] src, int ip, int end, int need) {
+    int n = Math.min(need - pendingLen, end - ip);
+    if (n <= 0) return ip;
+    System.arraycopy(src, ip, pending, pendingLen, n);
+    pendingLen += n;
+    return ip + n;
+  }
+
+  private static boolean startsFrame(byte b) {
+    return b == (byte) Lz4.MAGIC || (b & 0xF0) == (Lz4.SKIPPABLE_MAGIC & 0xF0);
+  }
+
+  private static QatException malformed() {
+    return new QatException("QZ_DATA_ERROR: Malformed LZ4 data.");
+  }
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splits compressed input into runs of whole gzip members or LZ4 frames that can be decompressed
+ * independently. Splitting relies on sizes recorded in the data: the 'QZ' subfield of gzip-ext
+ * headers, and the content size and block sizes of LZ4 frames. Data that does not record them, such
+ * as plain gzip members, cannot be split.
+ */
+final class MemberSplitter {
+  private final InputStream in;
+  private final Algorithm algorithm;
+  private final int targetSize;
+  private byte[] buf;
+  private int pos;
+  private int limit;
+  private boolean eof;
+  private boolean splittable = true;
+
+  /** A run of whole members and the size of the data they hold. */
+  static final class Unit {
+    final byte[] data;
+    final int decompressedLength;
+
+    Unit(byte[] data, int decompressedLength) {
+      this.data = data;
+      this.decompressedLength = decompressedLength;
+    }
+  }
+
+  /**
+   * Creates a splitter.
+   *
+   * @param in the compressed input
+   * @param algorithm the algorithm the input was compressed with
+   * @param targetSize the number of compressed or uncompressed bytes after which a unit ends
+   */
+  MemberSplitter(InputStream in, Algorithm algorithm, int targetSize) {
+    this.in = in;
+    this.algorithm = algorithm;
+    this.targetSize = targetSize;
+    this.buf = new byte[Math.max(targetSize, Gzip.EXT_HEADER_LENGTH)];
+  }
+
+  /**
+   * Returns the next unit, or null if the input is exhausted or the rest of it cannot be split. In
+   * the latter case {@link #splittable()} returns false and {@link #remaining()} returns the bytes
+   * that were read but not returned.
+   *
+   * @throws IOException if the input could not be read
+   */
+  Unit next() throws IOException {
+    if (!splittable) return null;
+    int scan = 0;
+    long decompressed = 0;
+    while (scan < targetSize && decompressed < targetSize) {
+      if (!fill(scan + 1)) break;
+      long[] member = algorithm == Algorithm.DEFLATE ? measureMember(scan) : measureFrame(scan);
+      if (member == null || decompressed + member[1] > Integer.MAX_VALUE - 8) {
+        if (scan == 0) {
+          splittable = false;
+          return null;
+        }
+        break;
+      }
+      scan += (int) member[0];
+      decompressed += member[1];
+    }
+    if (scan == 0) return null;
+    Unit unit = new Unit(Arrays.copyOfRange(buf, pos, pos + scan), (int) decompressed);
+    pos += scan;
+    return unit;
+  }
+
+  /** Returns false if the rest of the input cannot be split. */
+  boolean splittable() {
+    return splittable;
+  }
+
+  /** Returns the bytes that were read from the input but not returned in a unit. */
+  byte[] remaining() {
+    return Arrays.copyOfRange(buf, pos, limit);
+  }
+
+  /**
+   * Measures the gzip member at the given offset from the current position.
+   *
+   * @return the member length and its uncompressed size, or null if it cannot be measured.
+   */
+  private long[] measureMember(int scan) throws IOException {
+    fill(scan + 2);
+    if (!Gzip.isGzip(buf, pos + scan, limit - pos - scan)) return null;
+    Gzip.Header header;
+    for (int need = Gzip.EXT_HEADER_LENGTH; ; need *= 2) {
+      boolean complete = fill(scan + need);
+      try {
+        header = Gzip.Header.parse(buf, pos + scan, limit - pos - scan);
+      } catch (QatException e) {
+        return null;
+      }
+      if (header != null) break;
+      if (!complete) return null;
+    }
+    if (header.srcSize < 0 || header.destSize < 0) return null;
+    long length = (long) header.length + header.destSize + Gzip.TRAILER_LENGTH;
+    if (scan + length > Integer.MAX_VALUE - 8 || !fill(scan + (int) length)) return null;
+    return new long[] {length, header.srcSize};
+  }
+
+  /**
+   * Measures the LZ4 frame or skippable frame at the given offset from the current position.
+   *
+   * @return the frame length and its uncompressed size, or null if it cannot be measured.
+   */
+  private long[] measureFrame(int scan) throws IOException {
+    if (!fill(scan + 8)) return null;
+    int off = pos + scan;
+    int magic = Gzip.readInt(buf, off);
+    if ((magic & 0xFFFFFFF0) == Lz4.SKIPPABLE_MAGIC) {
+      long length = 8 + (Gzip.readInt(buf, off + 4) & 0xFFFFFFFFL);
+      if (scan + length > Integer.MAX_VALUE - 8 || !fill(scan + (int) length)) return null;
+      return new long[] {length, 0};
+    }
+    if (magic != Lz4.MAGIC) return null;
+
+    int headerLength;
+    if (!fill(scan + Lz4.FRAME_HEADER_LENGTH + 4)) return null;
+    off = pos + scan;
+    try {
+      headerLength = Lz4.frameHeaderLength(buf, off, limit - off);
+    } catch (QatException e) {
+      return null;
+    }
+    int flg = buf[off + 4] & 0xFF;
+    if (headerLength < 0 || (flg & Lz4.FLG_CONTENT_SIZE) == 0 || (flg & Lz4.FLG_DICT_ID) != 0)
+      return null;
+    long contentSize =
+        (Gzip.readInt(buf, off + 6) & 0xFFFFFFFFL) | (long) Gzip.readInt(buf, off + 10) << 32;
+    if (contentSize < 0 || contentSize > Integer.MAX_VALUE - 8) return null;
+
+    long length = headerLength;
+    while (true) {
+      if (scan + length + 4 > Integer.MAX_VALUE - 8 || !fill(scan + (int) length + 4)) return null;
+      int blockSize = Gzip.readInt(buf, pos + scan + (int) length);
+      length += 4;
+      if (blockSize == 0) break;
+      length += (blockSize & ~Lz4.UNCOMPRESSED_BIT) + ((flg & Lz4.FLG_BLOCK_CHECKSUM) != 0 ? 4 : 0);
+    }
+    if ((flg & Lz4.FLG_CONTENT_CHECKSUM) != 0) length += 4;
+    if (scan + length > Integer.MAX_VALUE - 8 || !fill(scan + (int) length)) return null;
+    return new long[] {length, contentSize};
+  }
+
+  /**
+   * Reads input until at least the given number of bytes follow the current position.
+   *
+   * @return false if the input ends first.
+   */
+  private boolean fill(int n) throws IOException {
+    if (limit - pos >= n) return true;
+    if (buf.length - pos < n) {
+      if (buf.length < n) {
+        byte[] b = new byte[Math.max(n, 2 * buf.length)];
+        System.arraycopy(buf, pos, b, 0, limit - pos);
+        buf = b;
+      } else {
+        System.arraycopy(buf, pos, buf, 0, limit - pos);
+      }
+      limit -= pos;
+      pos = 0;
+    }
+    while (limit - pos < n && !eof) {
+      int r = in.read(buf, limit, buf.length - limit);
+      if (r < 0) eof = true;
+      else limit += r;
+    }
+    return limit - pos >= n;
+  }
+}
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatCompressorOutputStream.FlushPolicy;
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+import static com.intel.qat.QatZipper.Passthrough;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * This class implements an OutputStream filter that compresses data using Intel &reg; QuickAssist
+ * Technology (QAT) across several sessions at once.
+ *
+ * <p>Input is split into independent blocks that are compressed concurrently, one block per
+ * session, and written to the underlying stream in order. Each block is a complete sequence of gzip
+ * members (or LZ4 frames), so the output is the same kind of data that {@link
+ * QatCompressorOutputStream} writes and can be read by {@link QatDecompressorInputStream}. At most
+ * <code>maxInFlight</code> blocks are queued or being compressed; once that many are pending,
+ * writes wait for the oldest block to be written to the underlying stream.
+ *
+ * <p>As with {@link QatCompressorOutputStream}, only an explicit {@link #flush()} flushes the
+ * underlying stream, and only under {@link FlushPolicy#SYNC}.
+ */
+public class ParallelQatCompressorOutputStream extends FilterOutputStream {
+  private final BlockPipeline pipeline;
+  private FlushPolicy flushPolicy = FlushPolicy.SYNC;
+
+  /** Read by the thread that compresses each block. */
+  private volatile Passthrough passthrough = Passthrough.NONE;
+
+  /** The default number of sessions. */
+  public static final int DEFAULT_SESSIONS =
+      Math.min(4, Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Creates a new output stream with {@link Algorithm#DEFLATE}, {@link
+   * QatZipper#DEFAULT_COMPRESS_LEVEL}, {@link Mode#AUTO} and {@link #DEFAULT_SESSIONS} sessions.
+   *
+   * @param out the output stream
+   */
+  public ParallelQatCompressorOutputStream(OutputStream out) {
+    this(out, Algorithm.DEFLATE);
+  }
+
+  /**
+   * Creates a new output stream with the given algorithm, {@link QatZipper#DEFAULT_COMPRESS_LEVEL},
+   * {@link Mode#AUTO} and {@link #DEFAULT_SESSIONS} sessions.
+   *
+   * @param out the output stream
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   */
+  public ParallelQatCompressorOutputStream(OutputStream out, Algorithm algorithm) {
+    this(out, algorithm, QatZipper.DEFAULT_COMPRESS_LEVEL, Mode.AUTO);
+  }
+
+  /**
+   * Creates a new output stream with the given parameters and {@link #DEFAULT_SESSIONS} sessions.
+   * The block size is a multiple of the QATzip hardware buffer size, between 64 KB and 1 MB.
+   *
+   * @param out the output stream
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   */
+  public ParallelQatCompressorOutputStream(
+      OutputStream out, Algorithm algorithm, int level, Mode mode) {
+    this(
+        out,
+        QatZipper.defaultBlockSize(algorithm, mode),
+        algorithm,
+        level,
+        mode,
+        DEFAULT_SESSIONS,
+        2 * DEFAULT_SESSIONS);
+  }
+
+  /**
+   * Creates a new output stream with the given parameters.
+   *
+   * @param out the output stream
+   * @param blockSize the number of uncompressed bytes in each block
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param sessions the number of sessions, and of threads, that compress blocks
+   * @param maxInFlight the maximum number of blocks that are queued or being compressed
+   */
+  public ParallelQatCompressorOutputStream(
+      OutputStream out,
+      int blockSize,
+      Algorithm algorithm,
+      int level,
+      Mode mode,
+      int sessions,
+      int maxInFlight) {
+    super(out);
+    if (blockSize <= 0 || sessions <= 0 || maxInFlight <= 0) throw new IllegalArgumentException();
+    Objects.requireNonNull(out);
+    pipeline =
+        new BlockPipeline(
+            out,
+            new SessionPool(algorithm, level, mode, sessions, "qat-parallel-compressor"),
+            blockSize,
+            maxInFlight,
+            this::compress);
+  }
+
+  /**
+   * Writes a byte to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @throws IOException if this stream is closed
+   */
+  @Override
+  public void write(int b) throws IOException {
+    pipeline.write(b);
+  }
+
+  /**
+   * Writes data from the given byte array to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @throws IOException if this stream is closed
+   */
+  @Override
+  public void write(byte[] b) throws IOException {
+    write(b, 0, b.length);
+  }
+
+  /**
+   * Writes data from the given byte array to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @param off the starting offset of the data
+   * @param len the length of the data
+   * @throws IOException if this stream is closed
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    pipeline.write(b, off, len);
+  }
+
+  /**
+   * Compresses all buffered data, waits for every pending block to be written to the underlying
+   * stream, and flushes it under {@link FlushPolicy#SYNC}.
+   *
+   * @throws IOException if this stream is closed or a block could not be compressed or written
+   */
+  @Override
+  public void flush() throws IOException {
+    pipeline.writeAll();
+    if (flushPolicy == FlushPolicy.SYNC) out.flush();
+  }
+
+  /**
+   * Sets what {@link #flush()} does besides compressing and writing buffered data.
+   *
+   * @param flushPolicy the flush policy
+   */
+  public void setFlushPolicy(FlushPolicy flushPolicy) {
+    this.flushPolicy = Objects.requireNonNull(flushPolicy);
+  }
+
+  /**
+   * Returns the flush policy.
+   *
+   * @return the flush policy
+   */
+  public FlushPolicy getFlushPolicy() {
+    return flushPolicy;
+  }
+
+  /**
+   * Sets what is done with blocks that do not compress; see {@link QatZipper#setPassthrough}. It
+   * applies to blocks compressed after the call. The default is {@link Passthrough#NONE}.
+   *
+   * @param passthrough the passthrough policy
+   */
+  public void setPassthrough(Passthrough passthrough) {
+    this.passthrough = Objects.requireNonNull(passthrough);
+  }
+
+  /**
+   * Returns what is done with blocks that do not compress.
+   *
+   * @return the passthrough policy
+   */
+  public Passthrough getPassthrough() {
+    return passthrough;
+  }
+
+  /**
+   * Writes any remaining data to the compressed output stream and releases resources. This method
+   * will close the underlying output stream, even if the remaining data could not be written.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (pipeline.isClosed()) return;
+    try {
+      flush();
+    } finally {
+      try {
+        pipeline.close();
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  private int compress(QatZipper qzip, byte[] input, int length, byte[] output) {
+    qzip.setPassthrough(passthrough);
+    return qzip.compress(input, 0, length, output, 0, output.length);
+  }
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Objects;
+
+/**
+ * This class implements an InputStream that reads BGZF (blocked gzip) data, decompressing each
+ * block using Intel &reg; QuickAssist Technology (QAT).
+ *
+ * <p>Empty blocks, including the EOF markers of concatenated files, are skipped. When the data is
+ * read from a {@link SeekableByteChannel}, {@link #seek(long)} moves to a virtual offset, as
+ * returned by {@link #getFilePointer()} or {@link QatBgzfOutputStream#getFilePointer()}, by
+ * decompressing only the block that holds it.
+ */
+public class QatBgzfInputStream extends InputStream {
+  private final SeekableByteChannel channel;
+  private InputStream in;
+  private final Mode mode;
+  private QatZipper qzip;
+  private final byte[] compressed = new byte[Bgzf.MAX_BLOCK_SIZE];
+  private final byte[] block = new byte[Bgzf.MAX_BLOCK_SIZE];
+  private int blockPos;
+  private int blockLen;
+
+  /** The offset in the compressed data of the current block. */
+  private long blockAddress;
+
+  /** The offset in the compressed data of the next block. */
+  private long nextBlockAddress;
+
+  private boolean eof;
+  private boolean closed;
+
+  /**
+   * Creates a new input stream with {@link Mode#AUTO}. {@link #seek(long)} is not supported.
+   *
+   * @param in the input stream
+   */
+  public QatBgzfInputStream(InputStream in) {
+    this(in, null, Mode.AUTO);
+  }
+
+  /**
+   * Creates a new input stream that reads from the current position of the given channel, with
+   * {@link Mode#AUTO}.
+   *
+   * @param channel the channel holding the BGZF data
+   * @throws IOException if an I/O error occurs
+   */
+  public QatBgzfInputStream(SeekableByteChannel channel) throws IOException {
+    this(channel, Mode.AUTO);
+  }
+
+  /**
+   * Creates a new input stream that reads from the current position of the given channel.
+   *
+   * @param channel the channel holding the BGZF data
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @throws IOException if an I/O error occurs
+   */
+  public QatBgzfInputStream(SeekableByteChannel channel, Mode mode) throws IOException {
+    this(Channels.newInputStream(channel), channel, mode);
+    nextBlockAddress = channel.position();
+  }
+
+  private QatBgzfInputStream(InputStream in, SeekableByteChannel channel, Mode mode) {
+    this.in = Objects.requireNonNull(in);
+    this.channel = channel;
+    this.mode = mode;
+    qzip = new QatZipper(Algorithm.DEFLATE, mode);
+  }
+
+  /**
+   * Reads the next byte of uncompressed data.
+   *
+   * @return the next byte of data or -1 if the end of the stream is reached.
+   * @throws IOException if the stream is closed, the data is not valid or an I/O error occurs
+   */
+  @Override
+  public int read() throws IOException {
+    ensureOpen();
+    if (!ensureData()) return -1;
+    return block[blockPos++] & 0xFF;
+  }
+
+  /**
+   * Reads uncompressed data into the provided array.
+   *
+   * @param b the array into which the data is read
+   * @param off the starting offset in the array
+   * @param len the maximum number of bytes to be read
+   * @return the number of bytes read, or -1 if the end of the stream is reached
+   * @throws IOException if the stream is closed, the data is not valid or an I/O error occurs
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0) return 0;
+    int read = 0;
+    while (len > 0 && ensureData()) {
+      int n = Math.min(len, blockLen - blockPos);
+      System.arraycopy(block, blockPos, b, off, n);
+      blockPos += n;
+      off += n;
+      len -= n;
+      read += n;
+    }
+    return read == 0 ? -1 : read;
+  }
+
+  /**
+   * Skips uncompressed data.
+   *
+   * @param n the number of bytes to skip
+   * @return the number of bytes skipped
+   * @throws IOException if the stream is closed, the data is not valid or an I/O error occurs
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    ensureOpen();
+    long skipped = 0;
+    while (skipped < n && ensureData()) {
+      int step = (int) Math.min(n - skipped, blockLen - blockPos);
+      blockPos += step;
+      skipped += step;
+    }
+    return skipped;
+  }
+
+  /**
+   * Returns the number of uncompressed bytes left in the current block.
+   *
+   * @return the number of bytes that can be read without decompressing another block
+   * @throws IOException if the stream is closed
+   */
+  @Override
+  public int available() throws IOException {
+    ensureOpen();
+    return blockLen - blockPos;
+  }
+
+  /**
+   * Returns the virtual offset of the next byte to be read.
+   *
+   * @return the virtual offset
+   * @throws IOException if the stream is closed
+   */
+  public long getFilePointer() throws IOException {
+    ensureOpen();
+    if (blockPos == blockLen) return Bgzf.virtualOffset(nextBlockAddress, 0);
+    return Bgzf.virtualOffset(blockAddress, blockPos);
+  }
+
+  /**
+   * Moves to the given virtual offset.
+   *
+   * @param virtualOffset the virtual offset of the next byte to be read
+   * @throws IOException if the stream is closed, is not read from a channel, the offset is not in
+   *     the data or an I/O error occurs
+   */
+  public void seek(long virtualOffset) throws IOException {
+    ensureOpen();
+    if (channel == null) throw new IOException("Seek requires a SeekableByteChannel");
+    long address = virtualOffset >>> 16;
+    int offset = (int) (virtualOffset & 0xFFFF);
+    channel.position(address);
+    nextBlockAddress = address;
+    blockPos = blockLen = 0;
+    eof = false;
+    if (!readBlock()) {
+      if (offset == 0) return;
+      throw new IOException("Virtual offset " + virtualOffset + " is past the end of the data");
+    }
+    if (offset > blockLen)
+      throw new IOException("Virtual offset " + virtualOffset + " is past the end of its block");
+    blockPos = offset;
+  }
+
+  /**
+   * Closes this input stream and the underlying stream or channel.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    qzip.end();
+    in.close();
+  }
+
+  /**
+   * Checks whether the given channel ends with the BGZF EOF marker block, which shows that the file
+   * was not truncated. The channel's position is changed.
+   *
+   * @param channel the channel holding the BGZF data
+   * @return true if the data ends with an EOF marker
+   * @throws IOException if an I/O error occurs
+   */
+  public static boolean hasEofMarker(SeekableByteChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < Bgzf.EOF_MARKER.length) return false;
+    ByteBuffer tail = ByteBuffer.allocate(Bgzf.EOF_MARKER.length);
+    channel.position(size - tail.capacity());
+    while (tail.hasRemaining()) {
+      if (channel.read(tail) < 0) return false;
+    }
+    return ByteBuffer.wrap(Bgzf.EOF_MARKER).equals(tail.flip());
+  }
+
+  /** Decompresses blocks until one holds unread data, returning false at the end of the input. */
+  private boolean ensureData() throws IOException {
+    while (blockPos == blockLen) {
+      if (eof || !readBlock()) return false;
+    }
+    return true;
+  }
+
+  /** Reads and decompresses the next block, returning false at the end of the input. */
+  private boolean readBlock() throws IOException {
+    int len = readFully(0, Gzip.HEADER_LENGTH + 2);
+    if (len == 0) {
+      eof = true;
+      return false;
+    }
+    if (len < Gzip.HEADER_LENGTH + 2) throw new EOFException("Unexpected end of BGZF block");
+    int size;
+    try {
+      int xlen = (compressed[3] & Gzip.FEXTRA) != 0 ? Gzip.readShort(compressed, 10) : 0;
+      if (readFully(len, xlen) < xlen) throw new EOFException("Unexpected end of BGZF block");
+      size = Bgzf.blockSize(compressed, 0, len + xlen);
+      len += xlen;
+    } catch (QatException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    if (size < len + Gzip.TRAILER_LENGTH) throw new IOException("Corrupt BGZF block");
+    if (readFully(len, size - len) < size - len)
+      throw new EOFException("Unexpected end of BGZF block");
+
+    blockAddress = nextBlockAddress;
+    nextBlockAddress += size;
+    blockPos = 0;
+    blockLen = Gzip.readInt(compressed, size - 4);
+    if (blockLen < 0 || blockLen > Bgzf.MAX_BLOCK_SIZE) throw new IOException("Corrupt BGZF block");
+    if (blockLen == 0) return true;
+    int n;
+    try {
+      n = qzip.decompress(compressed, 0, size, block, 0, blockLen);
+    } catch (QatException e) {
+      n = -1;
+    }
+    if (n != blockLen) {
+      // Start over with a new session, as the old one may hold part of the corrupt block.
+      qzip.end();
+      qzip = new QatZipper(Algorithm.DEFLATE, mode);
+      blockLen = 0;
+      throw new IOException("Corrupt BGZF block at offset " + blockAddress);
+    }
+    return true;
+  }
+
+  private int readFully(int off, int len) throws IOException {
+    int read = 0;
+    while (read < len) {
+      int n = in.read(compressed, off + read, len - read);
+      if (n < 0) break;
+      read += n;
+    }
+    return read;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+  }
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * This class implements an OutputStream filter that writes BGZF (blocked gzip), as used for BAM,
+ * VCF and tabix files, compressing blocks using Intel &reg; QuickAssist Technology (QAT) across
+ * several sessions at once.
+ *
+ * <p>Each block holds up to 65280 uncompressed bytes and is a standard gzip member with a 'BC'
+ * extra subfield, so the output can be read by gzip, bgzip, htslib and {@link QatBgzfInputStream}.
+ * Blocks are compressed concurrently and written in order, as by {@link
+ * ParallelQatCompressorOutputStream}. Data that does not compress into a block is stored in it, so
+ * every 65280 bytes make exactly one block. {@link #close()} writes the empty block that marks the
+ * end of a BGZF file. {@link #getFilePointer()} returns the virtual offset of the next byte
+ * written.
+ */
+public class QatBgzfOutputStream extends FilterOutputStream {
+  private final BlockPipeline pipeline;
+
+  /**
+   * Creates a new output stream with {@link QatZipper#DEFAULT_COMPRESS_LEVEL}, {@link Mode#AUTO}
+   * and {@link ParallelQatCompressorOutputStream#DEFAULT_SESSIONS} sessions.
+   *
+   * @param out the output stream
+   */
+  public QatBgzfOutputStream(OutputStream out) {
+    this(out, QatZipper.DEFAULT_COMPRESS_LEVEL, Mode.AUTO);
+  }
+
+  /**
+   * Creates a new output stream with the given parameters and {@link
+   * ParallelQatCompressorOutputStream#DEFAULT_SESSIONS} sessions.
+   *
+   * @param out the output stream
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   */
+  public QatBgzfOutputStream(OutputStream out, int level, Mode mode) {
+    this(
+        out,
+        level,
+        mode,
+        ParallelQatCompressorOutputStream.DEFAULT_SESSIONS,
+        2 * ParallelQatCompressorOutputStream.DEFAULT_SESSIONS);
+  }
+
+  /**
+   * Creates a new output stream with the given parameters.
+   *
+   * @param out the output stream
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param sessions the number of sessions, and of threads, that compress blocks
+   * @param maxInFlight the maximum number of blocks that are queued or being compressed
+   */
+  public QatBgzfOutputStream(
+      OutputStream out, int level, Mode mode, int sessions, int maxInFlight) {
+    super(out);
+    if (sessions <= 0 || maxInFlight <= 0) throw new IllegalArgumentException();
+    Objects.requireNonNull(out);
+    pipeline =
+        new BlockPipeline(
+            out,
+            new SessionPool(Algorithm.DEFLATE, level, mode, sessions, "qat-bgzf-compressor"),
+            Bgzf.MAX_BLOCK_DATA,
+            maxInFlight,
+            QatBgzfOutputStream::compress);
+  }
+
+  /**
+   * Writes a byte to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @throws IOException if this stream is closed
+   */
+  @Override
+  public void write(int b) throws IOException {
+    pipeline.write(b);
+  }
+
+  /**
+   * Writes data from the given byte array to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @param off the starting offset of the data
+   * @param len the length of the data
+   * @throws IOException if this stream is closed
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    pipeline.write(b, off, len);
+  }
+
+  /**
+   * Returns the virtual offset of the next byte to be written. Waits for pending blocks to be
+   * written, so that their compressed sizes are known.
+   *
+   * @return the virtual offset
+   * @throws IOException if this stream is closed or a block could not be compressed or written
+   */
+  public long getFilePointer() throws IOException {
+    pipeline.writeFullBlocks();
+    return Bgzf.virtualOffset(pipeline.position(), pipeline.buffered());
+  }
+
+  /**
+   * Compresses all buffered data into a block, waits for every pending block to be written to the
+   * underlying stream, and flushes it.
+   *
+   * @throws IOException if this stream is closed or a block could not be compressed or written
+   */
+  @Override
+  public void flush() throws IOException {
+    pipeline.writeAll();
+    out.flush();
+  }
+
+  /**
+   * Writes any remaining data and the EOF marker block, and releases resources. This method will
+   * close the underlying output stream, even if the remaining data could not be written.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (pipeline.isClosed()) return;
+    try {
+      pipeline.writeAll();
+      out.write(Bgzf.EOF_MARKER);
+      out.flush();
+    } finally {
+      try {
+        pipeline.close();
+      } finally {
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * Compresses a block of input into a single BGZF block. Input that does not compress into a block
+   * is stored instead, as htsjdk does, so that the virtual offsets returned by {@link
+   * #getFilePointer()} while it was buffered stay within its block.
+   */
+  private static int compress(QatZipper qzip, byte[] input, int length, byte[] output) {
+    int n = qzip.compress(input, 0, length, output, 0, output.length);
+    int size = Bgzf.fromMember(output, n, output, 0);
+    if (size >= 0) return size;
+    n = Gzip.writeStoredMember(input, 0, length, output, 0);
+    return Bgzf.fromMember(output, n, output, 0);
+  }
+}
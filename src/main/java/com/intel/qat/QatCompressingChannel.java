@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * A channel that compresses the bytes written to it using Intel &reg; QuickAssist Technology (QAT)
+ * and writes them to another channel. The output is a sequence of gzip members (or LZ4 frames), as
+ * written by {@link QatCompressorOutputStream}, one per block.
+ *
+ * <p>Input is gathered into a direct block buffer and compressed with direct buffers only; large
+ * writes from direct buffers are compressed in place without being copied. The sink may be
+ * non-blocking: at most one compressed block is held back while the sink cannot take it, and {@link
+ * #write(ByteBuffer)} then returns early, possibly having consumed nothing. {@link #flush()}
+ * reports whether all pending output has been written, and must return true before {@link #close()}
+ * is called.
+ */
+public class QatCompressingChannel implements GatheringByteChannel {
+  private final WritableByteChannel sink;
+  private final QatZipper qzip;
+  private ByteBuffer input;
+
+  /** Compressed data not yet taken by the sink, ready to be read. */
+  private ByteBuffer output;
+
+  private boolean closed;
+
+  /**
+   * Creates a new channel with {@link Algorithm#DEFLATE}, {@link QatZipper#DEFAULT_COMPRESS_LEVEL}
+   * and {@link Mode#AUTO}.
+   *
+   * @param sink the channel to write compressed data to
+   */
+  public QatCompressingChannel(WritableByteChannel sink) {
+    this(sink, Algorithm.DEFLATE);
+  }
+
+  /**
+   * Creates a new channel with the given algorithm, {@link QatZipper#DEFAULT_COMPRESS_LEVEL} and
+   * {@link Mode#AUTO}.
+   *
+   * @param sink the channel to write compressed data to
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   */
+  public QatCompressingChannel(WritableByteChannel sink, Algorithm algorithm) {
+    this(
+        sink,
+        QatZipper.defaultBlockSize(algorithm, Mode.AUTO),
+        algorithm,
+        QatZipper.DEFAULT_COMPRESS_LEVEL,
+        Mode.AUTO);
+  }
+
+  /**
+   * Creates a new channel with the given parameters.
+   *
+   * @param sink the channel to write compressed data to
+   * @param blockSize the number of uncompressed bytes in each block
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   */
+  public QatCompressingChannel(
+      WritableByteChannel sink, int blockSize, Algorithm algorithm, int level, Mode mode) {
+    Objects.requireNonNull(sink);
+    if (blockSize <= 0) throw new IllegalArgumentException();
+    this.sink = sink;
+    qzip = new QatZipper(algorithm, level, mode);
+    input = BufferPool.acquire(blockSize);
+    output = BufferPool.acquire(qzip.maxCompressedLength(blockSize));
+    output.flip();
+    closed = false;
+  }
+
+  /**
+   * Compresses bytes from the given buffer. Fewer bytes than remain may be consumed if the sink is
+   * non-blocking and cannot take the compressed data yet.
+   *
+   * @param src the buffer from which bytes are to be retrieved
+   * @return the number of bytes consumed from the buffer
+   * @throws IOException if this channel is closed or an I/O error occurs
+   */
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    ensureOpen();
+    int written = 0;
+    while (src.hasRemaining()) {
+      if (input.position() == 0 && src.isDirect() && src.remaining() >= input.capacity()) {
+        if (!drain()) break;
+        // Compress a whole block in place.
+        ByteBuffer block = src.duplicate();
+        block.limit(block.position() + input.capacity());
+        compress(block);
+        src.position(block.limit());
+        written += input.capacity();
+        continue;
+      }
+      if (!input.hasRemaining()) {
+        if (!drain()) break;
+        compress(null);
+        continue;
+      }
+      int n = Math.min(src.remaining(), input.remaining());
+      ByteBuffer slice = src.duplicate();
+      slice.limit(slice.position() + n);
+      input.put(slice);
+      src.position(slice.limit());
+      written += n;
+    }
+    return written;
+  }
+
+  /**
+   * Compresses bytes from a sequence of buffers, as if they were one buffer.
+   *
+   * @param srcs the buffers from which bytes are to be retrieved
+   * @param offset the offset of the first buffer in the array
+   * @param length the number of buffers to be accessed
+   * @return the number of bytes consumed from the buffers
+   * @throws IOException if this channel is closed or an I/O error occurs
+   */
+  @Override
+  public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    Objects.checkFromIndexSize(offset, length, srcs.length);
+    long written = 0;
+    for (int i = offset; i < offset + length; i++) {
+      int remaining = srcs[i].remaining();
+      int n = write(srcs[i]);
+      written += n;
+      if (n < remaining) break;
+    }
+    return written;
+  }
+
+  /**
+   * Compresses bytes from a sequence of buffers, as if they were one buffer.
+   *
+   * @param srcs the buffers from which bytes are to be retrieved
+   * @return the number of bytes consumed from the buffers
+   * @throws IOException if this channel is closed or an I/O error occurs
+   */
+  @Override
+  public long write(ByteBuffer[] srcs) throws IOException {
+    return write(srcs, 0, srcs.length);
+  }
+
+  /**
+   * Compresses all buffered input and writes as much pending output to the sink as it takes. With a
+   * blocking sink, all output is written.
+   *
+   * @return true if all output has been written to the sink
+   * @throws IOException if this channel is closed or an I/O error occurs
+   */
+  public boolean flush() throws IOException {
+    ensureOpen();
+    if (!drain()) return false;
+    if (input.position() > 0) compress(null);
+    return drain();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return !closed;
+  }
+
+  /**
+   * Compresses all buffered input, writes it to the sink and closes the sink. A non-blocking sink
+   * may not take all output at once, so call {@link #flush()} until it returns true before closing.
+   * Resources are released and the sink is closed even if this method throws.
+   *
+   * @throws IOException if an I/O error occurs, or the sink did not take all output
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    try {
+      if (!flush()) throw new IOException("The sink did not take all compressed output.");
+    } finally {
+      closed = true;
+      qzip.end();
+      BufferPool.release(input);
+      BufferPool.release(output);
+      input = null;
+      output = null;
+      sink.close();
+    }
+  }
+
+  /** Compresses the given block, or the buffered input if null, and starts writing it. */
+  private void compress(ByteBuffer block) throws IOException {
+    output.clear();
+    if (block == null) {
+      input.flip();
+      qzip.compress(input, output);
+      input.clear();
+    } else {
+      qzip.compress(block, output);
+    }
+    output.flip();
+    drain();
+  }
+
+  /**
+   * Writes pending output to the sink until it is written or the sink takes no more.
+   *
+   * @return true if no output is pending.
+   */
+  private boolean drain() throws IOException {
+    while (output.hasRemaining()) {
+      if (sink.write(output) == 0) return false;
+    }
+    return true;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) throw new ClosedChannelException();
+  }
+}
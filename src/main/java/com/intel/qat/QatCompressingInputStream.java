@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class implements an InputStream filter that compresses the data read from the underlying
+ * stream using Intel &reg; QuickAssist Technology (QAT). Reading it yields the same gzip members
+ * (or LZ4 frames) that {@link QatCompressorOutputStream} writes, so it can be handed as a body to
+ * APIs that pull an <code>InputStream</code>, without compressing into a temporary array or piping
+ * through a second thread.
+ *
+ * <p>Data is compressed lazily, a block at a time: a block is read from the underlying stream and
+ * compressed only when the previous one has been consumed, so memory use is constant. A positive
+ * <code>readAhead</code> lets a background thread read and compress up to that many blocks while
+ * the caller consumes earlier ones.
+ */
+public class QatCompressingInputStream extends FilterInputStream {
+  private QatZipper qzip;
+  private final int blockSize;
+  private boolean closed;
+  private boolean eof;
+
+  /** The block being consumed by the caller. */
+  private Block block;
+
+  /** Blocks read and compressed ahead, oldest first; null when compressing synchronously. */
+  private ArrayDeque<Future<Block>> pending;
+
+  private ArrayDeque<Block> freeBlocks;
+  private ExecutorService executor;
+  private int readAhead;
+
+  /**
+   * Creates a new input stream with {@link Algorithm#DEFLATE}, {@link
+   * QatZipper#DEFAULT_COMPRESS_LEVEL}, and {@link Mode#AUTO}.
+   *
+   * @param in the input stream of uncompressed data
+   */
+  public QatCompressingInputStream(InputStream in) {
+    this(in, Algorithm.DEFLATE);
+  }
+
+  /**
+   * Creates a new input stream with the given algorithm, {@link QatZipper#DEFAULT_COMPRESS_LEVEL},
+   * and {@link Mode#AUTO}.
+   *
+   * @param in the input stream of uncompressed data
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   */
+  public QatCompressingInputStream(InputStream in, Algorithm algorithm) {
+    this(in, algorithm, QatZipper.DEFAULT_COMPRESS_LEVEL, Mode.AUTO);
+  }
+
+  /**
+   * Creates a new input stream with the given algorithm, level and mode, and the default block size
+   * of the engine.
+   *
+   * @param in the input stream of uncompressed data
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   */
+  public QatCompressingInputStream(InputStream in, Algorithm algorithm, int level, Mode mode) {
+    this(in, QatZipper.defaultBlockSize(algorithm, mode), algorithm, level, mode, 0);
+  }
+
+  /**
+   * Creates a new input stream with the given parameters.
+   *
+   * @param in the input stream of uncompressed data
+   * @param blockSize the number of uncompressed bytes compressed at a time
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param readAhead the number of blocks read and compressed ahead of the caller on a background
+   *     thread; 0 compresses on the calling thread
+   */
+  public QatCompressingInputStream(
+      InputStream in, int blockSize, Algorithm algorithm, int level, Mode mode, int readAhead) {
+    super(in);
+    if (blockSize <= 0 || readAhead < 0) throw new IllegalArgumentException();
+    Objects.requireNonNull(in);
+    this.blockSize = blockSize;
+    qzip = new QatZipper(algorithm, level, mode);
+    block = new Block(blockSize, qzip.maxCompressedLength(blockSize));
+    if (readAhead > 0) {
+      this.readAhead = readAhead;
+      pending = new ArrayDeque<>(readAhead);
+      freeBlocks = new ArrayDeque<>(readAhead);
+      // One thread, so that blocks are read from the underlying stream in order.
+      executor =
+          Executors.newSingleThreadExecutor(
+              r -> {
+                Thread t = new Thread(r, "qat-compressor");
+                t.setDaemon(true);
+                return t;
+              });
+    }
+    closed = false;
+    eof = false;
+  }
+
+  /**
+   * Reads the next byte of compressed data.
+   *
+   * @return the next byte of data or -1 if the end of the stream is reached.
+   * @throws IOException if the stream is closed
+   */
+  @Override
+  public int read() throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+    if (!block.hasRemaining()) fill();
+    if (!block.hasRemaining()) return -1;
+    return Byte.toUnsignedInt(block.output[block.position++]);
+  }
+
+  /**
+   * Reads compressed data into the provided array.
+   *
+   * @param b the array into which the data is read
+   * @return the number of bytes read
+   * @throws IOException if the stream is closed
+   */
+  @Override
+  public int read(byte[] b) throws IOException {
+    return read(b, 0, b.length);
+  }
+
+  /**
+   * Reads compressed data into the provided array.
+   *
+   * @param b the array into which the data is read
+   * @param off the starting offset in the array
+   * @param len the maximum number of bytes to be read
+   * @return the number of bytes read, or -1 if the end of the stream is reached
+   * @throws IOException if the stream is closed
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+    Objects.requireNonNull(b);
+    if (off < 0 || len < 0 || off + len > b.length) throw new IndexOutOfBoundsException();
+    if (len == 0) return 0;
+    int result = 0;
+    while (len > 0) {
+      if (!block.hasRemaining()) {
+        // Return what has been read rather than wait for the next block.
+        if (result > 0) break;
+        fill();
+        if (!block.hasRemaining()) break;
+      }
+      int n = Math.min(len, block.remaining());
+      System.arraycopy(block.output, block.position, b, off, n);
+      block.position += n;
+      off += n;
+      len -= n;
+      result += n;
+    }
+    return result == 0 ? -1 : result;
+  }
+
+  /**
+   * Returns an estimate of the number of compressed bytes that can be read.
+   *
+   * @return 0 if and only if the end of the stream is reached
+   * @throws IOException if the stream is closed
+   */
+  @Override
+  public int available() throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+    if (block.hasRemaining()) return block.remaining();
+    if (eof) return 0;
+    else return 1;
+  }
+
+  /**
+   * Skips up to n bytes of compressed data.
+   *
+   * @param n the maximum number of bytes to skip
+   * @return the number of bytes skipped or 0 if n is negative.
+   * @throws IOException if the stream is closed
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+    long skipped = 0;
+    while (skipped < n) {
+      if (!block.hasRemaining()) {
+        fill();
+        if (!block.hasRemaining()) break;
+      }
+      int bytesToSkip = (int) Math.min(n - skipped, block.remaining());
+      block.position += bytesToSkip;
+      skipped += bytesToSkip;
+    }
+    return skipped;
+  }
+
+  /**
+   * Closes this input stream and releases resources. This method will close the underlying input
+   * stream.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    try {
+      if (executor != null) {
+        for (Future<Block> f : pending) f.cancel(false);
+        pending.clear();
+        Workers.shutdownAndAwait(executor);
+      }
+    } finally {
+      // The executor has terminated, so no task still reads the source or uses the session.
+      executor = null;
+      qzip.end();
+      block = null;
+      freeBlocks = null;
+      in.close();
+    }
+  }
+
+  /** Marks the current position in this input stream. This method does nothing. */
+  @Override
+  public void mark(int readLimit) {}
+
+  /**
+   * Repositions this stream to the position at the time the mark method was last called. This
+   * method does nothing but throw an IOException.
+   *
+   * @throws IOException when invoked.
+   */
+  @Override
+  public void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  /**
+   * Tests if this input stream supports the mark and reset methods. This method unconditionally
+   * returns false
+   *
+   * @return false
+   */
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  /** Makes the next compressed block current, leaving it empty at the end of the input. */
+  private void fill() throws IOException {
+    if (eof) return;
+    if (pending == null) {
+      compressNext(block);
+      if (!block.hasRemaining()) eof = true;
+      return;
+    }
+    while (pending.size() < readAhead) {
+      Block free =
+          freeBlocks.isEmpty() ? new Block(blockSize, block.output.length) : freeBlocks.pop();
+      pending.add(executor.submit(() -> compressNext(free)));
+    }
+    Block next;
+    try {
+      next = pending.remove().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new IOException(cause);
+    }
+    freeBlocks.push(block);
+    block = next;
+    if (!block.hasRemaining()) {
+      // Blocks after the end of the input are empty too.
+      eof = true;
+      for (Future<Block> f : pending) f.cancel(false);
+      pending.clear();
+    }
+  }
+
+  /**
+   * Reads the next block of the underlying stream and compresses it into the given block, which is
+   * left empty at the end of the input.
+   */
+  private Block compressNext(Block b) throws IOException {
+    b.position = 0;
+    b.limit = 0;
+    int len = 0;
+    while (len < blockSize) {
+      int n = in.read(b.input, len, blockSize - len);
+      if (n < 0) break;
+      len += n;
+    }
+    if (len > 0) b.limit = qzip.compress(b.input, 0, len, b.output, 0, b.output.length);
+    return b;
+  }
+
+  /** An uncompressed block and its compressed form, of which the caller reads position to limit. */
+  private static final class Block {
+    final byte[] input;
+    final byte[] output;
+    int position;
+    int limit;
+
+    Block(int blockSize, int outputSize) {
+      input = new byte[blockSize];
+      output = new byte[outputSize];
+    }
+
+    boolean hasRemaining() {
+      return position < limit;
+    }
+
+    int remaining() {
+      return limit - position;
+    }
+  }
+}
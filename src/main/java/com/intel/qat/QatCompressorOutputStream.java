@@ -8,26 +8,89 @@ package com.intel.qat;
 
 import static com.intel.qat.QatZipper.Algorithm;
 import static com.intel.qat.QatZipper.Mode;
+import static com.intel.qat.QatZipper.Passthrough;
 
+import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class implements an OutputStream filter that compresses data using Intel &reg; QuickAssist
  * Technology (QAT).
+ *
+ * <p>Each buffer-full of data is compressed into an independent block. Small buffers pay a JNI call
+ * and a block header per buffer, so for throughput use the block-mode constructors, which take a
+ * <code>useDirectBuffers</code> argument. Direct buffers are taken from a process-wide pool and
+ * returned on {@link #close()}, and compressed blocks are written straight to the sink when it is a
+ * {@link WritableByteChannel} or a {@link FileOutputStream}.
+ *
+ * <p>With a <code>pipelineDepth</code> of two or more, compression and sink I/O run on background
+ * threads: while block N is compressed, block N-1 is written to the sink and the caller fills block
+ * N+1. Blocks are written in order, and {@link #flush()} and {@link #close()} wait for all pending
+ * blocks. An error in the background is rethrown by the next call to write, flush or close.
+ *
+ * <p>Only an explicit {@link #flush()} flushes the underlying stream, and only under {@link
+ * FlushPolicy#SYNC}, the default; see {@link #setFlushPolicy(FlushPolicy)}.
+ *
+ * <p>Blocks of data that does not compress, such as media or encrypted payloads, can be written as
+ * stored blocks instead; see {@link #setPassthrough(Passthrough)}.
  */
 public class QatCompressorOutputStream extends FilterOutputStream {
-  private ByteBuffer inputBuffer;
   private QatZipper qzip;
-  private ByteBuffer outputBuffer;
+  private WritableByteChannel channel;
   private boolean closed;
 
+  /** The block being filled by the caller. */
+  private Block block;
+
+  /** Blocks that are ready to be filled; null when compressing synchronously. */
+  private BlockingQueue<Block> freeBlocks;
+
+  /** Every block, including those held by background tasks; null when compressing synchronously. */
+  private List<Block> blocks;
+
+  private int pipelineDepth;
+  private ExecutorService compressor;
+  private ExecutorService writer;
+
+  /** The first error raised in the background. */
+  private volatile Throwable failure;
+
+  private FlushPolicy flushPolicy = FlushPolicy.SYNC;
+
+  /** Read by the thread that compresses each block. */
+  private volatile Passthrough passthrough = Passthrough.NONE;
+
   /** The default size in bytes of the output buffer. */
   public static final int DEFAULT_BUFFER_SIZE = 512;
 
+  /**
+   * What an explicit {@link #flush()} does besides compressing and writing buffered data. Blocks
+   * that are written because the buffer is full never flush the underlying stream.
+   */
+  public static enum FlushPolicy {
+    /** Flushes the underlying stream as well. */
+    SYNC,
+
+    /**
+     * Leaves the underlying stream unflushed, so that buffering sinks can coalesce small writes.
+     */
+    NO_SINK_FLUSH
+  }
+
   /**
    * Creates a new output stream with {@link DEFAULT_BUFFER_SIZE}, {@link Algorithm#DEFLATE}, {@link
    * QatZipper#DEFAULT_COMPRESS_LEVEL}, and {@link Mode#AUTO}.
@@ -101,12 +164,118 @@ public class QatCompressorOutputStream extends FilterOutputStream {
    */
   public QatCompressorOutputStream(
       OutputStream out, int bufferSize, Algorithm algorithm, int level, Mode mode) {
+    this(out, bufferSize, algorithm, level, mode, false);
+  }
+
+  /**
+   * Creates a new output stream in block mode with the given parameters. The block size is a
+   * multiple of the QATzip hardware buffer size, between 64 KB and 1 MB.
+   *
+   * @param out the output stream
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param useDirectBuffers whether to use pooled direct buffers.
+   */
+  public QatCompressorOutputStream(
+      OutputStream out, Algorithm algorithm, int level, Mode mode, boolean useDirectBuffers) {
+    this(out, algorithm, level, mode, useDirectBuffers, 1);
+  }
+
+  /**
+   * Creates a new output stream in block mode with the given parameters. The block size is a
+   * multiple of the QATzip hardware buffer size, between 64 KB and 1 MB.
+   *
+   * @param out the output stream
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param useDirectBuffers whether to use pooled direct buffers.
+   * @param pipelineDepth the number of block buffers; see {@link #QatCompressorOutputStream(
+   *     OutputStream, int, Algorithm, int, Mode, boolean, int)}.
+   */
+  public QatCompressorOutputStream(
+      OutputStream out,
+      Algorithm algorithm,
+      int level,
+      Mode mode,
+      boolean useDirectBuffers,
+      int pipelineDepth) {
+    this(
+        out,
+        QatZipper.defaultBlockSize(algorithm, mode),
+        algorithm,
+        level,
+        mode,
+        useDirectBuffers,
+        pipelineDepth);
+  }
+
+  /**
+   * Creates a new output stream with the given parameters.
+   *
+   * @param out the output stream
+   * @param bufferSize the output buffer size
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param useDirectBuffers whether to use pooled direct buffers.
+   */
+  public QatCompressorOutputStream(
+      OutputStream out,
+      int bufferSize,
+      Algorithm algorithm,
+      int level,
+      Mode mode,
+      boolean useDirectBuffers) {
+    this(out, bufferSize, algorithm, level, mode, useDirectBuffers, 1);
+  }
+
+  /**
+   * Creates a new output stream with the given parameters.
+   *
+   * @param out the output stream
+   * @param bufferSize the output buffer size
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param useDirectBuffers whether to use pooled direct buffers.
+   * @param pipelineDepth the number of block buffers. With 1, blocks are compressed and written on
+   *     the calling thread. With 2 or more, they are compressed and written in the background; 3 or
+   *     more let filling, compression and writing all overlap.
+   */
+  public QatCompressorOutputStream(
+      OutputStream out,
+      int bufferSize,
+      Algorithm algorithm,
+      int level,
+      Mode mode,
+      boolean useDirectBuffers,
+      int pipelineDepth) {
     super(out);
-    if (bufferSize <= 0) throw new IllegalArgumentException();
+    if (bufferSize <= 0 || pipelineDepth <= 0) throw new IllegalArgumentException();
     Objects.requireNonNull(out);
     qzip = new QatZipper(algorithm, level, mode);
-    inputBuffer = ByteBuffer.allocate(bufferSize);
-    outputBuffer = ByteBuffer.allocate(qzip.maxCompressedLength(bufferSize));
+    int outputSize = qzip.maxCompressedLength(bufferSize);
+    if (useDirectBuffers) channel = QatStreams.channelOf(out);
+    this.pipelineDepth = pipelineDepth;
+    block = new Block(bufferSize, outputSize, useDirectBuffers, channel != null);
+    if (pipelineDepth > 1) {
+      blocks = new ArrayList<>(pipelineDepth);
+      blocks.add(block);
+      freeBlocks = new ArrayBlockingQueue<>(pipelineDepth);
+      for (int i = 1; i < pipelineDepth; i++) {
+        Block free = new Block(bufferSize, outputSize, useDirectBuffers, channel != null);
+        blocks.add(free);
+        freeBlocks.add(free);
+      }
+      compressor = newWorker("qat-compressor");
+      writer = newWorker("qat-writer");
+    }
     closed = false;
   }
 
@@ -119,10 +288,10 @@ public class QatCompressorOutputStream extends FilterOutputStream {
   @Override
   public void write(int b) throws IOException {
     if (closed) throw new IOException("Stream is closed");
-    if (!inputBuffer.hasRemaining()) {
-      flush();
+    if (!block.input.hasRemaining()) {
+      emitBlock();
     }
-    inputBuffer.put((byte) b);
+    block.input.put((byte) b);
   }
 
   /**
@@ -151,31 +320,69 @@ public class QatCompressorOutputStream extends FilterOutputStream {
     if (off < 0 || len < 0 || off + len > b.length) throw new IndexOutOfBoundsException();
 
     int bytesToWrite = 0;
-    while (len > (bytesToWrite = inputBuffer.remaining())) {
-      inputBuffer.put(b, off, bytesToWrite);
+    while (len > (bytesToWrite = block.input.remaining())) {
+      block.input.put(b, off, bytesToWrite);
       len -= bytesToWrite;
       off += bytesToWrite;
-      flush();
+      emitBlock();
     }
-    inputBuffer.put(b, off, len);
+    block.input.put(b, off, len);
   }
 
   /**
    * Flushes all buffered data to the compressed output stream. This method will compress and write
-   * all buffered data to the output stream.
+   * all buffered data to the output stream, and flush it under {@link FlushPolicy#SYNC}.
    *
    * @throws IOException if this stream is closed
    */
   @Override
   public void flush() throws IOException {
     if (closed) throw new IOException("Stream is closed");
-    if (inputBuffer.position() == 0) return;
-    inputBuffer.flip();
-    int compressedBytes = qzip.compress(inputBuffer, outputBuffer);
-    out.write(outputBuffer.array(), 0, compressedBytes);
-    out.flush();
-    inputBuffer.clear();
-    outputBuffer.clear();
+    if (freeBlocks == null) {
+      emitBlock();
+    } else {
+      if (block.input.position() > 0) emitBlock();
+      awaitPendingBlocks();
+      checkFailure();
+    }
+    if (flushPolicy == FlushPolicy.SYNC) out.flush();
+  }
+
+  /**
+   * Sets what {@link #flush()} does besides compressing and writing buffered data.
+   *
+   * @param flushPolicy the flush policy
+   */
+  public void setFlushPolicy(FlushPolicy flushPolicy) {
+    this.flushPolicy = Objects.requireNonNull(flushPolicy);
+  }
+
+  /**
+   * Returns the flush policy.
+   *
+   * @return the flush policy
+   */
+  public FlushPolicy getFlushPolicy() {
+    return flushPolicy;
+  }
+
+  /**
+   * Sets what is done with blocks that do not compress; see {@link QatZipper#setPassthrough}. It
+   * applies to blocks compressed after the call. The default is {@link Passthrough#NONE}.
+   *
+   * @param passthrough the passthrough policy
+   */
+  public void setPassthrough(Passthrough passthrough) {
+    this.passthrough = Objects.requireNonNull(passthrough);
+  }
+
+  /**
+   * Returns what is done with blocks that do not compress.
+   *
+   * @return the passthrough policy
+   */
+  public Passthrough getPassthrough() {
+    return passthrough;
   }
 
   /**
@@ -187,11 +394,147 @@ public class QatCompressorOutputStream extends FilterOutputStream {
   @Override
   public void close() throws IOException {
     if (closed) return;
-    flush();
-    qzip.end();
-    out.close();
-    inputBuffer = null;
-    outputBuffer = null;
-    closed = true;
+    try {
+      flush();
+    } finally {
+      closed = true;
+      try {
+        // The compressor hands blocks to the writer, so it stops first.
+        if (freeBlocks != null) Workers.shutdownAndAwait(compressor, writer);
+      } finally {
+        // The workers have terminated, so no task still uses the session or a block.
+        qzip.end();
+        if (blocks == null) {
+          block.release();
+        } else {
+          for (Block b : blocks) b.release();
+          blocks = null;
+          freeBlocks = null;
+        }
+        block = null;
+        out.close();
+      }
+    }
+  }
+
+  /** Compresses the current block and writes it out, in the background if pipelined. */
+  private void emitBlock() throws IOException {
+    if (freeBlocks == null) {
+      if (block.input.position() == 0) return;
+      compress(block);
+      writeBlock(block);
+      block.clear();
+      return;
+    }
+
+    checkFailure();
+    Block full = block;
+    compressor.execute(
+        () -> {
+          try {
+            if (failure == null) compress(full);
+          } catch (Throwable t) {
+            fail(t);
+          }
+          writer.execute(
+              () -> {
+                try {
+                  if (failure == null) writeBlock(full);
+                } catch (Throwable t) {
+                  fail(t);
+                } finally {
+                  full.clear();
+                  freeBlocks.add(full);
+                }
+              });
+        });
+    block = takeFreeBlock();
+  }
+
+  private void compress(Block b) {
+    b.input.flip();
+    qzip.setPassthrough(passthrough);
+    qzip.compress(b.input, b.output);
+  }
+
+  private void writeBlock(Block b) throws IOException {
+    if (channel != null) {
+      b.output.flip();
+      while (b.output.hasRemaining()) channel.write(b.output);
+    } else {
+      out.write(b.output.array(), 0, b.output.position());
+    }
+  }
+
+  /** Waits until every block handed to the background has been written. */
+  private void awaitPendingBlocks() throws IOException {
+    List<Block> blocks = new ArrayList<>(pipelineDepth - 1);
+    for (int i = 1; i < pipelineDepth; i++) blocks.add(takeFreeBlock());
+    freeBlocks.addAll(blocks);
+  }
+
+  private Block takeFreeBlock() throws IOException {
+    try {
+      return freeBlocks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private void fail(Throwable t) {
+    if (failure == null) failure = t;
+  }
+
+  /** Rethrows an error raised in the background. */
+  private void checkFailure() throws IOException {
+    Throwable t = failure;
+    if (t == null) return;
+    if (t instanceof IOException) throw (IOException) t;
+    if (t instanceof RuntimeException) throw (RuntimeException) t;
+    if (t instanceof Error) throw (Error) t;
+    throw new IOException(t);
+  }
+
+  /** Returns a single background thread that exits when idle. */
+  private static ExecutorService newWorker(String name) {
+    ThreadPoolExecutor worker =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            10,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+              Thread t = new Thread(r, name);
+              t.setDaemon(true);
+              return t;
+            });
+    worker.allowCoreThreadTimeOut(true);
+    return worker;
+  }
+
+  /** An input buffer and the output buffer its compressed data goes to. */
+  private static final class Block {
+    final ByteBuffer input;
+    final ByteBuffer output;
+
+    Block(int inputSize, int outputSize, boolean direct, boolean directOutput) {
+      input = direct ? BufferPool.acquire(inputSize) : ByteBuffer.allocate(inputSize);
+      // A direct output buffer only avoids a copy when it can be handed to a channel.
+      output =
+          direct && directOutput ? BufferPool.acquire(outputSize) : ByteBuffer.allocate(outputSize);
+    }
+
+    void clear() {
+      input.clear();
+      output.clear();
+    }
+
+    /** Returns pooled buffers to the pool. */
+    void release() {
+      if (input.isDirect()) BufferPool.release(input);
+      if (output.isDirect()) BufferPool.release(output);
+    }
   }
 }
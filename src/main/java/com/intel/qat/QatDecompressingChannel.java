@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+
+/**
+ * A channel that reads compressed data from another channel and decompresses it using Intel &reg;
+ * QuickAssist Technology (QAT).
+ *
+ * <p>Compressed data is read into a direct buffer. Reads into a direct buffer at least as large as
+ * the internal output buffer are decompressed in place; others are copied from the output buffer.
+ * The source may be non-blocking, in which case {@link #read(ByteBuffer)} returns 0 when no data
+ * can be produced until the source has more. The input buffer grows when it cannot hold a whole
+ * member that the engine does not decompress in pieces.
+ */
+public class QatDecompressingChannel implements ReadableByteChannel {
+  private final ReadableByteChannel source;
+  private final QatZipper qzip;
+
+  /** Compressed data not yet decompressed, ready to be read. */
+  private ByteBuffer input;
+
+  /** Decompressed data not yet returned, ready to be read. */
+  private ByteBuffer output;
+
+  private boolean eof;
+  private boolean closed;
+
+  /**
+   * Creates a new channel with {@link Algorithm#DEFLATE} and {@link Mode#AUTO}.
+   *
+   * @param source the channel to read compressed data from
+   */
+  public QatDecompressingChannel(ReadableByteChannel source) {
+    this(source, Algorithm.DEFLATE);
+  }
+
+  /**
+   * Creates a new channel with the given algorithm and {@link Mode#AUTO}.
+   *
+   * @param source the channel to read compressed data from
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   */
+  public QatDecompressingChannel(ReadableByteChannel source, Algorithm algorithm) {
+    this(source, QatZipper.defaultBlockSize(algorithm, Mode.AUTO), algorithm, Mode.AUTO);
+  }
+
+  /**
+   * Creates a new channel with the given parameters.
+   *
+   * @param source the channel to read compressed data from
+   * @param bufferSize the size of the input and output buffers
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   */
+  public QatDecompressingChannel(
+      ReadableByteChannel source, int bufferSize, Algorithm algorithm, Mode mode) {
+    Objects.requireNonNull(source);
+    if (bufferSize <= 0) throw new IllegalArgumentException();
+    this.source = source;
+    qzip = new QatZipper(algorithm, mode);
+    input = BufferPool.acquire(bufferSize);
+    input.flip();
+    output = BufferPool.acquire(bufferSize);
+    output.flip();
+    eof = false;
+    closed = false;
+  }
+
+  /**
+   * Reads decompressed bytes into the given buffer.
+   *
+   * @param dst the buffer into which bytes are to be transferred
+   * @return the number of bytes read, possibly 0 if the source is non-blocking, or -1 if the end of
+   *     the stream is reached
+   * @throws EOFException if the source ends within a member
+   * @throws IOException if this channel is closed or an I/O error occurs
+   */
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    if (closed) throw new ClosedChannelException();
+    if (!dst.hasRemaining()) return 0;
+    while (true) {
+      if (output.hasRemaining()) {
+        int n = Math.min(output.remaining(), dst.remaining());
+        ByteBuffer slice = output.duplicate();
+        slice.limit(slice.position() + n);
+        dst.put(slice);
+        output.position(slice.limit());
+        return n;
+      }
+      if (input.hasRemaining()) {
+        int n;
+        if (dst.isDirect() && dst.remaining() >= output.capacity()) {
+          n = qzip.decompress(input, dst);
+          if (n > 0) return n;
+        } else {
+          output.clear();
+          n = qzip.decompress(input, output);
+          output.flip();
+          if (n > 0) continue;
+        }
+      }
+      if (eof) {
+        if (input.hasRemaining() || qzip.hasPartialMember())
+          throw new EOFException("Unexpected end of compressed data");
+        return -1;
+      }
+      if (input.remaining() == input.capacity()) {
+        // Nothing could be decompressed from a full buffer, so it must hold more of the member.
+        ByteBuffer larger = BufferPool.acquire(2 * input.capacity());
+        larger.put(input);
+        larger.flip();
+        BufferPool.release(input);
+        input = larger;
+      }
+      input.compact();
+      int bytesRead = source.read(input);
+      input.flip();
+      if (bytesRead < 0) eof = true;
+      else if (bytesRead == 0) return 0;
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return !closed;
+  }
+
+  /**
+   * Closes this channel and the source channel, and releases resources.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    qzip.end();
+    BufferPool.release(input);
+    BufferPool.release(output);
+    input = null;
+    output = null;
+    source.close();
+  }
+}
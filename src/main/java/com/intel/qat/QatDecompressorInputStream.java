@@ -9,26 +9,100 @@ package com.intel.qat;
 import static com.intel.qat.QatZipper.Algorithm;
 import static com.intel.qat.QatZipper.Mode;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class implements an InputStream filter that decompresses data using Intel &reg; QuickAssist
  * Technology (QAT).
+ *
+ * <p>With one or more <code>sessions</code>, the stream reads ahead: it splits the input at gzip
+ * member or LZ4 frame boundaries and decompresses up to <code>readAhead</code> upcoming runs of
+ * members on worker sessions while the caller consumes earlier ones. Splitting needs the sizes that
+ * QATzip records in its gzip-ext headers and LZ4 frame headers; from the first member that lacks
+ * them, such as a plain gzip member, the rest of the input is decompressed on the calling thread.
+ *
+ * <p>With a null <code>algorithm</code>, the stream detects the format of each member from its
+ * magic number: gzip-ext members are decompressed with a deflate session and LZ4 frames with an LZ4
+ * session, each created on first use and kept for later members. Plain gzip members are
+ * decompressed in software, since only decoding them finds where they end. Input that starts with
+ * neither magic number, at the start of the stream or after a complete member, is passed through
+ * unchanged to the end of the stream.
  */
 public class QatDecompressorInputStream extends FilterInputStream {
   private ByteBuffer inputBuffer;
   private ByteBuffer outputBuffer;
   private QatZipper qzip;
   private boolean closed;
+
+  /** The mode of the sessions created while detecting formats; null if the format is fixed. */
+  private Mode detectMode;
+
+  private QatZipper deflateSession;
+  private QatZipper lz4Session;
+
+  private GzipDecoder gzipDecoder;
+
+  /** The format of the current member while detecting formats, or 0 at a member boundary. */
+  private int format;
+
+  /** The number of bytes of the current gzip-ext member not yet given to its session. */
+  private long memberRemaining;
+
+  /** The state of the current LZ4 frame as followed by {@link #scanFrame}. */
+  private int frameState;
+
+  private int frameFlags;
+
+  /** The number of bytes left in the current block, checksum or skippable frame. */
+  private long frameNeed;
+
+  /** The number of buffered bytes from the input position that have been scanned. */
+  private long frameScanned;
+
   private boolean eof;
 
+  /** Splits the input for read-ahead; null when decompressing on the calling thread. */
+  private MemberSplitter splitter;
+
+  private ArrayDeque<Future<byte[]>> pending;
+  private BlockingQueue<QatZipper> sessions;
+  private ExecutorService executor;
+  private int readAhead;
+
   /** The default size in bytes of the input buffer. */
   public static final int DEFAULT_BUFFER_SIZE = 512;
 
+  /** The least size in bytes of the blocks moved by {@link #transferTo(OutputStream)}. */
+  private static final int TRANSFER_SIZE = QatZipper.MIN_BLOCK_SIZE;
+
+  private static final int GZIP = 1;
+  private static final int GZIP_EXT = 2;
+  private static final int LZ4 = 3;
+  private static final int RAW = 4;
+
+  private static final int FRAME_START = 0;
+  private static final int FRAME_BLOCK_SIZE = 1;
+  private static final int FRAME_BLOCK = 2;
+  private static final int FRAME_SKIP = 3;
+  private static final int FRAME_END = 4;
+
   /**
    * Creates a new input stream with {@link DEFAULT_BUFFER_SIZE}, {@link Algorithm#DEFLATE}, and
    * {@link Mode#AUTO}.
@@ -77,19 +151,69 @@ public class QatDecompressorInputStream extends FilterInputStream {
    *
    * @param in the input stream
    * @param bufferSize the input buffer size
-   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param algorithm the compression algorithm (deflate or LZ4), or null to detect the format of
+   *     each member.
    * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
    *     failover.)
    */
   public QatDecompressorInputStream(
       InputStream in, int bufferSize, Algorithm algorithm, Mode mode) {
+    this(in, bufferSize, algorithm, mode, 0, 0);
+  }
+
+  /**
+   * Creates a new input stream with the given parameters.
+   *
+   * @param in the input stream
+   * @param bufferSize the input buffer size, and the least number of bytes decompressed by a worker
+   *     session at a time
+   * @param algorithm the compression algorithm (deflate or LZ4), or null to detect the format of
+   *     each member, which requires <code>sessions</code> to be 0.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param sessions the number of worker sessions, and threads, that read ahead; 0 disables
+   *     read-ahead
+   * @param readAhead the maximum number of runs of members that are decompressed ahead of the
+   *     caller; ignored if <code>sessions</code> is 0
+   */
+  public QatDecompressorInputStream(
+      InputStream in, int bufferSize, Algorithm algorithm, Mode mode, int sessions, int readAhead) {
     super(in);
-    if (bufferSize <= 0) throw new IllegalArgumentException();
+    if (bufferSize <= 0
+        || sessions < 0
+        || (sessions > 0 && readAhead <= 0)
+        || (sessions > 0 && algorithm == null)) throw new IllegalArgumentException();
     Objects.requireNonNull(in);
-    inputBuffer = ByteBuffer.allocate(bufferSize);
+    Objects.requireNonNull(mode);
+    // While detecting, the buffer holds at least a gzip-ext header or an LZ4 frame header.
+    inputBuffer =
+        ByteBuffer.allocate(
+            algorithm == null ? Math.max(bufferSize, Gzip.EXT_HEADER_LENGTH) : bufferSize);
     outputBuffer = ByteBuffer.allocate(bufferSize);
     outputBuffer.position(outputBuffer.capacity());
-    qzip = new QatZipper(algorithm, mode);
+    if (algorithm == null) detectMode = mode;
+    else qzip = new QatZipper(algorithm, mode);
+    if (sessions > 0) {
+      this.sessions = new ArrayBlockingQueue<>(sessions);
+      try {
+        for (int i = 0; i < sessions; i++) this.sessions.add(new QatZipper(algorithm, mode));
+      } catch (QatException e) {
+        for (QatZipper session : this.sessions) session.end();
+        qzip.end();
+        throw e;
+      }
+      splitter = new MemberSplitter(in, algorithm, bufferSize);
+      pending = new ArrayDeque<>(readAhead);
+      this.readAhead = readAhead;
+      executor =
+          Executors.newFixedThreadPool(
+              sessions,
+              r -> {
+                Thread t = new Thread(r, "qat-decompressor");
+                t.setDaemon(true);
+                return t;
+              });
+    }
     closed = false;
     eof = false;
   }
@@ -148,13 +272,56 @@ public class QatDecompressorInputStream extends FilterInputStream {
       if (eof) {
         return result == 0 ? -1 : result;
       }
-      fill();
+      if (splitter == null && len >= outputBuffer.capacity()) {
+        // Large enough to decompress straight into the caller's array.
+        int n = decompress(ByteBuffer.wrap(b, off, len));
+        len -= n;
+        result += n;
+        off += n;
+      } else {
+        fill();
+      }
     }
     outputBuffer.get(b, off, len);
     result += len;
     return result;
   }
 
+  /**
+   * Decompresses all remaining data to the given output stream. Data is decompressed in large
+   * blocks straight into the transfer buffer, or written from the read-ahead buffers without a
+   * copy. The output stream is not closed.
+   *
+   * @param out the output stream
+   * @return the number of uncompressed bytes transferred
+   * @throws IOException if the stream is closed or an I/O error occurs
+   */
+  @Override
+  public long transferTo(OutputStream out) throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+    Objects.requireNonNull(out);
+    long transferred = 0;
+    byte[] chunk = null;
+    while (true) {
+      if (outputBuffer.hasRemaining()) {
+        int n = outputBuffer.remaining();
+        out.write(outputBuffer.array(), outputBuffer.arrayOffset() + outputBuffer.position(), n);
+        outputBuffer.position(outputBuffer.limit());
+        transferred += n;
+      }
+      if (eof) break;
+      if (splitter != null) {
+        fill();
+      } else {
+        if (chunk == null) chunk = new byte[Math.max(outputBuffer.capacity(), TRANSFER_SIZE)];
+        int n = decompress(ByteBuffer.wrap(chunk));
+        out.write(chunk, 0, n);
+        transferred += n;
+      }
+    }
+    return transferred;
+  }
+
   /**
    * Returns an estimate of the number of uncompressed bytes that can be read.
    *
@@ -178,7 +345,22 @@ public class QatDecompressorInputStream extends FilterInputStream {
   @Override
   public void close() throws IOException {
     if (closed) return;
-    qzip.end();
+    if (executor != null) {
+      for (Future<byte[]> f : pending) f.cancel(false);
+      pending.clear();
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      for (QatZipper session : sessions) session.end();
+      executor = null;
+    }
+    if (detectMode == null) qzip.end();
+    if (deflateSession != null) deflateSession.end();
+    if (lz4Session != null) lz4Session.end();
+    if (gzipDecoder != null) gzipDecoder.end();
     in.close();
     inputBuffer = null;
     outputBuffer = null;
@@ -212,32 +394,297 @@ public class QatDecompressorInputStream extends FilterInputStream {
   }
 
   /**
-   * Skips up to n bytes of compressed bytes.
+   * Skips up to n bytes of uncompressed data. Skipped data is decompressed and discarded in place.
    *
    * @param n the maximum number of bytes to skip
    * @return the number of bytes skipped or 0 if n is negative.
+   * @throws IOException if the stream is closed
    */
   @Override
   public long skip(long n) throws IOException {
-    if (n < 0) return 0;
-    return read(new byte[(int) n]);
+    if (closed) throw new IOException("Stream is closed");
+    long skipped = 0;
+    while (skipped < n) {
+      if (!outputBuffer.hasRemaining()) {
+        fill();
+        if (!outputBuffer.hasRemaining()) break;
+      }
+      int bytesToSkip = (int) Math.min(n - skipped, outputBuffer.remaining());
+      outputBuffer.position(outputBuffer.position() + bytesToSkip);
+      skipped += bytesToSkip;
+    }
+    return skipped;
   }
 
   private void fill() throws IOException {
     if (eof) return;
-    int bytesRead = in.read(inputBuffer.array(), inputBuffer.position(), inputBuffer.remaining());
-    inputBuffer.limit(inputBuffer.position() + Math.max(0, bytesRead));
-    inputBuffer.rewind();
-    if (bytesRead < 0 && inputBuffer.remaining() == 0) {
-      eof = true;
-      return;
-    }
+    if (splitter != null && fillAhead()) return;
     outputBuffer.clear();
-    int decompressed = qzip.decompress(inputBuffer, outputBuffer);
+    decompress(outputBuffer);
     outputBuffer.flip();
-    if (inputBuffer.hasRemaining()) inputBuffer.compact();
-    else if (bytesRead < 0 && inputBuffer.remaining() == 0) eof = true;
-    else inputBuffer.clear();
-    if (decompressed == 0) fill();
+  }
+
+  /**
+   * Reads input and decompresses it into the given buffer until at least one byte is produced or
+   * the input ends.
+   *
+   * @return the number of bytes decompressed.
+   */
+  private int decompress(ByteBuffer dst) throws IOException {
+    if (detectMode != null) return decompressDetecting(dst);
+    while (!eof) {
+      int bytesRead = in.read(inputBuffer.array(), inputBuffer.position(), inputBuffer.remaining());
+      inputBuffer.limit(inputBuffer.position() + Math.max(0, bytesRead));
+      inputBuffer.rewind();
+      if (bytesRead < 0 && inputBuffer.remaining() == 0) {
+        eof = true;
+        break;
+      }
+      int decompressed = qzip.decompress(inputBuffer, dst);
+      if (inputBuffer.hasRemaining()) inputBuffer.compact();
+      else if (bytesRead < 0 && inputBuffer.remaining() == 0) eof = true;
+      else inputBuffer.clear();
+      if (decompressed != 0) return decompressed;
+    }
+    return 0;
+  }
+
+  /**
+   * Like {@link #decompress(ByteBuffer)}, but detects the format of each member. A session is only
+   * given the bytes of the member in hand, so that it never sees the next member's format: the
+   * length of a gzip-ext member is in its header, and the blocks of an LZ4 frame are followed as
+   * they are read. Plain gzip members, whose length is not recorded, are decoded by a {@link
+   * GzipDecoder}, which tells when a member ends.
+   */
+  private int decompressDetecting(ByteBuffer dst) throws IOException {
+    while (!eof) {
+      int bytesRead = in.read(inputBuffer.array(), inputBuffer.position(), inputBuffer.remaining());
+      inputBuffer.limit(inputBuffer.position() + Math.max(0, bytesRead));
+      inputBuffer.rewind();
+      if (bytesRead < 0 && inputBuffer.remaining() == 0) {
+        if (format != 0 && format != RAW) throw new EOFException("Unexpected end of member");
+        eof = true;
+        break;
+      }
+      if (format == 0) format = detect(bytesRead < 0);
+      int decompressed = 0;
+      int start = inputBuffer.position();
+      switch (format) {
+        case 0:
+          // Too few bytes to tell the format.
+          break;
+        case RAW:
+          decompressed = Math.min(inputBuffer.remaining(), dst.remaining());
+          dst.put(inputBuffer.array(), start, decompressed);
+          inputBuffer.position(start + decompressed);
+          break;
+        case GZIP:
+          try {
+            decompressed =
+                gzipDecoder.decode(
+                    inputBuffer.array(),
+                    start,
+                    inputBuffer.remaining(),
+                    dst.array(),
+                    dst.arrayOffset() + dst.position(),
+                    dst.remaining());
+          } catch (QatException e) {
+            throw new IOException(e.getMessage(), e);
+          }
+          dst.position(dst.position() + decompressed);
+          inputBuffer.position(start + gzipDecoder.consumed());
+          if (gzipDecoder.atMemberBoundary()) format = 0;
+          break;
+        default:
+          if (format == LZ4) memberRemaining = scanFrame(bytesRead < 0);
+          if (memberRemaining > 0) {
+            int limit = inputBuffer.limit();
+            inputBuffer.limit(start + (int) Math.min(inputBuffer.remaining(), memberRemaining));
+            decompressed = session(format).decompress(inputBuffer, dst);
+            inputBuffer.limit(limit);
+            int consumed = inputBuffer.position() - start;
+            if (format == LZ4) frameScanned -= consumed;
+            memberRemaining -= consumed;
+          }
+          if (memberRemaining == 0 && (format != LZ4 || frameState == FRAME_END)) format = 0;
+          break;
+      }
+      if (format == 0 && bytesRead >= 0 && inputBuffer.hasRemaining() && decompressed == 0) {
+        // Keep the start of the next member and read on, so that its format can be told.
+        inputBuffer.compact();
+        continue;
+      }
+      if (inputBuffer.hasRemaining()) inputBuffer.compact();
+      else inputBuffer.clear();
+      if (decompressed != 0) return decompressed;
+      if (bytesRead < 0 && inputBuffer.position() > 0 && format != 0 && format != RAW)
+        throw new EOFException("Unexpected end of member");
+    }
+    return 0;
+  }
+
+  /**
+   * Detects the format of the member at the start of the input buffer, and prepares to follow it.
+   *
+   * @return the format, or 0 if more bytes are needed to tell.
+   */
+  private int detect(boolean end) throws IOException {
+    byte[] b = inputBuffer.array();
+    int off = inputBuffer.position();
+    int len = inputBuffer.remaining();
+    if (len >= 2 && Gzip.isGzip(b, off, len)) {
+      Gzip.Header header;
+      try {
+        header = Gzip.Header.parse(b, off, len);
+      } catch (QatException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+      if (header == null) {
+        if (!end && len < inputBuffer.capacity()) return 0;
+      } else if (header.srcSize >= 0 && header.destSize >= 0) {
+        memberRemaining = (long) header.length + header.destSize + Gzip.TRAILER_LENGTH;
+        return GZIP_EXT;
+      }
+      if (gzipDecoder == null) gzipDecoder = new GzipDecoder();
+      return GZIP;
+    }
+    if (len >= 4) {
+      int magic = Gzip.readInt(b, off);
+      if (magic == Lz4.MAGIC || (magic & 0xFFFFFFF0) == Lz4.SKIPPABLE_MAGIC) {
+        frameState = FRAME_START;
+        frameScanned = 0;
+        return LZ4;
+      }
+      return RAW;
+    }
+    if (end) return RAW;
+    // Wait for more bytes while these could still start a gzip member or an LZ4 frame.
+    int first = b[off] & 0xFF;
+    boolean maybeGzip = first == Gzip.ID1 && len < 2;
+    boolean maybeLz4 = first == 0x04 || (first & 0xF0) == 0x50;
+    return maybeGzip || maybeLz4 ? 0 : RAW;
+  }
+
+  /**
+   * Follows the structure of the current LZ4 frame over the buffered bytes that have not been
+   * scanned yet.
+   *
+   * @return the number of buffered bytes known to belong to the frame.
+   */
+  private long scanFrame(boolean end) throws IOException {
+    byte[] b = inputBuffer.array();
+    int p = inputBuffer.position() + (int) frameScanned;
+    int limit = inputBuffer.limit();
+    while (frameState != FRAME_END) {
+      if (frameState == FRAME_START) {
+        if (limit - p < 8) break;
+        int magic = Gzip.readInt(b, p);
+        if (magic != Lz4.MAGIC) {
+          frameNeed = Gzip.readInt(b, p + 4) & 0xFFFFFFFFL;
+          p += 8;
+          frameState = FRAME_SKIP;
+          continue;
+        }
+        int headerLength;
+        try {
+          headerLength = Lz4.frameHeaderLength(b, p, limit - p);
+        } catch (QatException e) {
+          throw new IOException(e.getMessage(), e);
+        }
+        if (headerLength < 0) break;
+        frameFlags = b[p + 4] & 0xFF;
+        p += headerLength;
+        frameState = FRAME_BLOCK_SIZE;
+      } else if (frameState == FRAME_BLOCK_SIZE) {
+        if (limit - p < 4) break;
+        int blockSize = Gzip.readInt(b, p);
+        p += 4;
+        if (blockSize == 0) {
+          frameNeed = (frameFlags & Lz4.FLG_CONTENT_CHECKSUM) != 0 ? 4 : 0;
+          frameState = FRAME_SKIP;
+        } else {
+          frameNeed =
+              (blockSize & ~Lz4.UNCOMPRESSED_BIT)
+                  + ((frameFlags & Lz4.FLG_BLOCK_CHECKSUM) != 0 ? 4 : 0);
+          frameState = FRAME_BLOCK;
+        }
+      } else {
+        int n = (int) Math.min(frameNeed, limit - p);
+        p += n;
+        frameNeed -= n;
+        if (frameNeed > 0) break;
+        frameState = frameState == FRAME_BLOCK ? FRAME_BLOCK_SIZE : FRAME_END;
+      }
+    }
+    frameScanned = p - inputBuffer.position();
+    if (end && frameState != FRAME_END && frameScanned == inputBuffer.remaining())
+      throw new EOFException("Unexpected end of LZ4 frame");
+    return frameScanned;
+  }
+
+  /** Returns the session for the given format, creating it on first use. */
+  private QatZipper session(int format) {
+    if (format == GZIP_EXT) {
+      if (deflateSession == null) deflateSession = new QatZipper(Algorithm.DEFLATE, detectMode);
+      return deflateSession;
+    }
+    if (lz4Session == null) lz4Session = new QatZipper(Algorithm.LZ4, detectMode);
+    return lz4Session;
+  }
+
+  /**
+   * Takes the oldest non-empty run of members decompressed ahead, keeping the read-ahead queue
+   * topped up.
+   *
+   * @return false if the rest of the input could not be split and was handed to the calling thread.
+   */
+  private boolean fillAhead() throws IOException {
+    do {
+      while (pending.size() < readAhead) {
+        MemberSplitter.Unit unit = splitter.next();
+        if (unit == null) break;
+        pending.add(executor.submit(() -> decompress(unit)));
+      }
+      if (pending.isEmpty()) {
+        if (!splitter.splittable()) {
+          // Hand the rest of the input to the calling thread.
+          in = new SequenceInputStream(new ByteArrayInputStream(splitter.remaining()), in);
+          splitter = null;
+          // The input buffer has the requested size while reading ahead.
+          outputBuffer = ByteBuffer.allocate(inputBuffer.capacity());
+          return false;
+        }
+        eof = true;
+        return true;
+      }
+      try {
+        outputBuffer = ByteBuffer.wrap(pending.remove().get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw new IOException(cause);
+      }
+      // Skippable frames and empty members decompress to nothing.
+    } while (!outputBuffer.hasRemaining());
+    return true;
+  }
+
+  private byte[] decompress(MemberSplitter.Unit unit) throws InterruptedException {
+    byte[] result = new byte[unit.decompressedLength];
+    // Skippable and empty frames or members; a session rejects an empty destination.
+    if (result.length == 0) return result;
+    QatZipper session = sessions.take();
+    try {
+      int n = session.decompress(unit.data, 0, unit.data.length, result, 0, result.length);
+      if (n != result.length)
+        throw new QatException("QZ_DATA_ERROR: Decompressed size does not match the header.");
+    } finally {
+      sessions.add(session);
+    }
+    return result;
   }
 }
@@ -0,0 +1,483 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+/**
+ * A {@link CompressionEngine} that uses Intel&reg; QuickAssist Technology through the <a
+ * href="https://github.com/intel/QATzip">QATzip</a> library. It is available when the native
+ * qat-java library and QATzip can be loaded.
+ *
+ * <p>On a JDK with Coordinated Restore at Checkpoint (CRaC) support, each session releases its QAT
+ * session before a checkpoint and sets it up again, with the same parameters, after a restore.
+ * Applications must not compress or decompress while a checkpoint is in progress. This needs the
+ * optional {@code org.crac} library; without it, sessions are not registered for checkpoints.
+ */
+public final class QatEngine implements CompressionEngine {
+  /** The name of this engine. */
+  public static final String NAME = "qat";
+
+  /** Cleaner instance associated with QAT sessions. */
+  private static Cleaner cleaner;
+
+  /** Whether the optional {@code org.crac} library can be loaded. */
+  private static final boolean CRAC_PRESENT = isClassPresent("org.crac.Core");
+
+  /** Whether a QAT session has ever been set up by this process. */
+  private static volatile boolean initialized;
+
+  static {
+    SecurityManager sm = System.getSecurityManager();
+    if (sm == null) {
+      cleaner = Cleaner.create();
+    } else {
+      java.security.PrivilegedAction<Void> pa =
+          () -> {
+            cleaner = Cleaner.create();
+            return null;
+          };
+      java.security.AccessController.doPrivileged(pa);
+    }
+    if (CRAC_PRESENT) Checkpoints.registerProcess();
+  }
+
+  private static boolean isClassPresent(String name) {
+    try {
+      Class.forName(name, false, QatEngine.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /** Creates a new QAT engine. Used by {@link java.util.ServiceLoader}. */
+  public QatEngine() {}
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public int priority() {
+    return 100;
+  }
+
+  @Override
+  public boolean isAvailable() {
+    try {
+      Native.loadLibrary();
+      return true;
+    } catch (LinkageError | RuntimeException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean supports(Mode mode) {
+    return true;
+  }
+
+  @Override
+  public int hardwareBufferSize(Algorithm algorithm) {
+    return InternalJNI.hardwareBufferSize(algorithm.ordinal());
+  }
+
+  @Override
+  public Session createSession(Algorithm algorithm, int level, Mode mode, int retryCount) {
+    return new QatSession(algorithm, level, mode, retryCount);
+  }
+
+  /** A QAT session backed by a QzSession_T in C. */
+  static final class QatSession implements Session {
+    /** A reference to a QAT session in C. Set by {@link InternalJNI#setup}. */
+    long session;
+
+    private Algorithm algorithm;
+
+    private int level;
+
+    private final Mode mode;
+
+    private final int retryCount;
+
+    /** Whether the session was released by {@link #suspend()} rather than by {@link #end()}. */
+    private boolean suspended;
+
+    /** A reusable direct buffer for staging sources whose contents cannot be accessed natively. */
+    private ByteBuffer stagingBuffer;
+
+    /** The cleanup action, which tears down the QAT session that is live when it runs. */
+    private final QatCleaner cleanupAction = new QatCleaner();
+
+    /** Cleaner.Cleanable instance representing QAT cleanup action. */
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * CRaC resource of this session, or null without CRaC; the global CRaC context only keeps a
+     * weak reference to it.
+     */
+    private final Object checkpointResource;
+
+    /**
+     * Creates a new QAT session with the given parameters.
+     *
+     * @throws QatException if QAT session cannot be created.
+     */
+    QatSession(Algorithm algorithm, int level, Mode mode, int retryCount) {
+      this.algorithm = algorithm;
+      this.level = level;
+      this.mode = mode;
+      this.retryCount = retryCount;
+      InternalJNI.setup(this, mode.ordinal(), algorithm.ordinal(), level);
+      initialized = true;
+
+      // Register a QAT session cleaner for this object
+      cleanupAction.qzSession = session;
+      cleanable = cleaner.register(this, cleanupAction);
+
+      // Release and restore the session around CRaC checkpoints
+      checkpointResource = CRAC_PRESENT ? Checkpoints.register(this) : null;
+    }
+
+    @Override
+    public int maxCompressedLength(long len) {
+      checkSession();
+      return InternalJNI.maxCompressedSize(session, len);
+    }
+
+    @Override
+    public int compress(
+        byte[] src, int srcOffset, int srcLen, byte[] dst, int dstOffset, int dstLen) {
+      checkSession();
+      return InternalJNI.compressByteArray(
+          session, src, srcOffset, srcLen, dst, dstOffset, dstLen, retryCount);
+    }
+
+    @Override
+    public int decompress(
+        byte[] src, int srcOffset, int srcLen, byte[] dst, int dstOffset, int dstLen) {
+      checkSession();
+      return InternalJNI.decompressByteArray(
+          session, src, srcOffset, srcLen, dst, dstOffset, dstLen, retryCount);
+    }
+
+    @Override
+    public int compress(ByteBuffer src, ByteBuffer dst) {
+      checkSession();
+
+      int compressedSize = 0;
+      if (src.hasArray() && dst.hasArray()) {
+        compressedSize =
+            InternalJNI.compressByteBuffer(
+                session,
+                src,
+                src.array(),
+                src.position(),
+                src.remaining(),
+                dst.array(),
+                dst.position(),
+                dst.remaining(),
+                retryCount);
+        dst.position(dst.position() + compressedSize);
+      } else if (src.isDirect() && dst.isDirect()) {
+        compressedSize =
+            InternalJNI.compressDirectByteBuffer(
+                session,
+                src,
+                src.position(),
+                src.remaining(),
+                dst,
+                dst.position(),
+                dst.remaining(),
+                retryCount);
+      } else if (src.hasArray() && dst.isDirect()) {
+        compressedSize =
+            InternalJNI.compressDirectByteBufferDst(
+                session,
+                src,
+                src.array(),
+                src.position(),
+                src.remaining(),
+                dst,
+                dst.position(),
+                dst.remaining(),
+                retryCount);
+      } else if (src.isDirect() && dst.hasArray()) {
+        compressedSize =
+            InternalJNI.compressDirectByteBufferSrc(
+                session,
+                src,
+                src.position(),
+                src.remaining(),
+                dst.array(),
+                dst.position(),
+                dst.remaining(),
+                retryCount);
+        dst.position(dst.position() + compressedSize);
+      } else {
+        // The source is a read-only heap buffer whose backing array is not accessible.
+        int srcPos = src.position();
+        ByteBuffer srcCopy = stage(src);
+        if (dst.isDirect()) {
+          compressedSize =
+              InternalJNI.compressDirectByteBuffer(
+                  session,
+                  srcCopy,
+                  0,
+                  srcCopy.remaining(),
+                  dst,
+                  dst.position(),
+                  dst.remaining(),
+                  retryCount);
+        } else {
+          compressedSize =
+              InternalJNI.compressDirectByteBufferSrc(
+                  session,
+                  srcCopy,
+                  0,
+                  srcCopy.remaining(),
+                  dst.array(),
+                  dst.position(),
+                  dst.remaining(),
+                  retryCount);
+          dst.position(dst.position() + compressedSize);
+        }
+        src.position(srcPos + srcCopy.position());
+      }
+
+      return compressedSize;
+    }
+
+    @Override
+    public int decompress(ByteBuffer src, ByteBuffer dst) {
+      checkSession();
+
+      int decompressedSize = 0;
+      if (src.hasArray() && dst.hasArray()) {
+        decompressedSize =
+            InternalJNI.decompressByteBuffer(
+                session,
+                src,
+                src.array(),
+                src.position(),
+                src.remaining(),
+                dst.array(),
+                dst.position(),
+                dst.remaining(),
+                retryCount);
+        dst.position(dst.position() + decompressedSize);
+      } else if (src.isDirect() && dst.isDirect()) {
+        decompressedSize =
+            InternalJNI.decompressDirectByteBuffer(
+                session,
+                src,
+                src.position(),
+                src.remaining(),
+                dst,
+                dst.position(),
+                dst.remaining(),
+                retryCount);
+      } else if (src.hasArray() && dst.isDirect()) {
+        decompressedSize =
+            InternalJNI.decompressDirectByteBufferDst(
+                session,
+                src,
+                src.array(),
+                src.position(),
+                src.remaining(),
+                dst,
+                dst.position(),
+                dst.remaining(),
+                retryCount);
+      } else if (src.isDirect() && dst.hasArray()) {
+        decompressedSize =
+            InternalJNI.decompressDirectByteBufferSrc(
+                session,
+                src,
+                src.position(),
+                src.remaining(),
+                dst.array(),
+                dst.position(),
+                dst.remaining(),
+                retryCount);
+        dst.position(dst.position() + decompressedSize);
+      } else {
+        // The source is a read-only heap buffer whose backing array is not accessible.
+        int srcPos = src.position();
+        ByteBuffer srcCopy = stage(src);
+        if (dst.isDirect()) {
+          decompressedSize =
+              InternalJNI.decompressDirectByteBuffer(
+                  session,
+                  srcCopy,
+                  0,
+                  srcCopy.remaining(),
+                  dst,
+                  dst.position(),
+                  dst.remaining(),
+                  retryCount);
+        } else {
+          decompressedSize =
+              InternalJNI.decompressDirectByteBufferSrc(
+                  session,
+                  srcCopy,
+                  0,
+                  srcCopy.remaining(),
+                  dst.array(),
+                  dst.position(),
+                  dst.remaining(),
+                  retryCount);
+          dst.position(dst.position() + decompressedSize);
+        }
+        src.position(srcPos + srcCopy.position());
+      }
+
+      return decompressedSize;
+    }
+
+    @Override
+    public void reconfigure(Algorithm algorithm, int level) {
+      checkSession();
+      InternalJNI.reconfigure(session, mode.ordinal(), algorithm.ordinal(), level);
+      this.algorithm = algorithm;
+      this.level = level;
+    }
+
+    @Override
+    public void end() {
+      cleanable.clean();
+      session = 0;
+      stagingBuffer = null;
+    }
+
+    /** Fails if the QAT session has been released. */
+    private void checkSession() {
+      if (session == 0) throw new IllegalStateException("QAT session has been closed.");
+    }
+
+    /**
+     * Copies the remaining bytes of the given source buffer into this session's staging buffer,
+     * growing it if needed. The position of the source buffer is left unchanged.
+     *
+     * @param src the source buffer
+     * @return the staging buffer, positioned at zero and limited to the copied length.
+     */
+    private ByteBuffer stage(ByteBuffer src) {
+      int len = src.remaining();
+      if (stagingBuffer == null || stagingBuffer.capacity() < len)
+        stagingBuffer = ByteBuffer.allocateDirect(len);
+      stagingBuffer.clear();
+      stagingBuffer.put(src.duplicate());
+      stagingBuffer.flip();
+      return stagingBuffer;
+    }
+
+    /** Releases the QAT session ahead of a checkpoint. The parameters are kept for restore. */
+    void suspend() throws QatException {
+      if (session == 0) return;
+      cleanupAction.qzSession = 0;
+      InternalJNI.teardown(session);
+      session = 0;
+      suspended = true;
+    }
+
+    /**
+     * Sets up a new QAT session with the current parameters after a restore. If that fails, the
+     * session stays released so that later calls fail cleanly.
+     */
+    void resume() throws QatException {
+      if (!suspended) return;
+      suspended = false;
+      InternalJNI.setup(this, mode.ordinal(), algorithm.ordinal(), level);
+      cleanupAction.qzSession = session;
+    }
+  }
+
+  /**
+   * Registers sessions with the global CRaC context. Only loaded when {@code org.crac} is present.
+   */
+  static final class Checkpoints {
+    /** CRaC resource that releases process-wide QAT resources; registered before any session. */
+    private static Resource processResource;
+
+    private Checkpoints() {}
+
+    static void registerProcess() {
+      processResource = new ProcessResource();
+      Core.getGlobalContext().register(processResource);
+    }
+
+    /** Registers the given session, and returns the resource the session must keep reachable. */
+    static Object register(QatSession session) {
+      Resource resource = new SessionResource(session);
+      Core.getGlobalContext().register(resource);
+      return resource;
+    }
+  }
+
+  /** A CRaC resource that releases a QAT session before a checkpoint and restores it after. */
+  static class SessionResource implements Resource {
+    private final QatSession session;
+
+    /** Creates a new resource for the given session. */
+    SessionResource(QatSession session) {
+      this.session = session;
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+      session.suspend();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+      session.resume();
+    }
+  }
+
+  /**
+   * A CRaC resource that closes the process-wide QAT state once all sessions are released. It is
+   * registered first, so it runs after every session's beforeCheckpoint. QAT is initialized again
+   * when sessions are set up after a restore.
+   */
+  static class ProcessResource implements Resource {
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+      if (initialized) InternalJNI.close();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {}
+  }
+
+  /**
+   * A class that represents a cleaner action for a QAT session. It must not refer to the session,
+   * so the session keeps it up to date with the QAT session that is currently set up.
+   */
+  static class QatCleaner implements Runnable {
+    /** The QAT session to tear down, or 0 if there is none. */
+    volatile long qzSession;
+
+    @Override
+    public void run() {
+      long s = qzSession;
+      qzSession = 0;
+      if (s != 0) {
+        InternalJNI.teardown(s);
+      }
+    }
+  }
+}
@@ -0,0 +1,686 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Static helpers that compress and decompress whole files with Intel &reg; QuickAssist Technology
+ * (QAT).
+ *
+ * <p>The source file is memory-mapped one block at a time and each mapped region is handed to a
+ * session directly, so no copy of the data is made on the Java heap. Blocks are processed by
+ * several sessions at once and written to the destination with positional writes. The compressed
+ * output is a sequence of gzip members (or LZ4 frames), as written by {@link QatStreams}.
+ *
+ * <p>{@link #compressTree} compresses a whole directory tree over a fixed set of sessions, and
+ * {@link #lines} streams the lines of a compressed file, splitting it for parallel streams.
+ */
+public final class QatFiles {
+  /** The default maximum number of files that {@link #compressTree} keeps open at once. */
+  public static final int DEFAULT_MAX_OPEN_FILES = 64;
+
+  /** The default maximum number of bytes that {@link #compressTree} queues at once. */
+  public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+
+  private QatFiles() {}
+
+  /**
+   * Compresses a file with {@link Algorithm#DEFLATE}, {@link QatZipper#DEFAULT_COMPRESS_LEVEL},
+   * {@link Mode#AUTO} and {@link ParallelQatCompressorOutputStream#DEFAULT_SESSIONS} sessions.
+   *
+   * @param src the file to compress
+   * @param dst the compressed file, which is created or replaced
+   * @return the size of the compressed file.
+   * @throws IOException if an I/O error occurs
+   */
+  public static long compress(Path src, Path dst) throws IOException {
+    return compress(src, dst, Algorithm.DEFLATE);
+  }
+
+  /**
+   * Compresses a file with {@link QatZipper#DEFAULT_COMPRESS_LEVEL}, {@link Mode#AUTO} and {@link
+   * ParallelQatCompressorOutputStream#DEFAULT_SESSIONS} sessions.
+   *
+   * @param src the file to compress
+   * @param dst the compressed file, which is created or replaced
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @return the size of the compressed file.
+   * @throws IOException if an I/O error occurs
+   */
+  public static long compress(Path src, Path dst, Algorithm algorithm) throws IOException {
+    return compress(
+        src,
+        dst,
+        algorithm,
+        QatZipper.DEFAULT_COMPRESS_LEVEL,
+        Mode.AUTO,
+        ParallelQatCompressorOutputStream.DEFAULT_SESSIONS);
+  }
+
+  /**
+   * Compresses a file. Each block of the file is compressed by one of the given number of sessions,
+   * and the results are written in order.
+   *
+   * @param src the file to compress
+   * @param dst the compressed file, which is created or replaced
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param sessions the number of sessions, and of threads, that compress blocks
+   * @return the size of the compressed file.
+   * @throws IOException if an I/O error occurs
+   */
+  public static long compress(
+      Path src, Path dst, Algorithm algorithm, int level, Mode mode, int sessions)
+      throws IOException {
+    checkPaths(src, dst);
+    if (sessions <= 0) throw new IllegalArgumentException();
+    int blockSize = QatZipper.defaultBlockSize(algorithm, mode);
+    ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+    // Set on failure, so that blocks which have not started are skipped.
+    AtomicBoolean abandoned = new AtomicBoolean();
+    try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+        FileChannel out = openDestination(dst)) {
+      long size = in.size();
+      long written = 0;
+      try (SessionPool pool = new SessionPool(algorithm, level, mode, sessions)) {
+        try {
+          for (long off = 0; off < size; off += blockSize) {
+            long position = off;
+            int len = (int) Math.min(blockSize, size - off);
+            pending.add(
+                pool.submit(
+                    qzip -> abandoned.get() ? null : compressBlock(qzip, in, position, len)));
+            while (pending.size() >= pool.maxInFlight()) written += write(out, pending, written);
+          }
+          while (!pending.isEmpty()) written += write(out, pending, written);
+        } finally {
+          abandoned.set(true);
+        }
+      } finally {
+        // The pool's threads have stopped, so no block is still being compressed.
+        releaseCompleted(pending);
+      }
+      return written;
+    }
+  }
+
+  /**
+   * Decompresses a file compressed with {@link Algorithm#DEFLATE}, with {@link Mode#AUTO} and
+   * {@link ParallelQatCompressorOutputStream#DEFAULT_SESSIONS} sessions.
+   *
+   * @param src the compressed file
+   * @param dst the decompressed file, which is created or replaced
+   * @return the size of the decompressed file.
+   * @throws IOException if the data is not valid or an I/O error occurs
+   */
+  public static long decompress(Path src, Path dst) throws IOException {
+    return decompress(src, dst, Algorithm.DEFLATE);
+  }
+
+  /**
+   * Decompresses a file with {@link Mode#AUTO} and {@link
+   * ParallelQatCompressorOutputStream#DEFAULT_SESSIONS} sessions.
+   *
+   * @param src the compressed file
+   * @param dst the decompressed file, which is created or replaced
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @return the size of the decompressed file.
+   * @throws IOException if the data is not valid or an I/O error occurs
+   */
+  public static long decompress(Path src, Path dst, Algorithm algorithm) throws IOException {
+    return decompress(
+        src, dst, algorithm, Mode.AUTO, ParallelQatCompressorOutputStream.DEFAULT_SESSIONS);
+  }
+
+  /**
+   * Decompresses a file. Runs of gzip-ext members (or LZ4 frames with a content size) are
+   * decompressed by several sessions at once, as their sizes are recorded in the data. The rest of
+   * the file, from the first member that does not record its sizes, is decompressed by a single
+   * session.
+   *
+   * @param src the compressed file
+   * @param dst the decompressed file, which is created or replaced
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param sessions the number of sessions, and of threads, that decompress blocks
+   * @return the size of the decompressed file.
+   * @throws IOException if the data is not valid or an I/O error occurs
+   */
+  public static long decompress(Path src, Path dst, Algorithm algorithm, Mode mode, int sessions)
+      throws IOException {
+    checkPaths(src, dst);
+    if (sessions <= 0) throw new IllegalArgumentException();
+    int targetSize = QatZipper.defaultBlockSize(algorithm, mode);
+    try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+        FileChannel out = openDestination(dst);
+        SessionPool pool =
+            new SessionPool(algorithm, QatZipper.DEFAULT_COMPRESS_LEVEL, mode, sessions)) {
+      long size = in.size();
+      ArrayDeque<Future<Void>> pending = new ArrayDeque<>();
+      long off = 0;
+      long written = 0;
+      try {
+        int[] unit;
+        while ((unit = nextUnit(in, off, size, algorithm, targetSize)) != null) {
+          long start = off;
+          int len = unit[0];
+          int outLen = unit[1];
+          long position = written;
+          if (outLen > 0)
+            pending.add(
+                pool.submit(qzip -> decompressUnit(qzip, in, start, len, out, position, outLen)));
+          off += len;
+          written += outLen;
+          while (pending.size() >= pool.maxInFlight()) SessionPool.get(pending.remove());
+        }
+        while (!pending.isEmpty()) SessionPool.get(pending.remove());
+      } finally {
+        for (Future<Void> f : pending) f.cancel(false);
+      }
+
+      if (off < size) {
+        in.position(off);
+        out.position(written);
+        InputStream rest =
+            new QatDecompressorInputStream(
+                Channels.newInputStream(in), QatZipper.MIN_BLOCK_SIZE, algorithm, mode);
+        try {
+          written += rest.transferTo(Channels.newOutputStream(out));
+        } finally {
+          rest.close();
+        }
+      }
+      return written;
+    }
+  }
+
+  /**
+   * Returns the lines of a file compressed with {@link Algorithm#DEFLATE}, decoded as UTF-8, with
+   * {@link Mode#AUTO}.
+   *
+   * @param path the compressed file
+   * @return the lines of the file, as a stream that must be closed.
+   * @throws IOException if the file could not be opened
+   */
+  public static Stream<String> lines(Path path) throws IOException {
+    return lines(path, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the lines of a file compressed with {@link Algorithm#DEFLATE}, with {@link Mode#AUTO}.
+   *
+   * @param path the compressed file
+   * @param charset the charset of the uncompressed data
+   * @return the lines of the file, as a stream that must be closed.
+   * @throws IOException if the file could not be opened
+   */
+  public static Stream<String> lines(Path path, Charset charset) throws IOException {
+    return lines(path, charset, Algorithm.DEFLATE, Mode.AUTO);
+  }
+
+  /**
+   * Returns the lines of a compressed file, as {@link Files#lines(Path, Charset)} does for an
+   * uncompressed one. Lines end with '\n', '\r' or "\r\n".
+   *
+   * <p>For UTF-8, ISO-8859-1 and US-ASCII, the stream splits at runs of gzip-ext members (or LZ4
+   * frames with a content size), so a parallel stream decompresses and decodes runs concurrently,
+   * each with its own session. A line that crosses from one run into the next is read whole by the
+   * part of the stream in which it starts. The rest of the file, from the first member that does
+   * not record its sizes, is read by a single part. Other charsets are read sequentially.
+   *
+   * <p>The stream holds the file open and must be closed, for example with try-with-resources. An
+   * I/O error or a malformed line is thrown as an {@link java.io.UncheckedIOException} from the
+   * stream's operations.
+   *
+   * @param path the compressed file
+   * @param charset the charset of the uncompressed data
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @return the lines of the file, as a stream that must be closed.
+   * @throws IOException if the file could not be opened
+   */
+  public static Stream<String> lines(Path path, Charset charset, Algorithm algorithm, Mode mode)
+      throws IOException {
+    return CompressedLineSpliterator.lines(path, charset, algorithm, mode);
+  }
+
+  /**
+   * Compresses every regular file under a directory with {@link Algorithm#DEFLATE}, {@link
+   * QatZipper#DEFAULT_COMPRESS_LEVEL}, {@link Mode#AUTO} and {@link
+   * ParallelQatCompressorOutputStream#DEFAULT_SESSIONS} sessions.
+   *
+   * @param root the directory to compress
+   * @param target the directory that receives the compressed files
+   * @return the totals for the tree.
+   * @throws IOException if the tree could not be walked, or a file could not be compressed
+   */
+  public static TreeStats compressTree(Path root, Path target) throws IOException {
+    return compressTree(root, target, Algorithm.DEFLATE, null);
+  }
+
+  /**
+   * Compresses every regular file under a directory with {@link QatZipper#DEFAULT_COMPRESS_LEVEL},
+   * {@link Mode#AUTO}, {@link ParallelQatCompressorOutputStream#DEFAULT_SESSIONS} sessions, {@link
+   * #DEFAULT_MAX_OPEN_FILES} and {@link #DEFAULT_MAX_IN_FLIGHT_BYTES}.
+   *
+   * @param root the directory to compress
+   * @param target the directory that receives the compressed files
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param listener the listener told about each file, or null
+   * @return the totals for the tree.
+   * @throws IOException if the tree could not be walked, or a file could not be compressed
+   */
+  public static TreeStats compressTree(
+      Path root, Path target, Algorithm algorithm, TreeListener listener) throws IOException {
+    return compressTree(
+        root,
+        target,
+        algorithm,
+        QatZipper.DEFAULT_COMPRESS_LEVEL,
+        Mode.AUTO,
+        ParallelQatCompressorOutputStream.DEFAULT_SESSIONS,
+        DEFAULT_MAX_OPEN_FILES,
+        DEFAULT_MAX_IN_FLIGHT_BYTES,
+        listener);
+  }
+
+  /**
+   * Compresses every regular file under a directory into the same relative path under the target
+   * directory, with a ".gz" (or ".lz4") suffix. Symbolic links are not followed, and the target
+   * directory is skipped if it is inside the root.
+   *
+   * <p>The files are compressed by a fixed set of sessions. Files smaller than a block are
+   * compressed in batches by a single session, and larger files are split into blocks that are
+   * compressed by several sessions at once. The walk waits while the given number of files are open
+   * or the given number of bytes are queued. A file that cannot be compressed does not stop the
+   * others; its partial target is removed, and an exception is thrown once every file has been
+   * handled.
+   *
+   * @param root the directory to compress
+   * @param target the directory that receives the compressed files
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param sessions the number of sessions, and of threads, that compress files
+   * @param maxOpenFiles the maximum number of files being compressed at once
+   * @param maxInFlightBytes the maximum number of uncompressed bytes queued or being compressed
+   * @param listener the listener told about each file, or null
+   * @return the totals for the tree.
+   * @throws IOException if the tree could not be walked, or a file could not be compressed
+   */
+  public static TreeStats compressTree(
+      Path root,
+      Path target,
+      Algorithm algorithm,
+      int level,
+      Mode mode,
+      int sessions,
+      int maxOpenFiles,
+      long maxInFlightBytes,
+      TreeListener listener)
+      throws IOException {
+    Objects.requireNonNull(root);
+    Objects.requireNonNull(target);
+    if (!Files.isDirectory(root)) throw new NotDirectoryException(root.toString());
+    return new FileTreeCompressor(
+            root,
+            target,
+            algorithm,
+            level,
+            mode,
+            sessions,
+            maxOpenFiles,
+            maxInFlightBytes,
+            listener)
+        .run();
+  }
+
+  /** Compresses one block of the source file, mapping it rather than reading it. */
+  static ByteBuffer compressBlock(QatZipper qzip, FileChannel in, long position, int len)
+      throws IOException {
+    ByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, position, len);
+    ByteBuffer dst = BufferPool.acquire(qzip.maxCompressedLength(len));
+    try {
+      qzip.compress(src, dst);
+    } catch (RuntimeException e) {
+      BufferPool.release(dst);
+      throw e;
+    }
+    return dst.flip();
+  }
+
+  /** Decompresses a run of whole members and writes the result at its offset in the output. */
+  private static Void decompressUnit(
+      QatZipper qzip, FileChannel in, long start, int len, FileChannel out, long position, int n)
+      throws IOException {
+    // One spare byte lets a session consume a trailer after filling the expected size.
+    ByteBuffer dst = BufferPool.acquire(n + 1);
+    try {
+      decompressRun(qzip, in, start, len, dst, n);
+      dst.flip();
+      while (dst.hasRemaining()) position += out.write(dst, position);
+    } finally {
+      BufferPool.release(dst);
+    }
+    return null;
+  }
+
+  /**
+   * Decompresses a run of whole members, mapping it rather than reading it. The destination buffer
+   * must have room for one byte more than the expected size.
+   *
+   * @throws IOException if the run does not hold exactly the expected number of bytes
+   */
+  static void decompressRun(
+      QatZipper qzip, FileChannel in, long start, int len, ByteBuffer dst, int n)
+      throws IOException {
+    ByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, start, len);
+    int first = dst.position();
+    try {
+      while (src.hasRemaining()) {
+        int before = src.position();
+        qzip.decompress(src, dst);
+        if (src.position() == before || !dst.hasRemaining()) break;
+      }
+    } catch (QatException e) {
+      throw new IOException("Corrupt compressed data at offset " + start, e);
+    }
+    if (src.hasRemaining() || dst.position() - first != n)
+      throw new IOException("Corrupt compressed data at offset " + start);
+  }
+
+  /** Waits for the oldest compressed block and writes it at the given offset in the output. */
+  private static int write(FileChannel out, ArrayDeque<Future<ByteBuffer>> pending, long position)
+      throws IOException {
+    // The block stays pending until its buffer is taken, so that a failed wait does not leak it.
+    ByteBuffer b = SessionPool.get(pending.peek());
+    pending.remove();
+    try {
+      int n = b.remaining();
+      while (b.hasRemaining()) position += out.write(b, position);
+      return n;
+    } finally {
+      BufferPool.release(b);
+    }
+  }
+
+  /**
+   * Releases the buffers of the blocks that were compressed but not written. Called once no block
+   * can still be compressed; blocks that were dropped or skipped hold no buffer.
+   */
+  private static void releaseCompleted(Iterable<Future<ByteBuffer>> blocks) {
+    for (Future<ByteBuffer> f : blocks) {
+      if (!f.isDone() || f.isCancelled()) continue;
+      try {
+        ByteBuffer b = f.get();
+        if (b != null) BufferPool.release(b);
+      } catch (ExecutionException | InterruptedException e) {
+        // The block failed, so it holds no buffer. A done future does not wait to be interrupted.
+      }
+    }
+  }
+
+  /**
+   * Measures the run of whole members at the given offset whose compressed or uncompressed size
+   * first reaches the target size.
+   *
+   * @return the compressed and uncompressed sizes of the run, or null if the file ends or the
+   *     member at the offset cannot be measured.
+   */
+  static int[] nextUnit(FileChannel in, long off, long size, Algorithm algorithm, int targetSize)
+      throws IOException {
+    long start = off;
+    long decompressed = 0;
+    while (off < size && off - start < targetSize && decompressed < targetSize) {
+      long[] member = measure(in, off, size, algorithm);
+      if (member == null
+          || off - start + member[0] > Integer.MAX_VALUE - 8
+          || decompressed + member[1] > Integer.MAX_VALUE - 8) break;
+      off += member[0];
+      decompressed += member[1];
+    }
+    return off == start ? null : new int[] {(int) (off - start), (int) decompressed};
+  }
+
+  /**
+   * Measures the gzip member or LZ4 frame at the given offset with positional reads of its headers.
+   *
+   * @return the member length and its uncompressed size, or null if it cannot be measured.
+   */
+  private static long[] measure(FileChannel in, long off, long size, Algorithm algorithm)
+      throws IOException {
+    if (algorithm == Algorithm.DEFLATE) {
+      byte[] b = read(in, off, (int) Math.min(size - off, Gzip.EXT_HEADER_LENGTH));
+      Gzip.Header header;
+      try {
+        header = Gzip.Header.parse(b, 0, b.length);
+      } catch (QatException e) {
+        return null;
+      }
+      if (header == null || header.srcSize < 0 || header.destSize < 0) return null;
+      long length = (long) header.length + header.destSize + Gzip.TRAILER_LENGTH;
+      return off + length <= size ? new long[] {length, header.srcSize} : null;
+    }
+
+    byte[] b = read(in, off, (int) Math.min(size - off, Lz4.FRAME_HEADER_LENGTH));
+    if (b.length < 8) return null;
+    int magic = Gzip.readInt(b, 0);
+    if ((magic & 0xFFFFFFF0) == Lz4.SKIPPABLE_MAGIC) {
+      long length = 8 + (Gzip.readInt(b, 4) & 0xFFFFFFFFL);
+      return off + length <= size ? new long[] {length, 0} : null;
+    }
+    int headerLength;
+    try {
+      headerLength = magic == Lz4.MAGIC ? Lz4.frameHeaderLength(b, 0, b.length) : -1;
+    } catch (QatException e) {
+      return null;
+    }
+    int flg = b[4] & 0xFF;
+    if (headerLength < 0 || (flg & Lz4.FLG_CONTENT_SIZE) == 0 || (flg & Lz4.FLG_DICT_ID) != 0)
+      return null;
+    long contentSize = (Gzip.readInt(b, 6) & 0xFFFFFFFFL) | (long) Gzip.readInt(b, 10) << 32;
+    if (contentSize < 0) return null;
+
+    long length = headerLength;
+    while (true) {
+      if (off + length + 4 > size) return null;
+      int blockSize = Gzip.readInt(read(in, off + length, 4), 0);
+      length += 4;
+      if (blockSize == 0) break;
+      length += (blockSize & ~Lz4.UNCOMPRESSED_BIT) + ((flg & Lz4.FLG_BLOCK_CHECKSUM) != 0 ? 4 : 0);
+    }
+    if ((flg & Lz4.FLG_CONTENT_CHECKSUM) != 0) length += 4;
+    return off + length <= size ? new long[] {length, contentSize} : null;
+  }
+
+  /** Reads the given number of bytes at the given offset, or fewer if the file ends first. */
+  private static byte[] read(FileChannel in, long position, int len) throws IOException {
+    ByteBuffer b = ByteBuffer.allocate(len);
+    while (b.hasRemaining()) {
+      if (in.read(b, position + b.position()) < 0) break;
+    }
+    return b.position() == len ? b.array() : Arrays.copyOf(b.array(), b.position());
+  }
+
+  private static void checkPaths(Path src, Path dst) throws IOException {
+    Objects.requireNonNull(src);
+    Objects.requireNonNull(dst);
+    if (Files.exists(dst) && Files.isSameFile(src, dst))
+      throw new IllegalArgumentException("Source and destination are the same file");
+  }
+
+  static FileChannel openDestination(Path dst) throws IOException {
+    return FileChannel.open(
+        dst,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+  }
+
+  /** Receives the outcome of each file compressed by {@link #compressTree}. */
+  public interface TreeListener {
+    /**
+     * Called when a file has been compressed or has failed. Calls are made from the threads that
+     * compress the files, one at a time.
+     *
+     * @param file the statistics of the file
+     * @param progress the totals so far, including this file
+     */
+    void fileCompressed(FileStats file, TreeStats progress);
+  }
+
+  /** The outcome of compressing one file. */
+  public static final class FileStats {
+    private final Path source;
+    private final Path target;
+    private final long size;
+    private final long compressedSize;
+    private final long nanos;
+    private final IOException failure;
+
+    FileStats(
+        Path source, Path target, long size, long compressedSize, long nanos, IOException failure) {
+      this.source = source;
+      this.target = target;
+      this.size = size;
+      this.compressedSize = compressedSize;
+      this.nanos = nanos;
+      this.failure = failure;
+    }
+
+    /**
+     * Returns the file that was compressed.
+     *
+     * @return the source file
+     */
+    public Path source() {
+      return source;
+    }
+
+    /**
+     * Returns the compressed file.
+     *
+     * @return the target file, or null if it could not be determined
+     */
+    public Path target() {
+      return target;
+    }
+
+    /**
+     * Returns the number of bytes read from the source file.
+     *
+     * @return the uncompressed size
+     */
+    public long size() {
+      return size;
+    }
+
+    /**
+     * Returns the number of bytes written to the target file.
+     *
+     * @return the compressed size
+     */
+    public long compressedSize() {
+      return compressedSize;
+    }
+
+    /**
+     * Returns the time from opening the file until its last block was written.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long nanos() {
+      return nanos;
+    }
+
+    /**
+     * Returns the reason the file could not be compressed.
+     *
+     * @return the failure, or null if the file was compressed
+     */
+    public IOException failure() {
+      return failure;
+    }
+  }
+
+  /** The totals for the files compressed by {@link #compressTree}. */
+  public static final class TreeStats {
+    private final long files;
+    private final long failedFiles;
+    private final long bytesRead;
+    private final long bytesWritten;
+
+    TreeStats(long files, long failedFiles, long bytesRead, long bytesWritten) {
+      this.files = files;
+      this.failedFiles = failedFiles;
+      this.bytesRead = bytesRead;
+      this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * Returns the number of files compressed.
+     *
+     * @return the number of files
+     */
+    public long files() {
+      return files;
+    }
+
+    /**
+     * Returns the number of files that could not be compressed.
+     *
+     * @return the number of failed files
+     */
+    public long failedFiles() {
+      return failedFiles;
+    }
+
+    /**
+     * Returns the number of uncompressed bytes read.
+     *
+     * @return the number of bytes read
+     */
+    public long bytesRead() {
+      return bytesRead;
+    }
+
+    /**
+     * Returns the number of compressed bytes written.
+     *
+     * @return the number of bytes written
+     */
+    public long bytesWritten() {
+      return bytesWritten;
+    }
+  }
+}
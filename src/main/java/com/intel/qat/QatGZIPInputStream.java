@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A drop-in replacement for {@link GZIPInputStream} that decompresses using Intel &reg; QuickAssist
+ * Technology (QAT), with {@link Mode#AUTO}.
+ *
+ * <p>The constructors and methods behave as those of {@link GZIPInputStream}. Any gzip data is
+ * accepted, including files with several members and files written by other gzip tools. Unlike
+ * {@link GZIPInputStream}, the constructor does not read the header, so a stream that is not in
+ * gzip format is reported by the first read instead.
+ */
+public class QatGZIPInputStream extends GZIPInputStream {
+  /** A minimal gzip header for the superclass constructor to read. */
+  private static final byte[] EMPTY_HEADER = {
+    (byte) Gzip.ID1, (byte) Gzip.ID2, Gzip.CM_DEFLATE, 0, 0, 0, 0, 0, 0, (byte) Gzip.OS_UNKNOWN
+  };
+
+  private final QatDecompressorInputStream qin;
+  private boolean closed;
+
+  /**
+   * Creates a new input stream with a default buffer size.
+   *
+   * @param in the input stream
+   * @throws IOException never; declared for compatibility with {@link GZIPInputStream}
+   */
+  public QatGZIPInputStream(InputStream in) throws IOException {
+    this(in, 512);
+  }
+
+  /**
+   * Creates a new input stream with the specified buffer size.
+   *
+   * @param in the input stream
+   * @param size the input buffer size
+   * @throws IOException never; declared for compatibility with {@link GZIPInputStream}
+   * @throws IllegalArgumentException if {@code size <= 0}
+   */
+  public QatGZIPInputStream(InputStream in, int size) throws IOException {
+    // The superclass reads a header in its constructor, so give it one that is not in the input.
+    super(new ByteArrayInputStream(EMPTY_HEADER), size);
+    inf.end();
+    this.in = in;
+    int bufferSize = Math.max(size, QatZipper.MIN_BLOCK_SIZE);
+    qin = new QatDecompressorInputStream(in, bufferSize, Algorithm.DEFLATE, Mode.AUTO);
+  }
+
+  /**
+   * Reads a byte of uncompressed data.
+   *
+   * @return the byte read, or -1 if the end of the compressed input is reached
+   * @throws IOException if an I/O error occurs or the input is not valid gzip data
+   */
+  @Override
+  public int read() throws IOException {
+    return qin.read();
+  }
+
+  /**
+   * Reads uncompressed data into an array of bytes.
+   *
+   * @param buf the buffer into which the data is read
+   * @param off the start offset in the buffer
+   * @param len the maximum number of bytes read
+   * @return the number of bytes read, or -1 if the end of the compressed input is reached
+   * @throws IOException if an I/O error occurs or the input is not valid gzip data
+   */
+  @Override
+  public int read(byte[] buf, int off, int len) throws IOException {
+    return qin.read(buf, off, len);
+  }
+
+  /**
+   * Returns 0 after the end of the compressed input is reached, otherwise 1.
+   *
+   * @return 1 before the end of the compressed input, 0 after
+   * @throws IOException if the stream is closed
+   */
+  @Override
+  public int available() throws IOException {
+    return qin.available() > 0 ? 1 : 0;
+  }
+
+  /**
+   * Skips uncompressed data.
+   *
+   * @param n the number of bytes to skip
+   * @return the number of bytes skipped
+   * @throws IOException if an I/O error occurs
+   * @throws IllegalArgumentException if {@code n < 0}
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    if (n < 0) throw new IllegalArgumentException("negative skip length");
+    return qin.skip(n);
+  }
+
+  /**
+   * Closes this input stream and the underlying input stream.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    qin.close();
+  }
+}
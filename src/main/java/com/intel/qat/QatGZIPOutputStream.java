@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A drop-in replacement for {@link GZIPOutputStream} that compresses using Intel &reg; QuickAssist
+ * Technology (QAT), with {@link Mode#AUTO}.
+ *
+ * <p>The constructors and methods behave as those of {@link GZIPOutputStream}. The output is a
+ * sequence of gzip members, one per block, that gunzip and {@link java.util.zip.GZIPInputStream}
+ * read as a single stream. The <code>size</code> argument is validated as in {@link
+ * GZIPOutputStream}, and blocks are at least that large.
+ */
+public class QatGZIPOutputStream extends GZIPOutputStream {
+  /** A gzip member holding no data, written if nothing else is, as gzip expects one member. */
+  private static final byte[] EMPTY_MEMBER = {
+    (byte) Gzip.ID1,
+    (byte) Gzip.ID2,
+    Gzip.CM_DEFLATE,
+    0,
+    0,
+    0,
+    0,
+    0,
+    0,
+    (byte) Gzip.OS_UNKNOWN,
+    3,
+    0,
+    0,
+    0,
+    0,
+    0,
+    0,
+    0,
+    0,
+    0
+  };
+
+  private final QatCompressorOutputStream qout;
+  private final boolean syncFlush;
+  private boolean empty = true;
+  private boolean finished;
+  private boolean closed;
+
+  /**
+   * Creates a new output stream with a default buffer size.
+   *
+   * @param out the output stream
+   * @throws IOException never; declared for compatibility with {@link GZIPOutputStream}
+   */
+  public QatGZIPOutputStream(OutputStream out) throws IOException {
+    this(out, 512, false);
+  }
+
+  /**
+   * Creates a new output stream with the specified buffer size.
+   *
+   * @param out the output stream
+   * @param size the output buffer size
+   * @throws IOException never; declared for compatibility with {@link GZIPOutputStream}
+   * @throws IllegalArgumentException if {@code size <= 0}
+   */
+  public QatGZIPOutputStream(OutputStream out, int size) throws IOException {
+    this(out, size, false);
+  }
+
+  /**
+   * Creates a new output stream with a default buffer size and the specified flush mode.
+   *
+   * @param out the output stream
+   * @param syncFlush if true, {@link #flush()} compresses and writes buffered data before flushing
+   *     the output stream
+   * @throws IOException never; declared for compatibility with {@link GZIPOutputStream}
+   */
+  public QatGZIPOutputStream(OutputStream out, boolean syncFlush) throws IOException {
+    this(out, 512, syncFlush);
+  }
+
+  /**
+   * Creates a new output stream with the specified buffer size and flush mode.
+   *
+   * @param out the output stream
+   * @param size the output buffer size
+   * @param syncFlush if true, {@link #flush()} compresses and writes buffered data before flushing
+   *     the output stream
+   * @throws IOException never; declared for compatibility with {@link GZIPOutputStream}
+   * @throws IllegalArgumentException if {@code size <= 0}
+   */
+  public QatGZIPOutputStream(OutputStream out, int size, boolean syncFlush) throws IOException {
+    // The superclass writes its own header, so give it a stream that discards it.
+    super(OutputStream.nullOutputStream(), size, syncFlush);
+    def.end();
+    this.out = out;
+    this.syncFlush = syncFlush;
+    int blockSize = Math.max(size, QatZipper.defaultBlockSize(Algorithm.DEFLATE, Mode.AUTO));
+    qout =
+        new QatCompressorOutputStream(
+            out, blockSize, Algorithm.DEFLATE, QatZipper.DEFAULT_COMPRESS_LEVEL, Mode.AUTO);
+    qout.setFlushPolicy(QatCompressorOutputStream.FlushPolicy.NO_SINK_FLUSH);
+  }
+
+  /**
+   * Writes a byte to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void write(int b) throws IOException {
+    ensureWritable();
+    qout.write(b);
+    empty = false;
+  }
+
+  /**
+   * Writes data from the given byte array to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @param off the starting offset of the data
+   * @param len the length of the data
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureWritable();
+    qout.write(b, off, len);
+    if (len > 0) empty = false;
+  }
+
+  /**
+   * Flushes the output stream. If the stream was created with <code>syncFlush</code>, all buffered
+   * data is compressed and written first.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void flush() throws IOException {
+    if (syncFlush && !finished) qout.flush();
+    out.flush();
+  }
+
+  /**
+   * Finishes writing compressed data to the output stream without closing it.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void finish() throws IOException {
+    if (finished) return;
+    qout.flush();
+    if (empty) out.write(EMPTY_MEMBER);
+    finished = true;
+  }
+
+  /**
+   * Finishes writing compressed data and closes the output stream.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    try {
+      finish();
+    } finally {
+      // Release the session and close the output stream even if the data could not be written.
+      qout.close();
+    }
+  }
+
+  private void ensureWritable() throws IOException {
+    if (finished) throw new IOException("write beyond end of stream");
+  }
+}
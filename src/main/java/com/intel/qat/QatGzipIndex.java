@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * An index of access points into an existing gzip file, kept beside the file, so that reading from
+ * an uncompressed offset starts at the nearest access point instead of the start of the file. This
+ * is the technique of zlib's <code>zran</code> example; the gzip file itself is not changed.
+ *
+ * <p>{@link #build(InputStream, long)} makes one pass over the file and records an access point
+ * about every <code>span</code> uncompressed bytes: the start of a gzip member, or the bit offset
+ * of a deflate block together with the 32 KB of output that precedes it. The windows are kept
+ * compressed with {@link QatZipper}. {@link #open(SeekableByteChannel, long)} decodes the rest of
+ * the member that holds an access point in Java, as QATzip cannot start inside a deflate stream,
+ * and decompresses every following member with a {@link QatDecompressorInputStream}.
+ */
+public final class QatGzipIndex {
+  /** The default distance in uncompressed bytes between access points. */
+  public static final long DEFAULT_SPAN = 1024 * 1024;
+
+  private static final long MAGIC = 0x3158444947544151L; // "QATGIDX1"
+
+  /** The uncompressed offset of each access point. */
+  private final long[] offsets;
+
+  /**
+   * The bit offset of each access point in the gzip file. At the start of a member, this is the
+   * offset of its header.
+   */
+  private final long[] bitOffsets;
+
+  /** The window of each access point compressed with deflate, or null at the start of a member. */
+  private final byte[][] windows;
+
+  private final int[] windowLengths;
+  private final long length;
+
+  private QatGzipIndex(
+      long[] offsets, long[] bitOffsets, byte[][] windows, int[] windowLengths, long length) {
+    this.offsets = offsets;
+    this.bitOffsets = bitOffsets;
+    this.windows = windows;
+    this.windowLengths = windowLengths;
+    this.length = length;
+  }
+
+  /**
+   * Builds an index of a gzip file with {@link #DEFAULT_SPAN}.
+   *
+   * @param in the gzip file
+   * @return the index
+   * @throws IOException if the data is not valid gzip data or an I/O error occurs
+   */
+  public static QatGzipIndex build(InputStream in) throws IOException {
+    return build(in, DEFAULT_SPAN);
+  }
+
+  /**
+   * Builds an index of a gzip file, reading it to the end. The stream is not closed. Data that
+   * follows the last gzip member is ignored, as gzip does.
+   *
+   * @param in the gzip file
+   * @param span the least distance in uncompressed bytes between access points
+   * @return the index
+   * @throws IOException if the data is not valid gzip data or an I/O error occurs
+   */
+  public static QatGzipIndex build(InputStream in, long span) throws IOException {
+    Objects.requireNonNull(in);
+    if (span <= 0) throw new IllegalArgumentException();
+    Builder builder = new Builder();
+    PushbackInputStream pin = new PushbackInputStream(in, 8192 + 64);
+    byte[] buf = new byte[64 * 1024];
+    CRC32 crc = new CRC32();
+    long position = 0;
+    long out = 0;
+    long last = -span;
+    QatZipper qzip = new QatZipper(Algorithm.DEFLATE, Mode.AUTO);
+    try {
+      while (true) {
+        int headerLength = readHeader(pin, position == 0);
+        if (headerLength < 0) break;
+        if (out - last >= span) {
+          builder.add(out, position * 8, null, 0);
+          last = out;
+        }
+        position += headerLength;
+
+        RawInflater inflater = new RawInflater(pin, position);
+        crc.reset();
+        long memberStart = out;
+        int n;
+        while ((n = inflater.read(buf, 0, buf.length)) >= 0) {
+          crc.update(buf, 0, n);
+          out += n;
+          if (inflater.atBlockBoundary() && out - last >= span) {
+            byte[] history = inflater.history();
+            byte[] window = new byte[qzip.maxCompressedLength(history.length)];
+            int len = qzip.compress(history, 0, history.length, window, 0, window.length);
+            builder.add(out, inflater.bitPosition(), Arrays.copyOf(window, len), history.length);
+            last = out;
+          }
+        }
+        pin.unread(inflater.remaining());
+        position = inflater.remainingPosition();
+
+        byte[] trailer = new byte[Gzip.TRAILER_LENGTH];
+        new DataInputStream(pin).readFully(trailer);
+        position += Gzip.TRAILER_LENGTH;
+        if (Gzip.readInt(trailer, 0) != (int) crc.getValue()
+            || Gzip.readInt(trailer, 4) != (int) (out - memberStart))
+          throw new IOException("Corrupt gzip trailer");
+      }
+    } finally {
+      qzip.end();
+    }
+    return builder.build(out);
+  }
+
+  /**
+   * Returns the uncompressed size of the gzip file.
+   *
+   * @return the uncompressed size
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Returns the number of access points.
+   *
+   * @return the number of access points
+   */
+  public int size() {
+    return offsets.length;
+  }
+
+  /**
+   * Opens a stream that reads the uncompressed content of the indexed gzip file from the given
+   * offset. The channel's position is changed, and the channel is closed with the stream.
+   *
+   * @param channel the gzip file that this index was built from
+   * @param offset the uncompressed offset of the first byte to be read
+   * @return the stream
+   * @throws IOException if the file does not match the index or an I/O error occurs
+   */
+  public InputStream open(SeekableByteChannel channel, long offset) throws IOException {
+    Objects.requireNonNull(channel);
+    if (offset < 0) throw new IllegalArgumentException();
+    InputStream stream;
+    if (offsets.length == 0) {
+      stream = InputStream.nullInputStream();
+      channel.close();
+    } else {
+      int i = Arrays.binarySearch(offsets, offset);
+      if (i < 0) i = -i - 2;
+      channel.position(bitOffsets[i] >>> 3);
+      InputStream in = Channels.newInputStream(channel);
+      if (windows[i] == null) {
+        stream = newDecompressor(in);
+      } else {
+        byte[] history = new byte[windowLengths[i]];
+        QatZipper qzip = new QatZipper(Algorithm.DEFLATE, Mode.AUTO);
+        try {
+          if (qzip.decompress(windows[i], 0, windows[i].length, history, 0, history.length)
+              != history.length) throw new IOException("Corrupt gzip index");
+        } finally {
+          qzip.end();
+        }
+        stream = new MemberTailInputStream(in, bitOffsets[i], history);
+      }
+      offset -= offsets[i];
+    }
+    while (offset > 0) {
+      long n = stream.skip(offset);
+      if (n <= 0) {
+        if (stream.read() < 0) break;
+        n = 1;
+      }
+      offset -= n;
+    }
+    return stream;
+  }
+
+  /**
+   * Writes this index.
+   *
+   * @param out the output stream, which is not closed
+   * @throws IOException if an I/O error occurs
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeLong(MAGIC);
+    data.writeLong(length);
+    data.writeInt(offsets.length);
+    for (int i = 0; i < offsets.length; i++) {
+      data.writeLong(offsets[i]);
+      data.writeLong(bitOffsets[i]);
+      if (windows[i] == null) {
+        data.writeInt(-1);
+      } else {
+        data.writeInt(windowLengths[i]);
+        data.writeInt(windows[i].length);
+        data.write(windows[i]);
+      }
+    }
+    data.flush();
+  }
+
+  /**
+   * Reads an index written by {@link #writeTo(OutputStream)}.
+   *
+   * @param in the input stream, which is not closed
+   * @return the index
+   * @throws IOException if the data is not a valid index or an I/O error occurs
+   */
+  public static QatGzipIndex readFrom(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readLong() != MAGIC) throw new IOException("Not a gzip index");
+    long length = data.readLong();
+    int count = data.readInt();
+    if (length < 0 || count < 0) throw new IOException("Corrupt gzip index");
+    Builder builder = new Builder();
+    for (int i = 0; i < count; i++) {
+      long offset = data.readLong();
+      long bitOffset = data.readLong();
+      int windowLength = data.readInt();
+      byte[] window = null;
+      if (windowLength >= 0) {
+        int compressedLength = data.readInt();
+        if (windowLength > RawInflater.WINDOW_SIZE || compressedLength <= 0)
+          throw new IOException("Corrupt gzip index");
+        window = new byte[compressedLength];
+        data.readFully(window);
+      }
+      builder.add(offset, bitOffset, window, windowLength);
+    }
+    return builder.build(length);
+  }
+
+  /**
+   * Reads a gzip member header. Input is read ahead in chunks that the stream can push back, and
+   * the bytes that follow the header are pushed back.
+   *
+   * @return the length of the header, or -1 if the input ends or does not continue with a member
+   *     after the first.
+   */
+  private static int readHeader(PushbackInputStream in, boolean first) throws IOException {
+    byte[] header = new byte[256];
+    int len = 0;
+    while (true) {
+      if (len == header.length) header = Arrays.copyOf(header, 2 * len);
+      // After reading n bytes, at least n bytes can be pushed back.
+      int n = in.read(header, len, Math.min(header.length - len, 8192));
+      if (n < 0) {
+        if (len == 0 && !first) return -1;
+        throw new EOFException("Unexpected end of gzip header");
+      }
+      len += n;
+      Gzip.Header parsed;
+      try {
+        parsed = Gzip.Header.parse(header, 0, len);
+      } catch (QatException e) {
+        if (first) throw new IOException("Not in gzip format");
+        return -1;
+      }
+      if (parsed != null) {
+        // The header was incomplete before this read, so only bytes of this read are pushed back.
+        in.unread(header, parsed.length, len - parsed.length);
+        return parsed.length;
+      }
+    }
+  }
+
+  private static InputStream newDecompressor(InputStream in) {
+    return new QatDecompressorInputStream(
+        in, QatZipper.MIN_BLOCK_SIZE, Algorithm.DEFLATE, Mode.AUTO);
+  }
+
+  /** Collects access points in increasing order. */
+  private static final class Builder {
+    private final List<long[]> positions = new ArrayList<>();
+    private final List<byte[]> windows = new ArrayList<>();
+    private final List<Integer> windowLengths = new ArrayList<>();
+
+    void add(long offset, long bitOffset, byte[] window, int windowLength) throws IOException {
+      if (!positions.isEmpty() && positions.get(positions.size() - 1)[0] > offset)
+        throw new IOException("Corrupt gzip index");
+      positions.add(new long[] {offset, bitOffset});
+      windows.add(window);
+      windowLengths.add(windowLength);
+    }
+
+    QatGzipIndex build(long length) {
+      int count = positions.size();
+      long[] offsets = new long[count];
+      long[] bitOffsets = new long[count];
+      int[] lengths = new int[count];
+      for (int i = 0; i < count; i++) {
+        offsets[i] = positions.get(i)[0];
+        bitOffsets[i] = positions.get(i)[1];
+        lengths[i] = windowLengths.get(i);
+      }
+      return new QatGzipIndex(offsets, bitOffsets, windows.toArray(new byte[0][]), lengths, length);
+    }
+  }
+
+  /**
+   * Decodes the rest of a member from a block boundary, then decompresses the members that follow
+   * it with QAT.
+   */
+  private static final class MemberTailInputStream extends InputStream {
+    private final PushbackInputStream in;
+    private final byte[] single = new byte[1];
+    private RawInflater inflater;
+    private InputStream rest;
+
+    MemberTailInputStream(InputStream in, long bitOffset, byte[] history) throws IOException {
+      this.in = new PushbackInputStream(in, 8192 + 64);
+      inflater = new RawInflater(this.in, bitOffset, history);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, b.length);
+      if (len == 0) return 0;
+      if (inflater != null) {
+        int n = inflater.read(b, off, len);
+        if (n >= 0) return n;
+        // The trailer's checksum covers data before the access point, so it is not checked.
+        in.unread(inflater.remaining());
+        inflater = null;
+        new DataInputStream(in).readFully(new byte[Gzip.TRAILER_LENGTH]);
+        rest = newDecompressor(in);
+      }
+      return rest.read(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (rest != null) rest.close();
+      else in.close();
+    }
+  }
+}
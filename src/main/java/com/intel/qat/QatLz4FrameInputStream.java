@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * This class implements an InputStream filter that reads LZ4 frames, as written by the <code>lz4
+ * </code> command line tool, liblz4, {@link QatLz4FrameOutputStream} and {@link
+ * QatCompressorOutputStream}.
+ *
+ * <p>Frames are decoded with the decoder of {@link JavaEngine}, which accepts every frame option
+ * except dictionaries: any block size, independent or linked blocks, block and content checksums,
+ * content sizes, concatenated frames and skippable frames. Checksums and content sizes are
+ * verified, and a failed check is reported as an {@link IOException}.
+ */
+public class QatLz4FrameInputStream extends FilterInputStream {
+  /** The default size in bytes of the input buffer. */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final Lz4FrameDecoder decoder = new Lz4FrameDecoder();
+  private final byte[] inputBuffer;
+  private int inputPos;
+  private int inputLen;
+  private final byte[] single = new byte[1];
+  private boolean eof;
+  private boolean closed;
+
+  /**
+   * Creates a new input stream with {@link #DEFAULT_BUFFER_SIZE}.
+   *
+   * @param in the input stream
+   */
+  public QatLz4FrameInputStream(InputStream in) {
+    this(in, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a new input stream with the given input buffer size.
+   *
+   * @param in the input stream
+   * @param bufferSize the input buffer size
+   */
+  public QatLz4FrameInputStream(InputStream in, int bufferSize) {
+    super(in);
+    Objects.requireNonNull(in);
+    if (bufferSize <= 0) throw new IllegalArgumentException();
+    inputBuffer = new byte[bufferSize];
+  }
+
+  /**
+   * Reads the next byte of uncompressed data.
+   *
+   * @return the next byte of data or -1 if the end of the stream is reached.
+   * @throws IOException if the stream is closed, the data is not valid or an I/O error occurs
+   */
+  @Override
+  public int read() throws IOException {
+    return read(single, 0, 1) < 0 ? -1 : Byte.toUnsignedInt(single[0]);
+  }
+
+  /**
+   * Reads uncompressed data into the provided array.
+   *
+   * @param b the array into which the data is read
+   * @param off the starting offset in the array
+   * @param len the maximum number of bytes to be read
+   * @return the number of bytes read, or -1 if the end of the stream is reached
+   * @throws IOException if the stream is closed, the data is not valid or an I/O error occurs
+   */
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0) return 0;
+    while (true) {
+      int n;
+      try {
+        n = decoder.decode(inputBuffer, inputPos, inputLen - inputPos, b, off, len);
+      } catch (QatException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+      inputPos += decoder.consumed();
+      if (n > 0) return n;
+      if (inputPos < inputLen) continue;
+      if (eof) {
+        if (!decoder.atFrameBoundary()) throw new EOFException("Unexpected end of LZ4 frame");
+        return -1;
+      }
+      inputPos = 0;
+      inputLen = in.read(inputBuffer, 0, inputBuffer.length);
+      if (inputLen < 0) {
+        inputLen = 0;
+        eof = true;
+      }
+    }
+  }
+
+  /**
+   * Skips uncompressed data, which is decompressed and discarded.
+   *
+   * @param n the number of bytes to skip
+   * @return the number of bytes skipped
+   * @throws IOException if the stream is closed, the data is not valid or an I/O error occurs
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    ensureOpen();
+    if (n <= 0) return 0;
+    byte[] discard = new byte[(int) Math.min(n, 8192)];
+    long remaining = n;
+    while (remaining > 0) {
+      int read = read(discard, 0, (int) Math.min(remaining, discard.length));
+      if (read < 0) break;
+      remaining -= read;
+    }
+    return n - remaining;
+  }
+
+  /**
+   * Returns 0 after the end of the stream is reached, otherwise 1.
+   *
+   * @return 0 if and only if the end of the stream is reached
+   * @throws IOException if the stream is closed
+   */
+  @Override
+  public int available() throws IOException {
+    ensureOpen();
+    return eof && inputPos == inputLen && decoder.atFrameBoundary() ? 0 : 1;
+  }
+
+  /**
+   * Closes this input stream and the underlying input stream.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    in.close();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {}
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+  }
+}
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * This class implements an OutputStream filter that writes a single LZ4 frame, as written by the
+ * <code>lz4</code> command line tool and liblz4, compressing with Intel &reg; QuickAssist
+ * Technology (QAT).
+ *
+ * <p>Unlike {@link QatCompressorOutputStream} with {@link Algorithm#LZ4}, which writes one frame
+ * per block, the blocks compressed by QAT are copied into one frame whose options are chosen by the
+ * caller: the maximum block size (64 KB, 256 KB, 1 MB or 4 MB), block checksums, a content checksum
+ * and a declared content size. Blocks are independent. If a content size is declared, {@link
+ * #close()} fails unless exactly that many bytes were written.
+ */
+public class QatLz4FrameOutputStream extends FilterOutputStream {
+  /** The default maximum block size. */
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  private final QatZipper qzip;
+  private final int flags;
+  private final int blockDescriptor;
+  private final long contentSize;
+  private final XXHash32 contentHash = new XXHash32();
+  private final byte[] block;
+  private int blockLen;
+  private byte[] compressed;
+  private final byte[] header = new byte[Lz4.FRAME_HEADER_LENGTH];
+  private final byte[] checksum = new byte[4];
+  private long written;
+  private boolean headerWritten;
+  private boolean closed;
+
+  /**
+   * Creates a new output stream with {@link #DEFAULT_BLOCK_SIZE}, a content checksum, no block
+   * checksums and no content size, as the <code>lz4</code> tool writes by default.
+   *
+   * @param out the output stream
+   */
+  public QatLz4FrameOutputStream(OutputStream out) {
+    this(out, DEFAULT_BLOCK_SIZE, false, true, -1);
+  }
+
+  /**
+   * Creates a new output stream with {@link #DEFAULT_BLOCK_SIZE}, a content checksum, no block
+   * checksums and the given content size.
+   *
+   * @param out the output stream
+   * @param contentSize the number of bytes that will be written, or -1 to leave it out of the frame
+   *     header
+   */
+  public QatLz4FrameOutputStream(OutputStream out, long contentSize) {
+    this(out, DEFAULT_BLOCK_SIZE, false, true, contentSize);
+  }
+
+  /**
+   * Creates a new output stream with the given frame options, {@link
+   * QatZipper#DEFAULT_COMPRESS_LEVEL} and {@link Mode#AUTO}.
+   *
+   * @param out the output stream
+   * @param blockSize the maximum block size: 64 KB, 256 KB, 1 MB or 4 MB
+   * @param blockChecksum whether each block is followed by a checksum
+   * @param contentChecksum whether the frame ends with a checksum of the uncompressed content
+   * @param contentSize the number of bytes that will be written, or -1 to leave it out of the frame
+   *     header
+   */
+  public QatLz4FrameOutputStream(
+      OutputStream out,
+      int blockSize,
+      boolean blockChecksum,
+      boolean contentChecksum,
+      long contentSize) {
+    this(
+        out,
+        blockSize,
+        blockChecksum,
+        contentChecksum,
+        contentSize,
+        QatZipper.DEFAULT_COMPRESS_LEVEL,
+        Mode.AUTO);
+  }
+
+  /**
+   * Creates a new output stream with the given parameters.
+   *
+   * @param out the output stream
+   * @param blockSize the maximum block size: 64 KB, 256 KB, 1 MB or 4 MB
+   * @param blockChecksum whether each block is followed by a checksum
+   * @param contentChecksum whether the frame ends with a checksum of the uncompressed content
+   * @param contentSize the number of bytes that will be written, or -1 to leave it out of the frame
+   *     header
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   */
+  public QatLz4FrameOutputStream(
+      OutputStream out,
+      int blockSize,
+      boolean blockChecksum,
+      boolean contentChecksum,
+      long contentSize,
+      int level,
+      Mode mode) {
+    super(out);
+    Objects.requireNonNull(out);
+    if (blockSize <= 0
+        || Lz4.maxBlockSize(Lz4.blockDescriptor(blockSize)) != blockSize
+        || contentSize < -1) throw new IllegalArgumentException();
+    this.flags =
+        (blockChecksum ? Lz4.FLG_BLOCK_CHECKSUM : 0)
+            | (contentChecksum ? Lz4.FLG_CONTENT_CHECKSUM : 0)
+            | (contentSize >= 0 ? Lz4.FLG_CONTENT_SIZE : 0);
+    this.blockDescriptor = Lz4.blockDescriptor(blockSize);
+    this.contentSize = contentSize;
+    qzip = new QatZipper(Algorithm.LZ4, level, mode);
+    block = new byte[blockSize];
+    compressed = new byte[qzip.maxCompressedLength(blockSize)];
+  }
+
+  /**
+   * Writes a byte to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @throws IOException if this stream is closed or an I/O error occurs
+   */
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    if (blockLen == block.length) writeBlock();
+    block[blockLen++] = (byte) b;
+  }
+
+  /**
+   * Writes data from the given byte array to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @param off the starting offset of the data
+   * @param len the length of the data
+   * @throws IOException if this stream is closed or an I/O error occurs
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    Objects.checkFromIndexSize(off, len, b.length);
+    while (len > 0) {
+      if (blockLen == block.length) writeBlock();
+      int n = Math.min(len, block.length - blockLen);
+      System.arraycopy(b, off, block, blockLen, n);
+      blockLen += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Compresses and writes buffered data as a block, then flushes the output stream.
+   *
+   * @throws IOException if this stream is closed or an I/O error occurs
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    writeBlock();
+    out.flush();
+  }
+
+  /**
+   * Writes the remaining data and the end of the frame, and closes the output stream.
+   *
+   * @throws IOException if the declared content size does not match the bytes written, or an I/O
+   *     error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    try {
+      writeBlock();
+      byte[] trailer = new byte[8];
+      Gzip.writeInt(trailer, 0, 0);
+      Gzip.writeInt(trailer, 4, contentHash.getValue());
+      out.write(trailer, 0, (flags & Lz4.FLG_CONTENT_CHECKSUM) != 0 ? 8 : 4);
+      if (contentSize >= 0 && written != contentSize)
+        throw new IOException(
+            "Content size mismatch: declared " + contentSize + ", written " + written);
+    } finally {
+      qzip.end();
+      out.close();
+    }
+  }
+
+  /** Compresses the buffered data and writes its blocks, preceded by the frame header if needed. */
+  private void writeBlock() throws IOException {
+    if (!headerWritten) {
+      int len = Lz4.writeFrameHeader(header, 0, flags, blockDescriptor, contentSize);
+      out.write(header, 0, len);
+      headerWritten = true;
+    }
+    if (blockLen == 0) return;
+    written += blockLen;
+    if (contentSize >= 0 && written > contentSize)
+      throw new IOException("Content size exceeded: declared " + contentSize);
+    if ((flags & Lz4.FLG_CONTENT_CHECKSUM) != 0) contentHash.update(block, 0, blockLen);
+    int len = qzip.compress(block, 0, blockLen, compressed, 0, compressed.length);
+    blockLen = 0;
+    copyBlocks(compressed, len);
+  }
+
+  /**
+   * Copies the blocks of the frames written by {@link QatZipper} into the output frame, replacing
+   * their block checksums with those of the output frame.
+   */
+  private void copyBlocks(byte[] src, int len) throws IOException {
+    int pos = 0;
+    while (pos < len) {
+      if (Gzip.readInt(src, pos) != Lz4.MAGIC) throw unexpected();
+      int headerLen = Lz4.frameHeaderLength(src, pos, len - pos);
+      if (headerLen < 0) throw unexpected();
+      int flg = src[pos + 4] & 0xFF;
+      // Blocks that refer to earlier blocks cannot be moved into an independent frame.
+      if ((flg & Lz4.FLG_BLOCK_INDEPENDENCE) == 0) throw unexpected();
+      pos += headerLen;
+      while (true) {
+        int blockSize = Gzip.readInt(src, pos);
+        pos += 4;
+        if (blockSize == 0) break;
+        int dataLen = blockSize & ~Lz4.UNCOMPRESSED_BIT;
+        out.write(src, pos - 4, 4 + dataLen);
+        if ((flags & Lz4.FLG_BLOCK_CHECKSUM) != 0) {
+          Gzip.writeInt(checksum, 0, XXHash32.hash(src, pos, dataLen, 0));
+          out.write(checksum);
+        }
+        pos += dataLen + ((flg & Lz4.FLG_BLOCK_CHECKSUM) != 0 ? 4 : 0);
+      }
+      if ((flg & Lz4.FLG_CONTENT_CHECKSUM) != 0) pos += 4;
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+  }
+
+  private static QatException unexpected() {
+    return new QatException("Unexpected LZ4 data from the compression engine.");
+  }
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A read-only channel over the uncompressed content of a container written by {@link
+ * QatSeekableOutputStream}. The block index is read when the channel is opened; each read then
+ * decompresses only the blocks that cover the requested range, using Intel &reg; QuickAssist
+ * Technology (QAT).
+ *
+ * <p>The most recently used decompressed blocks are cached, so that nearby reads do not decompress
+ * a block again. This channel is not safe for use by multiple concurrent threads.
+ */
+public class QatSeekableChannel implements SeekableByteChannel {
+  /** The default number of decompressed blocks kept in the cache. */
+  public static final int DEFAULT_CACHE_BLOCKS = 16;
+
+  private final SeekableByteChannel source;
+  private final SeekableIndex index;
+  private final Mode mode;
+  private QatZipper qzip;
+  private final Map<Integer, byte[]> cache;
+  private long position;
+  private boolean closed;
+
+  /**
+   * Creates a new channel with {@link Mode#AUTO} and {@link #DEFAULT_CACHE_BLOCKS}.
+   *
+   * @param source the channel holding the container
+   * @throws IOException if the source does not hold a valid container or an I/O error occurs
+   */
+  public QatSeekableChannel(SeekableByteChannel source) throws IOException {
+    this(source, Mode.AUTO, DEFAULT_CACHE_BLOCKS);
+  }
+
+  /**
+   * Creates a new channel with the given parameters.
+   *
+   * @param source the channel holding the container
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @param cacheBlocks the number of decompressed blocks kept in the cache
+   * @throws IOException if the source does not hold a valid container or an I/O error occurs
+   */
+  public QatSeekableChannel(SeekableByteChannel source, Mode mode, int cacheBlocks)
+      throws IOException {
+    Objects.requireNonNull(source);
+    if (cacheBlocks <= 0) throw new IllegalArgumentException();
+    this.source = source;
+    this.index = SeekableIndex.readFrom(source);
+    this.mode = mode;
+    qzip = new QatZipper(index.algorithm, mode);
+    cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > cacheBlocks;
+          }
+        };
+  }
+
+  /**
+   * Reads uncompressed bytes, starting at the current position, into the given buffer.
+   *
+   * @param dst the buffer into which bytes are to be transferred
+   * @return the number of bytes read, or -1 if the position is at or past the end of the content
+   * @throws IOException if this channel is closed, a block is corrupt or an I/O error occurs
+   */
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    ensureOpen();
+    if (position >= index.length) return -1;
+    int read = 0;
+    while (dst.hasRemaining() && position < index.length) {
+      int b = (int) (position / index.blockSize);
+      byte[] data = block(b);
+      int off = (int) (position - (long) b * index.blockSize);
+      int n = Math.min(dst.remaining(), data.length - off);
+      dst.put(data, off, n);
+      position += n;
+      read += n;
+    }
+    return read;
+  }
+
+  /**
+   * Always throws {@link NonWritableChannelException}, as this channel is read-only.
+   *
+   * @param src ignored
+   * @return never
+   */
+  @Override
+  public int write(ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public long position() throws IOException {
+    ensureOpen();
+    return position;
+  }
+
+  /**
+   * Sets the position in the uncompressed content. A position past the end is allowed, and reads
+   * from it return -1.
+   *
+   * @param newPosition the new position
+   * @return this channel
+   * @throws IOException if this channel is closed
+   */
+  @Override
+  public SeekableByteChannel position(long newPosition) throws IOException {
+    ensureOpen();
+    if (newPosition < 0) throw new IllegalArgumentException();
+    position = newPosition;
+    return this;
+  }
+
+  /**
+   * Returns the size of the uncompressed content.
+   *
+   * @return the uncompressed size
+   * @throws IOException if this channel is closed
+   */
+  @Override
+  public long size() throws IOException {
+    ensureOpen();
+    return index.length;
+  }
+
+  /**
+   * Always throws {@link NonWritableChannelException}, as this channel is read-only.
+   *
+   * @param size ignored
+   * @return never
+   */
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return !closed;
+  }
+
+  /**
+   * Closes this channel and the source channel, and releases resources.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    cache.clear();
+    qzip.end();
+    source.close();
+  }
+
+  /** Returns the given block, decompressing it if it is not cached. */
+  private byte[] block(int b) throws IOException {
+    byte[] data = cache.get(b);
+    if (data != null) return data;
+    long start = index.blockStart(b);
+    ByteBuffer src = SeekableIndex.readFully(source, start, (int) (index.ends[b] - start));
+    data = new byte[index.blockLength(b)];
+    int n;
+    try {
+      n = qzip.decompress(src.array(), 0, src.limit(), data, 0, data.length);
+    } catch (QatException e) {
+      n = -1;
+    }
+    if (n != data.length) {
+      // Start over with a new session, as the old one may hold part of the corrupt block.
+      qzip.end();
+      qzip = new QatZipper(index.algorithm, mode);
+      throw new IOException("Corrupt block " + b + " in seekable QAT container");
+    }
+    cache.put(b, data);
+    return data;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) throw new ClosedChannelException();
+  }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * This class implements an OutputStream filter that writes a seekable container, compressing data
+ * using Intel &reg; QuickAssist Technology (QAT). The container is read by {@link
+ * QatSeekableChannel}, which decompresses only the blocks that cover the bytes requested.
+ *
+ * <p>Data is cut into blocks of a fixed uncompressed size, each compressed independently, and
+ * {@link #close()} appends an index of the block offsets. Smaller blocks make point reads cheaper
+ * and compression ratios worse. Since every block but the last must be full, {@link #flush()} does
+ * not write a partial block.
+ */
+public class QatSeekableOutputStream extends FilterOutputStream {
+  /** The default number of uncompressed bytes in each block. */
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  private final QatZipper qzip;
+  private final Algorithm algorithm;
+  private final byte[] block;
+  private int blockLen;
+  private final byte[] compressed;
+  private long[] ends = new long[16];
+  private int blockCount;
+  private long position;
+  private long length;
+  private boolean closed;
+
+  /**
+   * Creates a new output stream with {@link #DEFAULT_BLOCK_SIZE}, {@link Algorithm#DEFLATE}, {@link
+   * QatZipper#DEFAULT_COMPRESS_LEVEL} and {@link Mode#AUTO}.
+   *
+   * @param out the output stream
+   */
+  public QatSeekableOutputStream(OutputStream out) {
+    this(out, Algorithm.DEFLATE);
+  }
+
+  /**
+   * Creates a new output stream with {@link #DEFAULT_BLOCK_SIZE}, the given algorithm, {@link
+   * QatZipper#DEFAULT_COMPRESS_LEVEL} and {@link Mode#AUTO}.
+   *
+   * @param out the output stream
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   */
+  public QatSeekableOutputStream(OutputStream out, Algorithm algorithm) {
+    this(out, DEFAULT_BLOCK_SIZE, algorithm, QatZipper.DEFAULT_COMPRESS_LEVEL, Mode.AUTO);
+  }
+
+  /**
+   * Creates a new output stream with the given parameters.
+   *
+   * @param out the output stream
+   * @param blockSize the number of uncompressed bytes in each block
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   */
+  public QatSeekableOutputStream(
+      OutputStream out, int blockSize, Algorithm algorithm, int level, Mode mode) {
+    super(out);
+    Objects.requireNonNull(out);
+    if (blockSize <= 0) throw new IllegalArgumentException();
+    this.algorithm = algorithm;
+    qzip = new QatZipper(algorithm, level, mode);
+    block = new byte[blockSize];
+    compressed = new byte[qzip.maxCompressedLength(blockSize)];
+  }
+
+  /**
+   * Writes a byte to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @throws IOException if this stream is closed or an I/O error occurs
+   */
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    block[blockLen++] = (byte) b;
+    if (blockLen == block.length) writeBlock();
+  }
+
+  /**
+   * Writes data from the given byte array to the compressed output stream.
+   *
+   * @param b the data to be written
+   * @param off the starting offset of the data
+   * @param len the length of the data
+   * @throws IOException if this stream is closed or an I/O error occurs
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    Objects.checkFromIndexSize(off, len, b.length);
+    while (len > 0) {
+      int n = Math.min(len, block.length - blockLen);
+      System.arraycopy(b, off, block, blockLen, n);
+      blockLen += n;
+      off += n;
+      len -= n;
+      if (blockLen == block.length) writeBlock();
+    }
+  }
+
+  /**
+   * Flushes the output stream. Buffered data that does not fill a block is not written.
+   *
+   * @throws IOException if this stream is closed or an I/O error occurs
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    out.flush();
+  }
+
+  /**
+   * Writes the last block and the index, and closes the output stream.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    try {
+      if (blockLen > 0) writeBlock();
+      new SeekableIndex(algorithm, block.length, length, Arrays.copyOf(ends, blockCount))
+          .writeTo(out);
+    } finally {
+      qzip.end();
+      out.close();
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    int len = qzip.compress(block, 0, blockLen, compressed, 0, compressed.length);
+    out.write(compressed, 0, len);
+    length += blockLen;
+    position += len;
+    blockLen = 0;
+    if (blockCount == ends.length) ends = Arrays.copyOf(ends, 2 * blockCount);
+    ends[blockCount++] = position;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) throw new IOException("Stream is closed");
+  }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * Static helpers that move whole streams through Intel &reg; QuickAssist Technology (QAT).
+ *
+ * <p>Data is moved in blocks of a multiple of the QATzip hardware buffer size. When the source is a
+ * {@link FileInputStream} or the sink is a {@link FileOutputStream} or a {@link
+ * WritableByteChannel}, their channels are used with pooled direct buffers, so no copy is made on
+ * the Java heap.
+ */
+public final class QatStreams {
+  private QatStreams() {}
+
+  /**
+   * Compresses all data from the input stream to the output stream with {@link Algorithm#DEFLATE},
+   * {@link QatZipper#DEFAULT_COMPRESS_LEVEL} and {@link Mode#AUTO}. Neither stream is closed.
+   *
+   * @param in the uncompressed input
+   * @param out the compressed output
+   * @return the number of uncompressed bytes read.
+   * @throws IOException if an I/O error occurs
+   */
+  public static long compress(InputStream in, OutputStream out) throws IOException {
+    return compress(in, out, Algorithm.DEFLATE, QatZipper.DEFAULT_COMPRESS_LEVEL, Mode.AUTO);
+  }
+
+  /**
+   * Compresses all data from the input stream to the output stream. The output is a sequence of
+   * gzip members (or LZ4 frames), as written by {@link QatCompressorOutputStream}. Neither stream
+   * is closed.
+   *
+   * @param in the uncompressed input
+   * @param out the compressed output
+   * @param algorithm the compression algorithm (deflate or LZ4).
+   * @param level the compression level.
+   * @param mode the mode of operation (HARDWARE - only hardware, AUTO - hardware with a software
+   *     failover.)
+   * @return the number of uncompressed bytes read.
+   * @throws IOException if an I/O error occurs
+   */
+  public static long compress(
+      InputStream in, OutputStream out, Algorithm algorithm, int level, Mode mode)
+      throws IOException {
+    Objects.requireNonNull(in);
+    Objects.requireNonNull(out);
+    ReadableByteChannel source = channelOf(in);
+    WritableByteChannel sink = channelOf(out);
+    int blockSize = QatZipper.defaultBlockSize(algorithm, mode);
+    QatZipper qzip = new QatZipper(algorithm, level, mode);
+    int maxCompressedLength = qzip.maxCompressedLength(blockSize);
+    ByteBuffer src =
+        source != null ? BufferPool.acquire(blockSize) : ByteBuffer.allocate(blockSize);
+    ByteBuffer dst =
+        sink != null
+            ? BufferPool.acquire(maxCompressedLength)
+            : ByteBuffer.allocate(maxCompressedLength);
+    try {
+      long total = 0;
+      boolean eof = false;
+      while (!eof) {
+        eof = readBlock(in, source, src);
+        if (src.position() == 0) break;
+        src.flip();
+        total += src.remaining();
+        qzip.compress(src, dst);
+        dst.flip();
+        if (sink != null) {
+          while (dst.hasRemaining()) sink.write(dst);
+        } else {
+          out.write(dst.array(), dst.arrayOffset(), dst.limit());
+        }
+        src.clear();
+        dst.clear();
+      }
+      return total;
+    } finally {
+      qzip.end();
+      if (src.isDirect()) BufferPool.release(src);
+      if (dst.isDirect()) BufferPool.release(dst);
+    }
+  }
+
+  /**
+   * Fills the buffer from the stream, or from its channel if it has one.
+   *
+   * @return true if the end of the stream was reached.
+   */
+  private static boolean readBlock(InputStream in, ReadableByteChannel source, ByteBuffer buf)
+      throws IOException {
+    while (buf.hasRemaining()) {
+      int n =
+          source != null
+              ? source.read(buf)
+              : in.read(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+      if (n < 0) return true;
+      if (source == null) buf.position(buf.position() + n);
+    }
+    return false;
+  }
+
+  /** Returns a channel that reads from the given stream, or null if there is none. */
+  static ReadableByteChannel channelOf(InputStream in) {
+    if (in instanceof ReadableByteChannel) return (ReadableByteChannel) in;
+    // Subclasses may override read, so only a plain FileInputStream is bypassed.
+    if (in.getClass() == FileInputStream.class) return ((FileInputStream) in).getChannel();
+    return null;
+  }
+
+  /** Returns a channel that writes to the given stream, or null if there is none. */
+  static WritableByteChannel channelOf(OutputStream out) {
+    if (out instanceof WritableByteChannel) return (WritableByteChannel) out;
+    // Subclasses may override write, so only a plain FileOutputStream is bypassed.
+    if (out.getClass() == FileOutputStream.class) return ((FileOutputStream) out).getChannel();
+    return null;
+  }
+}
@@ -6,9 +6,15 @@
 
 package com.intel.qat;
 
-import java.lang.ref.Cleaner;
 import java.nio.ByteBuffer;
 import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 /**
  * This class provides methods that can be used to compress and decompress data using {@link
@@ -51,6 +57,14 @@ import java.nio.ReadOnlyBufferException;
  * To release QAT resources used by this <code>QatZipper</code>, the <code>end()</code> method
  * should be called explicitly. If not, resources will stay alive until this <code>QatZipper</code>
  * becomes phantom reachable.
+ *
+ * <p>The work is done by a {@link CompressionEngine}. When QATzip is available, {@link QatEngine}
+ * is used; otherwise {@link JavaEngine} is used for {@link Mode#AUTO}, so the same code runs on
+ * hosts without QAT. See {@link CompressionEngine} for how engines are selected.
+ *
+ * <p>On a JDK with Coordinated Restore at Checkpoint (CRaC) support, each <code>QatZipper</code>
+ * releases its QAT session before a checkpoint and sets it up again, with the same parameters,
+ * after a restore. Applications must not compress or decompress while a checkpoint is in progress.
  */
 public class QatZipper {
   /** The default compression level is 6. */
@@ -65,28 +79,39 @@ public class QatZipper {
 
   private int retryCount;
 
-  /** Cleaner instance associated with this object. */
-  private static Cleaner cleaner;
+  private Algorithm algorithm;
 
-  /** Cleaner.Cleanable instance representing QAT cleanup action. */
-  private final Cleaner.Cleanable cleanable;
+  private int level;
 
-  static {
-    SecurityManager sm = System.getSecurityManager();
-    if (sm == null) {
-      cleaner = Cleaner.create();
-    } else {
-      java.security.PrivilegedAction<Void> pa =
-          () -> {
-            cleaner = Cleaner.create();
-            return null;
-          };
-      java.security.AccessController.doPrivileged(pa);
-    }
-  }
+  private Mode mode;
+
+  private Passthrough passthrough = Passthrough.NONE;
+
+  /** Staging arrays for stored output when buffers are not backed by arrays. */
+  private byte[] storeSource;
+
+  private byte[] storeDestination;
 
-  /** A reference to a QAT session in C. */
-  long session;
+  /** The system property that forces the use of the engine with the given name. */
+  static final String ENGINE_PROPERTY = "com.intel.qat.engine";
+
+  /** The smallest block size returned by {@link #defaultBlockSize}. */
+  static final int MIN_BLOCK_SIZE = 64 * 1024;
+
+  /** The largest block size returned by {@link #defaultBlockSize}. */
+  static final int MAX_BLOCK_SIZE = 1024 * 1024;
+
+  /** The number of hardware buffers that make up a default block. */
+  private static final int HW_BUFFERS_PER_BLOCK = 16;
+
+  /** The available compression engines, from the most to the least preferred. */
+  private static List<CompressionEngine> engines;
+
+  /** The engine session doing the work for this object. */
+  final CompressionEngine.Session session;
+
+  /** The name of the engine that created the session. */
+  private final String engineName;
 
   /** The mode of execution for QAT. */
   public static enum Mode {
@@ -112,6 +137,25 @@ public class QatZipper {
     LZ4
   }
 
+  /**
+   * What {@link QatZipper#compress} does with data that does not compress, such as media files or
+   * encrypted payloads. Stored data is written as gzip-ext members of stored deflate blocks, or as
+   * LZ4 frames of uncompressed blocks, which every decompressor reads like any other output.
+   */
+  public static enum Passthrough {
+    /** Data is always compressed. */
+    NONE,
+
+    /** Data is compressed, and stored instead if the result is larger than the stored data. */
+    RESULT,
+
+    /**
+     * A sample of the data is checked first, and data that looks compressed or encrypted is stored
+     * without being compressed. Other data is handled as for {@link #RESULT}.
+     */
+    SAMPLE
+  }
+
   /**
    * Creates a new QatZipper that uses {@link Algorithm#DEFLATE}, {@link DEFAULT_COMPRESS_LEVEL},
    * {@link Mode#HARDWARE}, and {@link DEFAULT_RETRY_COUNT}.
@@ -191,13 +235,90 @@ public class QatZipper {
       throw new IllegalArgumentException("Invalid compression level or retry count.");
 
     this.retryCount = retryCount;
-    InternalJNI.setup(this, mode.ordinal(), algorithm.ordinal(), level);
+    this.algorithm = algorithm;
+    this.level = level;
+    this.mode = mode;
 
-    // Register a QAT session cleaner for this object
-    cleanable = cleaner.register(this, new QatCleaner(session));
+    CompressionEngine engine = engine(mode);
+    session = engine.createSession(algorithm, level, mode, retryCount);
+    engineName = engine.name();
     isValid = true;
   }
 
+  /**
+   * Returns the engine to use for the given mode.
+   *
+   * @param mode the {@link Mode} of execution
+   * @return the most preferred available engine that supports the mode.
+   * @throws QatException if no such engine exists.
+   */
+  static CompressionEngine engine(Mode mode) {
+    String forced = System.getProperty(ENGINE_PROPERTY);
+    for (CompressionEngine engine : engines()) {
+      if (forced != null && !forced.equals(engine.name())) continue;
+      if (engine.supports(mode)) return engine;
+    }
+    throw new QatException(
+        "No compression engine available for "
+            + mode
+            + " mode"
+            + (forced == null ? "." : " named " + forced + "."));
+  }
+
+  /**
+   * Returns the block size that streams use when no size is given. It is a multiple of the hardware
+   * buffer size of the engine, so that QATzip can keep several hardware requests in flight for each
+   * block, clamped to between {@link #MIN_BLOCK_SIZE} and {@link #MAX_BLOCK_SIZE}.
+   *
+   * @param algorithm the compression {@link Algorithm}
+   * @param mode the {@link Mode} of execution
+   * @return the default block size in bytes.
+   */
+  static int defaultBlockSize(Algorithm algorithm, Mode mode) {
+    long size = (long) engine(mode).hardwareBufferSize(algorithm) * HW_BUFFERS_PER_BLOCK;
+    return (int) Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, size));
+  }
+
+  /**
+   * Returns the available compression engines, loading them on first use.
+   *
+   * @return the available engines, from the most to the least preferred.
+   */
+  static synchronized List<CompressionEngine> engines() {
+    if (engines == null) {
+      List<CompressionEngine> available = new ArrayList<>();
+      Iterator<CompressionEngine> it =
+          ServiceLoader.load(CompressionEngine.class, CompressionEngine.class.getClassLoader())
+              .iterator();
+      while (true) {
+        try {
+          if (!it.hasNext()) break;
+          CompressionEngine engine = it.next();
+          if (engine.isAvailable()) available.add(engine);
+        } catch (ServiceConfigurationError | LinkageError e) {
+          // A provider that cannot be loaded is not available.
+        }
+      }
+      if (available.isEmpty()) {
+        // No providers were found, e.g. because service descriptors were stripped by repackaging.
+        for (CompressionEngine engine : new CompressionEngine[] {new QatEngine(), new JavaEngine()})
+          if (engine.isAvailable()) available.add(engine);
+      }
+      available.sort(Comparator.comparingInt(CompressionEngine::priority).reversed());
+      engines = available;
+    }
+    return engines;
+  }
+
+  /**
+   * Returns the name of the {@link CompressionEngine} used by this object.
+   *
+   * @return the name of the engine.
+   */
+  public String getEngineName() {
+    return engineName;
+  }
+
   /**
    * Validates compression level and retry counts.
    *
@@ -210,6 +331,77 @@ public class QatZipper {
     return !(retryCount < 0 || level < 1 || level > 9);
   }
 
+  /**
+   * Changes the compression level of this session. The session, and any hardware instance attached
+   * to it, is kept; only the session parameters are updated.
+   *
+   * @param level the new compression level.
+   * @throws QatException if the session parameters cannot be updated.
+   */
+  public void reconfigure(int level) throws QatException {
+    reconfigure(algorithm, level);
+  }
+
+  /**
+   * Changes the compression {@link Algorithm} and level of this session. The session, and any
+   * hardware instance attached to it, is kept; only the session parameters are updated.
+   *
+   * @param algorithm the new compression {@link Algorithm}
+   * @param level the new compression level.
+   * @throws QatException if the session parameters cannot be updated.
+   */
+  public void reconfigure(Algorithm algorithm, int level) throws QatException {
+    if (!isValid) throw new IllegalStateException("QAT session has been closed.");
+    if (algorithm == null || !validateParams(algorithm, level, retryCount))
+      throw new IllegalArgumentException("Invalid compression algorithm or level.");
+
+    if (algorithm == this.algorithm && level == this.level) return;
+
+    session.reconfigure(algorithm, level);
+    this.algorithm = algorithm;
+    this.level = level;
+  }
+
+  /**
+   * Sets what {@link #compress} does with data that does not compress. The default is {@link
+   * Passthrough#NONE}.
+   *
+   * @param passthrough the passthrough policy
+   */
+  public void setPassthrough(Passthrough passthrough) {
+    this.passthrough = Objects.requireNonNull(passthrough);
+  }
+
+  /**
+   * Returns what {@link #compress} does with data that does not compress.
+   *
+   * @return the passthrough policy
+   */
+  public Passthrough getPassthrough() {
+    return passthrough;
+  }
+
+  /**
+   * Estimates how well the source buffer's remaining bytes would compress with this session's
+   * algorithm, without compressing them. The estimate comes from a sample of a few KB, so its cost
+   * does not grow with the size of the buffer; the compression level is not taken into account. The
+   * buffer's position and limit are not changed.
+   *
+   * @param src the source buffer holding the data
+   * @return the estimate.
+   */
+  public Estimate estimate(ByteBuffer src) {
+    if (!isValid) throw new IllegalStateException("QAT session has been closed.");
+
+    if (src == null || src.position() == src.limit()) throw new IllegalArgumentException();
+
+    int len = src.remaining();
+    long compressedLength = Compressibility.predict(src, algorithm);
+    if (passthrough != Passthrough.NONE)
+      compressedLength = Math.min(compressedLength, storedLength(len));
+    return new Estimate(len, compressedLength);
+  }
+
   /**
    * Returns the maximum compression length for the specified source length. Use this method to
    * estimate the size of a buffer for compression given the size of a source buffer.
@@ -220,7 +412,7 @@ public class QatZipper {
   public int maxCompressedLength(long len) {
     if (!isValid) throw new IllegalStateException("QAT session has been closed.");
 
-    return InternalJNI.maxCompressedSize(session, len);
+    return session.maxCompressedLength(len);
   }
 
   /**
@@ -259,10 +451,14 @@ public class QatZipper {
     if (srcOffset < 0 || (srcLen > src.length) || srcOffset >= src.length)
       throw new ArrayIndexOutOfBoundsException("Source offset is out of bounds.");
 
-    int compressedSize =
-        InternalJNI.compressByteArray(
-            session, src, srcOffset, srcLen, dst, dstOffset, dstLen, retryCount);
+    if (passthrough == Passthrough.SAMPLE
+        && Compressibility.looksIncompressible(ByteBuffer.wrap(src, srcOffset, srcLen), algorithm)
+        && storedLength(srcLen) <= dstLen) return store(src, srcOffset, srcLen, dst, dstOffset);
+
+    int compressedSize = session.compress(src, srcOffset, srcLen, dst, dstOffset, dstLen);
 
+    if (passthrough != Passthrough.NONE && compressedSize > storedLength(srcLen))
+      return store(src, srcOffset, srcLen, dst, dstOffset);
     return compressedSize;
   }
 
@@ -287,77 +483,90 @@ public class QatZipper {
 
     if (dst.isReadOnly()) throw new ReadOnlyBufferException();
 
-    int compressedSize = 0;
-    if (src.hasArray() && dst.hasArray()) {
-      compressedSize =
-          InternalJNI.compressByteBuffer(
-              session,
-              src,
-              src.array(),
-              src.position(),
-              src.remaining(),
-              dst.array(),
-              dst.position(),
-              dst.remaining(),
-              retryCount);
-      dst.position(dst.position() + compressedSize);
-    } else if (src.isDirect() && dst.isDirect()) {
-      compressedSize =
-          InternalJNI.compressDirectByteBuffer(
-              session,
-              src,
-              src.position(),
-              src.remaining(),
-              dst,
-              dst.position(),
-              dst.remaining(),
-              retryCount);
-    } else if (src.hasArray() && dst.isDirect()) {
-      compressedSize =
-          InternalJNI.compressDirectByteBufferDst(
-              session,
-              src,
-              src.array(),
-              src.position(),
-              src.remaining(),
-              dst,
-              dst.position(),
-              dst.remaining(),
-              retryCount);
-    } else if (src.isDirect() && dst.hasArray()) {
-      compressedSize =
-          InternalJNI.compressDirectByteBufferSrc(
-              session,
-              src,
-              src.position(),
-              src.remaining(),
-              dst.array(),
-              dst.position(),
-              dst.remaining(),
-              retryCount);
-      dst.position(dst.position() + compressedSize);
-    } else {
-      int srcLen = src.remaining();
-      int dstLen = dst.remaining();
+    if (passthrough == Passthrough.SAMPLE
+        && Compressibility.looksIncompressible(src, algorithm)
+        && storedLength(src.remaining()) <= dst.remaining()) return store(src, dst);
 
-      byte[] srcArr = new byte[srcLen];
-      byte[] dstArr = new byte[dstLen];
+    int srcPosition = src.position();
+    int dstPosition = dst.position();
+    int compressedSize = session.compress(src, dst);
 
-      src.get(srcArr);
-      dst.get(dstArr);
+    int consumed = src.position() - srcPosition;
+    if (passthrough != Passthrough.NONE && compressedSize > storedLength(consumed)) {
+      ByteBuffer stored = src.duplicate();
+      stored.limit(src.position()).position(srcPosition);
+      dst.position(dstPosition);
+      return store(stored, dst);
+    }
+    return compressedSize;
+  }
 
-      src.position(src.position() - srcLen);
-      dst.position(dst.position() - dstLen);
+  /** Returns the size of the stored output for the given number of bytes. */
+  private long storedLength(int len) {
+    int chunkSize = storedChunkSize();
+    long chunks = Math.max(1, (len + chunkSize - 1) / chunkSize);
+    int overhead =
+        algorithm == Algorithm.DEFLATE
+            ? Gzip.EXT_HEADER_LENGTH + 5 + Gzip.TRAILER_LENGTH
+            : Lz4.FRAME_OVERHEAD;
+    return len + chunks * overhead;
+  }
 
-      int srcPos = src.position();
-      compressedSize =
-          InternalJNI.compressByteBuffer(
-              session, src, srcArr, 0, srcLen, dstArr, 0, dstLen, retryCount);
-      src.position(srcPos + src.position());
-      dst.put(dstArr, 0, compressedSize);
+  /**
+   * Returns the largest number of bytes in each member or frame of stored output: one stored
+   * deflate block, or one LZ4 block of the 64 KB that QATzip frames hold.
+   */
+  private int storedChunkSize() {
+    return algorithm == Algorithm.DEFLATE ? Gzip.MAX_STORED_BLOCK : 64 * 1024;
+  }
+
+  /**
+   * Writes the source range uncompressed, as one gzip-ext member or LZ4 frame per {@link
+   * #storedChunkSize} bytes. The destination must have room for {@link #storedLength} bytes.
+   *
+   * @return the size of the stored output in bytes.
+   */
+  private int store(byte[] src, int srcOffset, int srcLen, byte[] dst, int dstOffset) {
+    int chunkSize = storedChunkSize();
+    int pos = dstOffset;
+    for (int done = 0; done < srcLen; ) {
+      int n = Math.min(chunkSize, srcLen - done);
+      pos +=
+          algorithm == Algorithm.DEFLATE
+              ? Gzip.writeStoredMember(src, srcOffset + done, n, dst, pos)
+              : Lz4.writeStoredFrame(src, srcOffset + done, n, dst, pos);
+      done += n;
     }
+    return pos - dstOffset;
+  }
 
-    return compressedSize;
+  /** Like {@link #store(byte[], int, int, byte[], int)}, advancing the buffers' positions. */
+  private int store(ByteBuffer src, ByteBuffer dst) {
+    int srcLen = src.remaining();
+    int dstLen = (int) storedLength(srcLen);
+    byte[] s;
+    int srcOffset;
+    if (src.hasArray()) {
+      s = src.array();
+      srcOffset = src.arrayOffset() + src.position();
+    } else {
+      if (storeSource == null || storeSource.length < srcLen) storeSource = new byte[srcLen];
+      s = storeSource;
+      srcOffset = 0;
+      src.duplicate().get(s, 0, srcLen);
+    }
+    int storedSize;
+    if (dst.hasArray()) {
+      storedSize = store(s, srcOffset, srcLen, dst.array(), dst.arrayOffset() + dst.position());
+      dst.position(dst.position() + storedSize);
+    } else {
+      if (storeDestination == null || storeDestination.length < dstLen)
+        storeDestination = new byte[dstLen];
+      storedSize = store(s, srcOffset, srcLen, storeDestination, 0);
+      dst.put(storeDestination, 0, storedSize);
+    }
+    src.position(src.limit());
+    return storedSize;
   }
 
   /**
@@ -395,9 +604,7 @@ public class QatZipper {
     if (srcOffset < 0 || (srcLen > src.length) || srcOffset >= src.length)
       throw new ArrayIndexOutOfBoundsException("Source offset is out of bounds.");
 
-    int decompressedSize =
-        InternalJNI.decompressByteArray(
-            session, src, srcOffset, srcLen, dst, dstOffset, dstLen, retryCount);
+    int decompressedSize = session.decompress(src, srcOffset, srcLen, dst, dstOffset, dstLen);
 
     return decompressedSize;
   }
@@ -423,81 +630,18 @@ public class QatZipper {
 
     if (dst.isReadOnly()) throw new ReadOnlyBufferException();
 
-    int decompressedSize = 0;
-    if (src.hasArray() && dst.hasArray()) {
-      decompressedSize =
-          InternalJNI.decompressByteBuffer(
-              session,
-              src,
-              src.array(),
-              src.position(),
-              src.remaining(),
-              dst.array(),
-              dst.position(),
-              dst.remaining(),
-              retryCount);
-      dst.position(dst.position() + decompressedSize);
-    } else if (src.isDirect() && dst.isDirect()) {
-      decompressedSize =
-          InternalJNI.decompressDirectByteBuffer(
-              session,
-              src,
-              src.position(),
-              src.remaining(),
-              dst,
-              dst.position(),
-              dst.remaining(),
-              retryCount);
-    } else if (src.hasArray() && dst.isDirect()) {
-      decompressedSize =
-          InternalJNI.decompressDirectByteBufferDst(
-              session,
-              src,
-              src.array(),
-              src.position(),
-              src.remaining(),
-              dst,
-              dst.position(),
-              dst.remaining(),
-              retryCount);
-    } else if (src.isDirect() && dst.hasArray()) {
-      decompressedSize =
-          InternalJNI.decompressDirectByteBufferSrc(
-              session,
-              src,
-              src.position(),
-              src.remaining(),
-              dst.array(),
-              dst.position(),
-              dst.remaining(),
-              retryCount);
-      dst.position(dst.position() + decompressedSize);
-    } else {
-      int srcLen = src.remaining();
-      int dstLen = dst.remaining();
-
-      byte[] srcArr = new byte[srcLen];
-      byte[] dstArr = new byte[dstLen];
-
-      src.get(srcArr);
-      dst.get(dstArr);
-
-      src.position(src.position() - srcLen);
-      dst.position(dst.position() - dstLen);
-
-      int srcPos = src.position();
-      decompressedSize =
-          InternalJNI.decompressByteBuffer(
-              session, src, srcArr, 0, srcLen, dstArr, 0, dstLen, retryCount);
-      src.position(srcPos + src.position());
-      dst.put(dstArr, 0, decompressedSize);
-    }
+    int decompressedSize = session.decompress(src, dst);
 
     if (decompressedSize < 0) throw new QatException("QAT: Compression failed");
 
     return decompressedSize;
   }
 
+  /** Returns whether the session has consumed part of a member that it has not decompressed. */
+  boolean hasPartialMember() {
+    return session.hasPartialMember();
+  }
+
   /**
    * Ends the current QAT session by freeing up resources. A new session must be used after a
    * successful call of this method.
@@ -506,24 +650,65 @@ public class QatZipper {
    */
   public void end() throws QatException {
     if (!isValid) throw new IllegalStateException("QAT session has been closed.");
-    InternalJNI.teardown(session);
+    session.end();
     isValid = false;
   }
 
-  /** A class that represents a cleaner action for a QAT session. */
-  static class QatCleaner implements Runnable {
-    private long qzSession;
+  /** A prediction of how well some data compresses, returned by {@link QatZipper#estimate}. */
+  public static final class Estimate {
+    private final long length;
+    private final long compressedLength;
+
+    Estimate(long length, long compressedLength) {
+      this.length = length;
+      this.compressedLength = compressedLength;
+    }
+
+    /**
+     * Returns the number of bytes the estimate is for.
+     *
+     * @return the uncompressed length
+     */
+    public long length() {
+      return length;
+    }
 
-    /** Creates a new cleaner object that cleans up the specified session. */
-    public QatCleaner(long session) {
-      this.qzSession = qzSession;
+    /**
+     * Returns the predicted size of the compressed data.
+     *
+     * @return the predicted compressed length in bytes
+     */
+    public long compressedLength() {
+      return compressedLength;
+    }
+
+    /**
+     * Returns the predicted compressed size as a fraction of the uncompressed size. Values near or
+     * above 1 mean the data is not worth compressing.
+     *
+     * @return the predicted ratio
+     */
+    public double ratio() {
+      return (double) compressedLength / length;
+    }
+
+    /**
+     * Returns the predicted cost of compressing the data, as the number of bytes that must be
+     * compressed for each byte saved. Admission policies can compare it with what a byte of
+     * accelerator or CPU time is worth against a byte of storage.
+     *
+     * @return the bytes compressed per byte saved, or {@link Double#POSITIVE_INFINITY} if nothing
+     *     is saved
+     */
+    public double cost() {
+      return compressedLength < length
+          ? (double) length / (length - compressedLength)
+          : Double.POSITIVE_INFINITY;
     }
 
     @Override
-    public void run() {
-      if (qzSession != 0) {
-        InternalJNI.teardown(qzSession);
-      }
+    public String toString() {
+      return "Estimate[length=" + length + ", compressedLength=" + compressedLength + "]";
     }
   }
 }
@@ -0,0 +1,423 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A raw DEFLATE (RFC 1951) decoder that can stop at block boundaries, report the bit offset of the
+ * next block and start decoding at such an offset given the preceding 32 KB of output. Neither
+ * QATzip nor {@link java.util.zip.Inflater} expose block boundaries, so random access into gzip
+ * files that were not written in blocks depends on this decoder.
+ */
+final class RawInflater {
+  /** The largest distance a match may refer back. */
+  static final int WINDOW_SIZE = 32 * 1024;
+
+  private static final int HEADER = 0;
+  private static final int STORED = 1;
+  private static final int CODES = 2;
+  private static final int DONE = 3;
+
+  private static final short[] LENGTH_BASE = {
+    3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131,
+    163, 195, 227, 258
+  };
+  private static final byte[] LENGTH_EXTRA = {
+    0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+  };
+  private static final short[] DIST_BASE = {
+    1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049,
+    3073, 4097, 6145, 8193, 12289, 16385, 24577
+  };
+  private static final byte[] DIST_EXTRA = {
+    0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+  };
+
+  /** The order in which code length code lengths are sent. */
+  private static final byte[] CODE_LENGTH_ORDER = {
+    16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15
+  };
+
+  private static final Huffman FIXED_LITERALS = new Huffman(288);
+  private static final Huffman FIXED_DISTANCES = new Huffman(30);
+
+  static {
+    int[] lengths = new int[288];
+    for (int i = 0; i < 144; i++) lengths[i] = 8;
+    for (int i = 144; i < 256; i++) lengths[i] = 9;
+    for (int i = 256; i < 280; i++) lengths[i] = 7;
+    for (int i = 280; i < 288; i++) lengths[i] = 8;
+    FIXED_LITERALS.build(lengths, 0, 288);
+    for (int i = 0; i < 30; i++) lengths[i] = 5;
+    FIXED_DISTANCES.build(lengths, 0, 30);
+  }
+
+  private final InputStream in;
+  private final byte[] inputBuffer = new byte[8192];
+  private int inputPos;
+  private int inputLen;
+
+  /** The offset in the compressed data of the next byte to be loaded into the bit buffer. */
+  private long position;
+
+  private long bitBuffer;
+  private int bitCount;
+
+  /** The last {@link #WINDOW_SIZE} bytes of output, as a ring. */
+  private final byte[] window = new byte[WINDOW_SIZE];
+
+  private int windowPos;
+
+  /** The number of bytes in the window, up to {@link #WINDOW_SIZE}. */
+  private int windowLen;
+
+  private int state = HEADER;
+  private boolean lastBlock;
+  private int storedRemaining;
+  private Huffman literals;
+  private Huffman distances;
+  private final Huffman dynamicLiterals = new Huffman(288);
+  private final Huffman dynamicDistances = new Huffman(30);
+  private int copyLength;
+  private int copyDistance;
+
+  /**
+   * Creates a decoder that starts at the beginning of a DEFLATE stream.
+   *
+   * @param in the compressed data
+   * @param position the offset in the compressed data of the next byte of the stream
+   */
+  RawInflater(InputStream in, long position) {
+    this.in = in;
+    this.position = position;
+  }
+
+  /**
+   * Creates a decoder that starts at a block boundary inside a DEFLATE stream.
+   *
+   * @param in the compressed data, starting with the byte that holds the first bit of the block
+   * @param bitOffset the offset in bits of the block in the compressed data
+   * @param history the output that precedes the block, of which the last {@link #WINDOW_SIZE} bytes
+   *     are used
+   */
+  RawInflater(InputStream in, long bitOffset, byte[] history) throws IOException {
+    this(in, bitOffset >>> 3);
+    int skip = (int) (bitOffset & 7);
+    if (skip > 0) bits(skip);
+    windowLen = Math.min(history.length, WINDOW_SIZE);
+    System.arraycopy(history, history.length - windowLen, window, 0, windowLen);
+    windowPos = windowLen & (WINDOW_SIZE - 1);
+  }
+
+  /**
+   * Decodes up to <code>len</code> bytes. Decoding stops early at the end of a block, so that
+   * {@link #atBlockBoundary()} can be checked.
+   *
+   * @return the number of bytes decoded, or -1 if the end of the DEFLATE stream is reached.
+   * @throws IOException if the data is not valid DEFLATE data or an I/O error occurs.
+   */
+  int read(byte[] b, int off, int len) throws IOException {
+    int start = off;
+    int end = off + len;
+    while (off < end) {
+      if (copyLength > 0) {
+        int n = Math.min(copyLength, end - off);
+        for (int i = 0; i < n; i++) {
+          byte v = window[(windowPos - copyDistance) & (WINDOW_SIZE - 1)];
+          b[off++] = v;
+          put(v);
+        }
+        copyLength -= n;
+        continue;
+      }
+      switch (state) {
+        case HEADER:
+          if (off > start) return off - start;
+          if (lastBlock) {
+            state = DONE;
+            break;
+          }
+          readBlockHeader();
+          break;
+        case STORED:
+          {
+            if (storedRemaining == 0) {
+              state = HEADER;
+              break;
+            }
+            int n = Math.min(storedRemaining, end - off);
+            for (int i = 0; i < n; i++) {
+              byte v = (byte) bits(8);
+              b[off++] = v;
+              put(v);
+            }
+            storedRemaining -= n;
+            break;
+          }
+        case CODES:
+          {
+            int symbol = decode(literals);
+            if (symbol < 256) {
+              b[off++] = (byte) symbol;
+              put((byte) symbol);
+            } else if (symbol == 256) {
+              state = HEADER;
+            } else {
+              symbol -= 257;
+              if (symbol >= 29) throw malformed();
+              copyLength = LENGTH_BASE[symbol] + bits(LENGTH_EXTRA[symbol]);
+              symbol = decode(distances);
+              if (symbol >= 30) throw malformed();
+              copyDistance = DIST_BASE[symbol] + bits(DIST_EXTRA[symbol]);
+              if (copyDistance > windowLen) throw malformed();
+            }
+            break;
+          }
+        default: // DONE
+          return off > start ? off - start : -1;
+      }
+    }
+    return off - start;
+  }
+
+  /** Returns true if the next bit starts a block other than the first. */
+  boolean atBlockBoundary() {
+    return state == HEADER && copyLength == 0 && !lastBlock;
+  }
+
+  /** Returns the offset in bits of the next bit to be decoded. */
+  long bitPosition() {
+    return position * 8 - bitCount;
+  }
+
+  /** Returns the last {@link #WINDOW_SIZE} bytes of output, or fewer if less was decoded. */
+  byte[] history() {
+    byte[] history = new byte[windowLen];
+    int start = (windowPos - windowLen) & (WINDOW_SIZE - 1);
+    int first = Math.min(windowLen, WINDOW_SIZE - start);
+    System.arraycopy(window, start, history, 0, first);
+    System.arraycopy(window, 0, history, first, windowLen - first);
+    return history;
+  }
+
+  /**
+   * Returns the bytes that were read from the input but follow the end of the DEFLATE stream. Only
+   * valid once {@link #read} has returned -1.
+   */
+  byte[] remaining() {
+    bitBuffer >>>= bitCount & 7;
+    bitCount -= bitCount & 7;
+    byte[] rest = new byte[bitCount / 8 + inputLen - inputPos];
+    for (int i = 0; i < bitCount / 8; i++) rest[i] = (byte) (bitBuffer >>> (8 * i));
+    System.arraycopy(inputBuffer, inputPos, rest, bitCount / 8, inputLen - inputPos);
+    return rest;
+  }
+
+  /** Returns the offset in the compressed data of the first byte of {@link #remaining()}. */
+  long remainingPosition() {
+    return position - bitCount / 8;
+  }
+
+  private void readBlockHeader() throws IOException {
+    lastBlock = bits(1) == 1;
+    int type = bits(2);
+    switch (type) {
+      case 0:
+        bits(bitCount & 7);
+        int len = bits(16);
+        if ((bits(16) ^ 0xFFFF) != len) throw malformed();
+        storedRemaining = len;
+        state = STORED;
+        break;
+      case 1:
+        literals = FIXED_LITERALS;
+        distances = FIXED_DISTANCES;
+        state = CODES;
+        break;
+      case 2:
+        readDynamicTables();
+        literals = dynamicLiterals;
+        distances = dynamicDistances;
+        state = CODES;
+        break;
+      default:
+        throw malformed();
+    }
+  }
+
+  private void readDynamicTables() throws IOException {
+    int literalCount = bits(5) + 257;
+    int distanceCount = bits(5) + 1;
+    int codeCount = bits(4) + 4;
+    if (literalCount > 286 || distanceCount > 30) throw malformed();
+
+    int[] lengths = new int[literalCount + distanceCount];
+    for (int i = 0; i < codeCount; i++) lengths[CODE_LENGTH_ORDER[i]] = bits(3);
+    Huffman lengthCode = new Huffman(19);
+    if (lengthCode.build(lengths, 0, 19) != 0) throw malformed();
+
+    Arrays.fill(lengths, 0);
+    int i = 0;
+    while (i < literalCount + distanceCount) {
+      int symbol = decode(lengthCode);
+      if (symbol < 16) {
+        lengths[i++] = symbol;
+        continue;
+      }
+      int value = 0;
+      int repeat;
+      if (symbol == 16) {
+        if (i == 0) throw malformed();
+        value = lengths[i - 1];
+        repeat = 3 + bits(2);
+      } else if (symbol == 17) {
+        repeat = 3 + bits(3);
+      } else {
+        repeat = 11 + bits(7);
+      }
+      if (i + repeat > literalCount + distanceCount) throw malformed();
+      while (repeat-- > 0) lengths[i++] = value;
+    }
+    if (lengths[256] == 0) throw malformed();
+
+    // Incomplete codes are only allowed for a single length, as zlib writes them.
+    int left = dynamicLiterals.build(lengths, 0, literalCount);
+    if (left < 0 || (left > 0 && literalCount - dynamicLiterals.count[0] != 1)) throw malformed();
+    left = dynamicDistances.build(lengths, literalCount, distanceCount);
+    if (left < 0 || (left > 0 && distanceCount - dynamicDistances.count[0] != 1)) throw malformed();
+  }
+
+  private void put(byte v) {
+    window[windowPos] = v;
+    windowPos = (windowPos + 1) & (WINDOW_SIZE - 1);
+    if (windowLen < WINDOW_SIZE) windowLen++;
+  }
+
+  /** Loads whole bytes into the bit buffer while there is room and input is available. */
+  private void fill() throws IOException {
+    while (bitCount <= 56) {
+      if (inputPos == inputLen) {
+        int n = in.read(inputBuffer, 0, inputBuffer.length);
+        if (n <= 0) return;
+        inputPos = 0;
+        inputLen = n;
+      }
+      bitBuffer |= (long) (inputBuffer[inputPos++] & 0xFF) << bitCount;
+      bitCount += 8;
+      position++;
+    }
+  }
+
+  private int bits(int n) throws IOException {
+    while (bitCount < n) {
+      if (inputPos == inputLen) {
+        inputLen = in.read(inputBuffer, 0, inputBuffer.length);
+        inputPos = 0;
+        if (inputLen <= 0) {
+          inputLen = 0;
+          throw new EOFException("Unexpected end of deflate data");
+        }
+      }
+      bitBuffer |= (long) (inputBuffer[inputPos++] & 0xFF) << bitCount;
+      bitCount += 8;
+      position++;
+    }
+    int v = (int) (bitBuffer & ((1L << n) - 1));
+    bitBuffer >>>= n;
+    bitCount -= n;
+    return v;
+  }
+
+  /** Decodes a symbol with the lookup table, or a bit at a time for long codes. */
+  private int decode(Huffman h) throws IOException {
+    if (bitCount < Huffman.TABLE_BITS) fill();
+    int entry = h.table[(int) bitBuffer & ((1 << Huffman.TABLE_BITS) - 1)];
+    int entryLen = entry & 0xF;
+    if (entryLen != 0 && entryLen <= bitCount) {
+      bitBuffer >>>= entryLen;
+      bitCount -= entryLen;
+      return entry >>> 4;
+    }
+    int code = 0;
+    int first = 0;
+    int index = 0;
+    for (int len = 1; len <= 15; len++) {
+      code |= bits(1);
+      int count = h.count[len];
+      if (code - count < first) return h.symbol[index + (code - first)];
+      index += count;
+      first += count;
+      first <<= 1;
+      code <<= 1;
+    }
+    throw malformed();
+  }
+
+  private static IOException malformed() {
+    return new IOException("Invalid deflate data");
+  }
+
+  /**
+   * A canonical Huffman code, as the number of codes of each length and the sorted symbols, with a
+   * table that decodes codes of up to {@link #TABLE_BITS} bits in one step.
+   */
+  private static final class Huffman {
+    static final int TABLE_BITS = 9;
+
+    final short[] count = new short[16];
+    final short[] symbol;
+
+    /** The symbol and code length for each bit-reversed prefix, or 0 for longer codes. */
+    final int[] table = new int[1 << TABLE_BITS];
+
+    Huffman(int symbols) {
+      symbol = new short[symbols];
+    }
+
+    /**
+     * Builds the code from the code lengths of the given symbols.
+     *
+     * @return 0 for a complete code, a positive number for an incomplete code, or a negative number
+     *     for an over-subscribed code.
+     */
+    int build(int[] lengths, int off, int n) {
+      Arrays.fill(count, (short) 0);
+      for (int i = 0; i < n; i++) count[lengths[off + i]]++;
+      if (count[0] == n) return 0;
+      int left = 1;
+      for (int len = 1; len <= 15; len++) {
+        left <<= 1;
+        left -= count[len];
+        if (left < 0) return left;
+      }
+      short[] offs = new short[16];
+      for (int len = 1; len < 15; len++) offs[len + 1] = (short) (offs[len] + count[len]);
+      for (int i = 0; i < n; i++) {
+        if (lengths[off + i] != 0) symbol[offs[lengths[off + i]]++] = (short) i;
+      }
+
+      Arrays.fill(table, 0);
+      int code = 0;
+      int index = 0;
+      for (int len = 1; len <= TABLE_BITS; len++) {
+        for (int j = 0; j < count[len]; j++, code++) {
+          int reversed = Integer.reverse(code) >>> (32 - len);
+          for (int k = reversed; k < table.length; k += 1 << len) {
+            table[k] = symbol[index + j] << 4 | len;
+          }
+        }
+        index += count[len];
+        code <<= 1;
+      }
+      return left;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * The trailing index of the seekable container written by {@link QatSeekableOutputStream}. The
+ * container is a sequence of compressed blocks, each holding {@link #blockSize} uncompressed bytes
+ * except the last, followed by the index and a fixed-size footer. All numbers are little-endian:
+ *
+ * <pre>
+ *   block 0 ... block n-1
+ *   long[n]  end offset of each block
+ *   long     uncompressed length
+ *   int      block size
+ *   int      block count n
+ *   int      algorithm (0 deflate, 1 LZ4)
+ *   int      version
+ *   long     magic "QATSEEK1"
+ * </pre>
+ */
+final class SeekableIndex {
+  static final long MAGIC = 0x314B454553544151L;
+  static final int VERSION = 1;
+  static final int FOOTER_LENGTH = 32;
+
+  final Algorithm algorithm;
+  final int blockSize;
+  final long length;
+
+  /** The offset just past each block, which is also where the next block starts. */
+  final long[] ends;
+
+  SeekableIndex(Algorithm algorithm, int blockSize, long length, long[] ends) {
+    this.algorithm = algorithm;
+    this.blockSize = blockSize;
+    this.length = length;
+    this.ends = ends;
+  }
+
+  int blockCount() {
+    return ends.length;
+  }
+
+  long blockStart(int block) {
+    return block == 0 ? 0 : ends[block - 1];
+  }
+
+  /** Returns the number of uncompressed bytes held by the given block. */
+  int blockLength(int block) {
+    return (int) Math.min(blockSize, length - (long) block * blockSize);
+  }
+
+  /** Writes the index and the footer. */
+  void writeTo(OutputStream out) throws IOException {
+    ByteBuffer buf =
+        ByteBuffer.allocate(8 * ends.length + FOOTER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    for (long end : ends) buf.putLong(end);
+    buf.putLong(length)
+        .putInt(blockSize)
+        .putInt(ends.length)
+        .putInt(algorithm.ordinal())
+        .putInt(VERSION)
+        .putLong(MAGIC);
+    out.write(buf.array());
+  }
+
+  /**
+   * Reads the index from the end of the given channel. The position of the channel is changed.
+   *
+   * @throws IOException if the channel does not hold a valid container or an I/O error occurs.
+   */
+  static SeekableIndex readFrom(SeekableByteChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < FOOTER_LENGTH) throw notSeekable();
+    ByteBuffer footer = readFully(channel, size - FOOTER_LENGTH, FOOTER_LENGTH);
+    long length = footer.getLong();
+    int blockSize = footer.getInt();
+    int blockCount = footer.getInt();
+    int algorithm = footer.getInt();
+    int version = footer.getInt();
+    if (footer.getLong() != MAGIC) throw notSeekable();
+    if (version != VERSION) throw new IOException("Unsupported container version " + version);
+    if (blockSize <= 0
+        || length < 0
+        || blockCount != (length + blockSize - 1) / blockSize
+        || algorithm < 0
+        || algorithm >= Algorithm.values().length
+        || size - FOOTER_LENGTH < 8L * blockCount) throw corrupt();
+
+    long indexOffset = size - FOOTER_LENGTH - 8L * blockCount;
+    ByteBuffer index = readFully(channel, indexOffset, 8 * blockCount);
+    long[] ends = new long[blockCount];
+    long previous = 0;
+    for (int i = 0; i < blockCount; i++) {
+      ends[i] = index.getLong();
+      if (ends[i] <= previous) throw corrupt();
+      previous = ends[i];
+    }
+    if (previous != indexOffset) throw corrupt();
+    return new SeekableIndex(Algorithm.values()[algorithm], blockSize, length, ends);
+  }
+
+  /** Reads the given range of the channel. */
+  static ByteBuffer readFully(SeekableByteChannel channel, long offset, int len)
+      throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+    channel.position(offset);
+    while (buf.hasRemaining()) {
+      if (channel.read(buf) < 0) throw corrupt();
+    }
+    return buf.flip();
+  }
+
+  private static IOException notSeekable() {
+    return new IOException("Not a seekable QAT container");
+  }
+
+  private static IOException corrupt() {
+    return new IOException("Corrupt seekable QAT container");
+  }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** A fixed set of sessions and the threads that use them, one session per thread. */
+final class SessionPool implements AutoCloseable {
+  private final BlockingQueue<QatZipper> sessions;
+  private final ExecutorService executor;
+  private final int count;
+
+  /** A task that runs with a session taken from the pool. */
+  interface Task<T> {
+    T run(QatZipper qzip) throws IOException;
+  }
+
+  SessionPool(Algorithm algorithm, int level, Mode mode, int count) {
+    this(algorithm, level, mode, count, "qat-file-worker");
+  }
+
+  SessionPool(Algorithm algorithm, int level, Mode mode, int count, String threadName) {
+    if (count <= 0) throw new IllegalArgumentException();
+    this.count = count;
+    sessions = new ArrayBlockingQueue<>(count);
+    try {
+      for (int i = 0; i < count; i++) sessions.add(new QatZipper(algorithm, level, mode));
+    } catch (QatException e) {
+      for (QatZipper qzip : sessions) qzip.end();
+      throw e;
+    }
+    executor =
+        Executors.newFixedThreadPool(
+            count,
+            r -> {
+              Thread t = new Thread(r, threadName);
+              t.setDaemon(true);
+              return t;
+            });
+  }
+
+  /** Returns the number of sessions. */
+  int size() {
+    return count;
+  }
+
+  /**
+   * Returns the largest compressed size of the given number of bytes. Called before any task is
+   * submitted, while every session is in the pool.
+   */
+  int maxCompressedLength(int len) {
+    return sessions.peek().maxCompressedLength(len);
+  }
+
+  /** Returns the number of tasks that may usefully be queued or running at once. */
+  int maxInFlight() {
+    return 2 * count;
+  }
+
+  <T> Future<T> submit(Task<T> task) {
+    return executor.submit(
+        () -> {
+          QatZipper qzip = sessions.take();
+          try {
+            return task.run(qzip);
+          } finally {
+            sessions.add(qzip);
+          }
+        });
+  }
+
+  /**
+   * Waits for a task's result.
+   *
+   * @throws IOException if the task failed with an I/O error or the wait was interrupted
+   */
+  static <T> T get(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Waits for every submitted task to finish, then ends the sessions. If the caller is interrupted,
+   * queued tasks are dropped and running ones are interrupted, and the sessions are ended once the
+   * threads have stopped.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      Workers.shutdownAndAwait(executor);
+    } finally {
+      for (QatZipper qzip : sessions) qzip.end();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Helpers for background threads, which must stop before the resources they use are freed. */
+final class Workers {
+  private Workers() {}
+
+  /**
+   * Shuts down the given executors in order and waits for each to terminate, so that the sessions
+   * and buffers their tasks use may be released afterwards. If the calling thread is interrupted,
+   * the remaining executors are stopped with {@link ExecutorService#shutdownNow()}, which drops
+   * queued tasks and interrupts running ones, and the wait goes on.
+   *
+   * @param executors the executors, in the order in which they hand work to each other
+   * @throws InterruptedIOException once every executor has terminated, if the calling thread was
+   *     interrupted; its interrupt status is set again
+   */
+  static void shutdownAndAwait(ExecutorService... executors) throws InterruptedIOException {
+    boolean interrupted = false;
+    for (ExecutorService executor : executors) {
+      if (interrupted) executor.shutdownNow();
+      else executor.shutdown();
+      while (true) {
+        try {
+          executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+          executor.shutdownNow();
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+/** A streaming implementation of the 32-bit xxHash, as used by the LZ4 frame format. */
+final class XXHash32 {
+  private static final int PRIME1 = 0x9E3779B1;
+  private static final int PRIME2 = 0x85EBCA77;
+  private static final int PRIME3 = 0xC2B2AE3D;
+  private static final int PRIME4 = 0x27D4EB2F;
+  private static final int PRIME5 = 0x165667B1;
+
+  private final int seed;
+  private int v1;
+  private int v2;
+  private int v3;
+  private int v4;
+  private long totalLen;
+  private final byte[] pending = new byte[16];
+  private int pendingLen;
+
+  /** Creates a new hash with a seed of zero. */
+  XXHash32() {
+    this(0);
+  }
+
+  /** Creates a new hash with the given seed. */
+  XXHash32(int seed) {
+    this.seed = seed;
+    reset();
+  }
+
+  /** Resets this hash to its initial state. */
+  void reset() {
+    v1 = seed + PRIME1 + PRIME2;
+    v2 = seed + PRIME2;
+    v3 = seed;
+    v4 = seed - PRIME1;
+    totalLen = 0;
+    pendingLen = 0;
+  }
+
+  /** Updates this hash with the given bytes. */
+  void update(byte[] b, int off, int len) {
+    totalLen += len;
+    if (pendingLen + len < 16) {
+      System.arraycopy(b, off, pending, pendingLen, len);
+      pendingLen += len;
+      return;
+    }
+
+    int end = off + len;
+    if (pendingLen > 0) {
+      int fill = 16 - pendingLen;
+      System.arraycopy(b, off, pending, pendingLen, fill);
+      v1 = round(v1, readInt(pending, 0));
+      v2 = round(v2, readInt(pending, 4));
+      v3 = round(v3, readInt(pending, 8));
+      v4 = round(v4, readInt(pending, 12));
+      off += fill;
+      pendingLen = 0;
+    }
+
+    for (; off <= end - 16; off += 16) {
+      v1 = round(v1, readInt(b, off));
+      v2 = round(v2, readInt(b, off + 4));
+      v3 = round(v3, readInt(b, off + 8));
+      v4 = round(v4, readInt(b, off + 12));
+    }
+
+    pendingLen = end - off;
+    System.arraycopy(b, off, pending, 0, pendingLen);
+  }
+
+  /** Returns the hash of all bytes passed to {@link #update} since the last reset. */
+  int getValue() {
+    int h;
+    if (totalLen >= 16) {
+      h =
+          Integer.rotateLeft(v1, 1)
+              + Integer.rotateLeft(v2, 7)
+              + Integer.rotateLeft(v3, 12)
+              + Integer.rotateLeft(v4, 18);
+    } else {
+      h = seed + PRIME5;
+    }
+    h += (int) totalLen;
+
+    int off = 0;
+    for (; off <= pendingLen - 4; off += 4) {
+      h += readInt(pending, off) * PRIME3;
+      h = Integer.rotateLeft(h, 17) * PRIME4;
+    }
+    for (; off < pendingLen; off++) {
+      h += (pending[off] & 0xFF) * PRIME5;
+      h = Integer.rotateLeft(h, 11) * PRIME1;
+    }
+
+    h ^= h >>> 15;
+    h *= PRIME2;
+    h ^= h >>> 13;
+    h *= PRIME3;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /** Returns the hash of the given bytes. */
+  static int hash(byte[] b, int off, int len, int seed) {
+    XXHash32 xxh = new XXHash32(seed);
+    xxh.update(b, off, len);
+    return xxh.getValue();
+  }
+
+  private static int round(int acc, int input) {
+    acc += input * PRIME2;
+    acc = Integer.rotateLeft(acc, 13);
+    return acc * PRIME1;
+  }
+
+  private static int readInt(byte[] b, int off) {
+    return (b[off] & 0xFF)
+        | (b[off + 1] & 0xFF) << 8
+        | (b[off + 2] & 0xFF) << 16
+        | (b[off + 3] & 0xFF) << 24;
+  }
+}
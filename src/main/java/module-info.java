@@ -11,5 +11,13 @@
  * through JNI bindings.
  */
 module com.intel.qat {
+  requires static org.crac;
+
   exports com.intel.qat;
+
+  uses com.intel.qat.CompressionEngine;
+
+  provides com.intel.qat.CompressionEngine with
+      com.intel.qat.QatEngine,
+      com.intel.qat.JavaEngine;
 }
@@ -153,10 +153,10 @@ static int decompress(JNIEnv *env, QzSession_T *sess, unsigned char *src_ptr,
  *
  * Class:     com_intel_qat_InternalJNI
  * Method:    setup
- * Signature: (Lcom/intel/qat/QatZipper;IJII)V
+ * Signature: (Lcom/intel/qat/QatEngine$QatSession;III)V
  */
 JNIEXPORT void JNICALL Java_com_intel_qat_InternalJNI_setup(
-    JNIEnv *env, jobject obj, jobject qat_zipper, jint sw_backup,
+    JNIEnv *env, jobject obj, jobject qat_session, jint sw_backup,
     jint comp_algorithm, jint level) {
   (void)obj;
 
@@ -183,9 +183,35 @@ JNIEXPORT void JNICALL Java_com_intel_qat_InternalJNI_setup(
     return;
   }
 
-  jclass qz_clazz = (*env)->FindClass(env, "com/intel/qat/QatZipper");
+  jclass qz_clazz = (*env)->GetObjectClass(env, qat_session);
   jfieldID qz_session_field = (*env)->GetFieldID(env, qz_clazz, "session", "J");
-  (*env)->SetLongField(env, qat_zipper, qz_session_field, (jlong)qz_session);
+  (*env)->SetLongField(env, qat_session, qz_session_field, (jlong)qz_session);
+}
+
+/*
+ * Updates the parameters of an existing QAT session. The session keeps its
+ * process-wide initialization and any attached instance.
+ *
+ * Class:     com_intel_qat_InternalJNI
+ * Method:    reconfigure
+ * Signature: (JIII)V
+ */
+JNIEXPORT void JNICALL Java_com_intel_qat_InternalJNI_reconfigure(
+    JNIEnv *env, jclass obj, jlong sess, jint sw_backup, jint comp_algorithm,
+    jint level) {
+  (void)obj;
+
+  QzSession_T *qz_session = (QzSession_T *)sess;
+
+  int status;
+  if (comp_algorithm == DEFLATE_ALGORITHM)
+    status = setup_deflate_session(qz_session, level, (unsigned char)sw_backup);
+  else
+    status = setup_lz4_session(qz_session, level, (unsigned char)sw_backup);
+
+  if (status != QZ_OK)
+    throw_exception(env, status,
+                    "Error occurred while reconfiguring a session.");
 }
 
 /*
@@ -535,6 +561,37 @@ JNIEXPORT jint JNICALL Java_com_intel_qat_InternalJNI_maxCompressedSize(
   return qzMaxCompressedLength(src_size, (QzSession_T *)sess);
 }
 
+/*
+ * Returns the default hardware buffer size, the largest chunk that QATzip
+ * submits to the hardware in one request, for the given algorithm.
+ *
+ * Class:     com_intel_qat_InternalJNI
+ * Method:    hardwareBufferSize
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_com_intel_qat_InternalJNI_hardwareBufferSize(
+    JNIEnv *env, jclass obj, jint comp_algorithm) {
+  (void)obj;
+
+  int status;
+  unsigned int hw_buff_sz;
+  if (comp_algorithm == DEFLATE_ALGORITHM) {
+    QzSessionParamsDeflate_T deflate_params;
+    status = qzGetDefaultsDeflate(&deflate_params);
+    hw_buff_sz = deflate_params.common_params.hw_buff_sz;
+  } else {
+    QzSessionParamsLZ4_T lz4_params;
+    status = qzGetDefaultsLZ4(&lz4_params);
+    hw_buff_sz = lz4_params.common_params.hw_buff_sz;
+  }
+
+  if (status != QZ_OK) {
+    throw_exception(env, status, "Error occurred while reading defaults.");
+    return 0;
+  }
+  return (jint)hw_buff_sz;
+}
+
 /*
  * Tearsdown the given QAT session.
  *
@@ -561,3 +618,21 @@ JNIEXPORT jint JNICALL Java_com_intel_qat_InternalJNI_teardown(JNIEnv *env,
 
   return QZ_OK;
 }
+
+/*
+ * Releases the process-wide QAT resources acquired by qzInit. All sessions
+ * must have been torn down before calling this function.
+ *
+ * Class:     com_intel_qat_InternalJNI
+ * Method:    close
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_com_intel_qat_InternalJNI_close(JNIEnv *env,
+                                                            jclass obj) {
+  (void)obj;
+
+  QzSession_T qz_session = {0};
+  int status = qzClose(&qz_session);
+  if (status != QZ_OK)
+    throw_exception(env, status, "Error occurred while closing QAT.");
+}
@@ -10,12 +10,22 @@ extern "C" {
 /*
  * Class:     com_intel_qat_InternalJNI
  * Method:    setup
- * Signature: (Lcom/intel/qat/QatZipper;IJII)V
+ * Signature: (Lcom/intel/qat/QatEngine$QatSession;III)V
  */
 JNIEXPORT void JNICALL Java_com_intel_qat_InternalJNI_setup(JNIEnv *, jclass,
                                                             jobject, jint, jint,
                                                             jint);
 
+/*
+ * Class:     com_intel_qat_InternalJNI
+ * Method:    reconfigure
+ * Signature: (JIII)V
+ */
+JNIEXPORT void JNICALL Java_com_intel_qat_InternalJNI_reconfigure(JNIEnv *,
+                                                                  jclass, jlong,
+                                                                  jint, jint,
+                                                                  jint);
+
 /*
  * Class:     com_intel_qat_InternalJNI
  * Method:    teardown
@@ -24,6 +34,13 @@ JNIEXPORT void JNICALL Java_com_intel_qat_InternalJNI_setup(JNIEnv *, jclass,
 JNIEXPORT jint JNICALL Java_com_intel_qat_InternalJNI_teardown(JNIEnv *, jclass,
                                                                jlong);
 
+/*
+ * Class:     com_intel_qat_InternalJNI
+ * Method:    close
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_com_intel_qat_InternalJNI_close(JNIEnv *, jclass);
+
 /*
  * Class:     com_intel_qat_InternalJNI
  * Method:    maxCompressedSize
@@ -32,6 +49,14 @@ JNIEXPORT jint JNICALL Java_com_intel_qat_InternalJNI_teardown(JNIEnv *, jclass,
 JNIEXPORT jint JNICALL Java_com_intel_qat_InternalJNI_maxCompressedSize(
     JNIEnv *, jclass, jlong, jlong);
 
+/*
+ * Class:     com_intel_qat_InternalJNI
+ * Method:    hardwareBufferSize
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_com_intel_qat_InternalJNI_hardwareBufferSize(
+    JNIEnv *, jclass, jint);
+
 /*
  * Class:     com_intel_qat_InternalJNI
  * Method:    compressByteArray
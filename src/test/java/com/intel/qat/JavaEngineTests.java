@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class JavaEngineTests {
+  private final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+
+  private Random rnd = new Random();
+
+  private static byte[] readAllBytes(String fileName) throws IOException {
+    return Files.readAllBytes(Path.of(fileName));
+  }
+
+  private byte[] getRandomBytes(int len) {
+    byte[] bytes = new byte[len];
+    rnd.nextBytes(bytes);
+    return bytes;
+  }
+
+  private static CompressionEngine.Session newSession(Algorithm algo) {
+    return new JavaEngine().createSession(algo, QatZipper.DEFAULT_COMPRESS_LEVEL, Mode.AUTO, 0);
+  }
+
+  @Test
+  public void testSupportsOnlyAutoMode() {
+    JavaEngine engine = new JavaEngine();
+    assertTrue(engine.isAvailable());
+    assertTrue(engine.supports(Mode.AUTO));
+    assertFalse(engine.supports(Mode.HARDWARE));
+  }
+
+  @ParameterizedTest
+  @EnumSource(Algorithm.class)
+  public void testCompressDecompressSampleText(Algorithm algo) {
+    try {
+      CompressionEngine.Session session = newSession(algo);
+      byte[] src = readAllBytes(SAMPLE_TEXT_PATH);
+      byte[] dst = new byte[session.maxCompressedLength(src.length)];
+      byte[] dec = new byte[src.length];
+
+      int compressedSize = session.compress(src, 0, src.length, dst, 0, dst.length);
+      int decompressedSize = session.decompress(dst, 0, compressedSize, dec, 0, dec.length);
+      session.end();
+
+      assertTrue(compressedSize < src.length);
+      assertEquals(src.length, decompressedSize);
+      assertTrue(Arrays.equals(src, dec));
+    } catch (QatException | IOException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(Algorithm.class)
+  public void testCompressDecompressRandomMultiChunk(Algorithm algo) {
+    CompressionEngine.Session session = newSession(algo);
+    byte[] src = getRandomBytes(3 * JavaEngine.CHUNK_SIZE + 17);
+    byte[] dst = new byte[session.maxCompressedLength(src.length)];
+    byte[] dec = new byte[src.length];
+
+    int compressedSize = session.compress(src, 0, src.length, dst, 0, dst.length);
+    int decompressedSize = session.decompress(dst, 0, compressedSize, dec, 0, dec.length);
+    session.end();
+
+    assertEquals(src.length, decompressedSize);
+    assertTrue(Arrays.equals(src, dec));
+  }
+
+  @ParameterizedTest
+  @EnumSource(Algorithm.class)
+  public void testDirectByteBuffers(Algorithm algo) {
+    try {
+      CompressionEngine.Session session = newSession(algo);
+      byte[] data = readAllBytes(SAMPLE_TEXT_PATH);
+      ByteBuffer src = ByteBuffer.allocateDirect(data.length);
+      src.put(data).flip();
+      ByteBuffer com = ByteBuffer.allocateDirect(session.maxCompressedLength(data.length));
+      ByteBuffer dec = ByteBuffer.allocateDirect(data.length);
+
+      session.compress(src, com);
+      com.flip();
+      session.decompress(com, dec);
+      session.end();
+
+      assertFalse(com.hasRemaining());
+      dec.flip();
+      byte[] result = new byte[dec.remaining()];
+      dec.get(result);
+      assertTrue(Arrays.equals(data, result));
+    } catch (QatException | IOException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testDeflateOutputIsGzip() {
+    try {
+      CompressionEngine.Session session = newSession(Algorithm.DEFLATE);
+      byte[] src = readAllBytes(SAMPLE_TEXT_PATH);
+      byte[] dst = new byte[session.maxCompressedLength(src.length)];
+      int compressedSize = session.compress(src, 0, src.length, dst, 0, dst.length);
+      session.end();
+
+      GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(dst, 0, compressedSize));
+      byte[] dec = in.readAllBytes();
+      in.close();
+      assertTrue(Arrays.equals(src, dec));
+    } catch (IOException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testDecompressPlainGzip() {
+    try {
+      byte[] src = readAllBytes(SAMPLE_TEXT_PATH);
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      GZIPOutputStream out = new GZIPOutputStream(bos);
+      out.write(src);
+      out.close();
+      byte[] gz = bos.toByteArray();
+
+      CompressionEngine.Session session = newSession(Algorithm.DEFLATE);
+      byte[] dec = new byte[src.length];
+      int decompressedSize = session.decompress(gz, 0, gz.length, dec, 0, dec.length);
+      session.end();
+
+      assertEquals(src.length, decompressedSize);
+      assertTrue(Arrays.equals(src, dec));
+    } catch (IOException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testDecompressCorruptedData() {
+    CompressionEngine.Session session = newSession(Algorithm.DEFLATE);
+    byte[] src = "hello, hello, hello, hello".getBytes(StandardCharsets.UTF_8);
+    byte[] dst = new byte[session.maxCompressedLength(src.length)];
+    int compressedSize = session.compress(src, 0, src.length, dst, 0, dst.length);
+    dst[compressedSize - 8] ^= 1; // CRC32
+    byte[] dec = new byte[src.length];
+    assertThrows(
+        QatException.class, () -> session.decompress(dst, 0, compressedSize, dec, 0, dec.length));
+    session.end();
+  }
+
+  @ParameterizedTest
+  @EnumSource(Algorithm.class)
+  public void testDecompressValidAfterCorrupted(Algorithm algo) throws IOException {
+    CompressionEngine.Session session = newSession(algo);
+    byte[] src = readAllBytes(SAMPLE_TEXT_PATH);
+    byte[] dst = new byte[session.maxCompressedLength(src.length)];
+    int compressedSize = session.compress(src, 0, src.length, dst, 0, dst.length);
+    byte[] corrupt = Arrays.copyOf(dst, compressedSize);
+    for (int i = compressedSize / 4; i < compressedSize; i += 64) corrupt[i] ^= 0x55;
+    byte[] dec = new byte[src.length];
+    assertThrows(
+        QatException.class,
+        () -> session.decompress(corrupt, 0, corrupt.length, dec, 0, dec.length));
+
+    int decompressedSize = session.decompress(dst, 0, compressedSize, dec, 0, dec.length);
+    session.end();
+    assertEquals(src.length, decompressedSize);
+    assertTrue(Arrays.equals(src, dec));
+  }
+
+  @Test
+  public void testXXHash32() {
+    byte[] abc = "abc".getBytes(StandardCharsets.US_ASCII);
+    assertEquals(0x02CC5D05, XXHash32.hash(abc, 0, 0, 0));
+    assertEquals(0x550D7456, XXHash32.hash(abc, 0, 1, 0));
+    assertEquals(0x32D153FF, XXHash32.hash(abc, 0, 3, 0));
+
+    byte[] data = getRandomBytes(1000);
+    XXHash32 xxh = new XXHash32();
+    for (int i = 0; i < data.length; i += 7) xxh.update(data, i, Math.min(7, data.length - i));
+    assertEquals(XXHash32.hash(data, 0, data.length, 0), xxh.getValue());
+  }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class ParallelQatCompressorOutputStreamTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+
+  private QatZipper qzip;
+  private static byte[] src;
+
+  private Random rnd = new Random();
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    src = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+  }
+
+  @AfterEach
+  public void cleanupSession() {
+    if (qzip != null) qzip.end();
+  }
+
+  public static Stream<Arguments> provideModeAlgorithmParams() {
+    return QatTestSuite.FORCE_HARDWARE
+        ? Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE),
+            Arguments.of(Mode.AUTO, Algorithm.LZ4),
+            Arguments.of(Mode.HARDWARE, Algorithm.DEFLATE),
+            Arguments.of(Mode.HARDWARE, Algorithm.LZ4))
+        : Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE), Arguments.of(Mode.AUTO, Algorithm.LZ4));
+  }
+
+  @Test
+  public void testOutputStreamDefaultConstructor() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try {
+      try (ParallelQatCompressorOutputStream compressedStream =
+          new ParallelQatCompressorOutputStream(outputStream)) {}
+    } catch (IOException | IllegalArgumentException | QatException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testOutputStreamBadArguments() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try {
+      try (ParallelQatCompressorOutputStream compressedStream =
+          new ParallelQatCompressorOutputStream(
+              outputStream,
+              16 * 1024,
+              Algorithm.DEFLATE,
+              QatZipper.DEFAULT_COMPRESS_LEVEL,
+              Mode.AUTO,
+              2,
+              0)) {
+        fail("Failed to catch IllegalArgumentException");
+      }
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testOutputStreamWriteAll(Mode mode, Algorithm algo) throws IOException {
+    qzip = new QatZipper(algo);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ParallelQatCompressorOutputStream compressedStream =
+        new ParallelQatCompressorOutputStream(
+            outputStream, 16 * 1024, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode, 4, 3)) {
+      int len = 0;
+      for (int i = 0; i < src.length; i += len) {
+        len = Math.min(rnd.nextInt(40 * 1024), src.length - i);
+        compressedStream.write(src, i, len);
+      }
+    }
+    byte[] outputStreamBuf = outputStream.toByteArray();
+    byte[] result = new byte[src.length];
+    int decompressedLen =
+        qzip.decompress(outputStreamBuf, 0, outputStreamBuf.length, result, 0, result.length);
+
+    assertEquals(src.length, decompressedLen);
+    assertTrue(Arrays.equals(src, result));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testOutputStreamReadBack(Mode mode, Algorithm algo) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ParallelQatCompressorOutputStream compressedStream =
+        new ParallelQatCompressorOutputStream(
+            outputStream, 8 * 1024, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode, 3, 8)) {
+      for (int i = 0; i < 1024; i++) compressedStream.write(src[i]);
+      compressedStream.flush();
+      compressedStream.write(src, 1024, src.length - 1024);
+    }
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(
+            new ByteArrayInputStream(outputStream.toByteArray()), 16 * 1024, algo, mode)) {
+      assertTrue(Arrays.equals(src, decompressedStream.readAllBytes()));
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testOutputStreamWriteAfterClose(Mode mode, Algorithm algo) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ParallelQatCompressorOutputStream compressedStream =
+        new ParallelQatCompressorOutputStream(
+            outputStream, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode);
+    compressedStream.close();
+    compressedStream.close();
+    try {
+      compressedStream.write(src);
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+}
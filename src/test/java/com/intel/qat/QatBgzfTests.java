@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Mode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class QatBgzfTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+
+  private static byte[] src;
+  private Path file;
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    byte[] sample = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+    src = new byte[1024 * 1024 + 17];
+    for (int i = 0; i < src.length; i += sample.length)
+      System.arraycopy(sample, 0, src, i, Math.min(sample.length, src.length - i));
+  }
+
+  @BeforeEach
+  public void createFile() throws IOException {
+    file = Files.createTempFile("qat-bgzf", ".gz");
+  }
+
+  @AfterEach
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  public static Stream<Arguments> provideModeParams() {
+    return QatTestSuite.FORCE_HARDWARE
+        ? Stream.of(Arguments.of(Mode.AUTO), Arguments.of(Mode.HARDWARE))
+        : Stream.of(Arguments.of(Mode.AUTO));
+  }
+
+  /** Checks that the data is a sequence of BGZF blocks ending with the EOF marker. */
+  private static void checkBlocks(byte[] data) {
+    int pos = 0;
+    while (pos < data.length) {
+      int size = Bgzf.blockSize(data, pos, data.length - pos);
+      assertTrue(size <= Bgzf.MAX_BLOCK_SIZE);
+      pos += size;
+    }
+    assertEquals(data.length, pos);
+    assertTrue(
+        Arrays.equals(
+            Bgzf.EOF_MARKER,
+            Arrays.copyOfRange(data, data.length - Bgzf.EOF_MARKER.length, data.length)));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeParams")
+  public void testRoundTrip(Mode mode) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (QatBgzfOutputStream out = new QatBgzfOutputStream(compressed, 6, mode, 3, 5)) {
+      out.write(src, 0, 1000);
+      out.flush();
+      out.write(src, 1000, src.length - 1000);
+    }
+    byte[] data = compressed.toByteArray();
+    checkBlocks(data);
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+      assertTrue(Arrays.equals(src, in.readAllBytes()));
+    }
+    try (InputStream in = new QatBgzfInputStream(new ByteArrayInputStream(data))) {
+      assertTrue(Arrays.equals(src, in.readAllBytes()));
+    }
+  }
+
+  @Test
+  public void testIncompressibleData() throws IOException {
+    byte[] random = new byte[300 * 1024];
+    new Random(5).nextBytes(random);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (QatBgzfOutputStream out = new QatBgzfOutputStream(compressed)) {
+      out.write(random);
+    }
+    checkBlocks(compressed.toByteArray());
+    try (InputStream in =
+        new QatBgzfInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertTrue(Arrays.equals(random, in.readAllBytes()));
+    }
+  }
+
+  @Test
+  public void testSeek() throws IOException {
+    Random rnd = new Random(3);
+    long[] pointers = new long[40];
+    int[] offsets = new int[pointers.length];
+    try (QatBgzfOutputStream out = new QatBgzfOutputStream(Files.newOutputStream(file))) {
+      int written = 0;
+      for (int i = 0; i < pointers.length; i++) {
+        int n = i == 0 ? 0 : rnd.nextInt(20000);
+        out.write(src, written, n);
+        written += n;
+        offsets[i] = written;
+        pointers[i] = out.getFilePointer();
+      }
+      out.write(src, written, src.length - written);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      assertTrue(QatBgzfInputStream.hasEofMarker(channel));
+    }
+    try (QatBgzfInputStream in =
+        new QatBgzfInputStream(FileChannel.open(file, StandardOpenOption.READ))) {
+      for (int i = pointers.length - 1; i >= 0; i--) {
+        in.seek(pointers[i]);
+        assertEquals(pointers[i], in.getFilePointer());
+        byte[] b = in.readNBytes(100);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(src, offsets[i], offsets[i] + 100), b));
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeParams")
+  public void testSeekIncompressibleData(Mode mode) throws IOException {
+    byte[] random = new byte[300 * 1024];
+    new Random(7).nextBytes(random);
+    int step = 40000;
+    long[] pointers = new long[random.length / step];
+    try (QatBgzfOutputStream out =
+        new QatBgzfOutputStream(
+            Files.newOutputStream(file), QatZipper.DEFAULT_COMPRESS_LEVEL, mode)) {
+      for (int i = 0; i < pointers.length; i++) {
+        out.write(random, i * step, step);
+        pointers[i] = out.getFilePointer();
+      }
+      out.write(random, pointers.length * step, random.length - pointers.length * step);
+    }
+    // Each block of input makes one BGZF block, however little it compresses.
+    byte[] data = Files.readAllBytes(file);
+    int blocks = 0;
+    for (int pos = 0; pos < data.length; blocks++)
+      pos += Bgzf.blockSize(data, pos, data.length - pos);
+    assertEquals((random.length + Bgzf.MAX_BLOCK_DATA - 1) / Bgzf.MAX_BLOCK_DATA + 1, blocks);
+    try (QatBgzfInputStream in =
+        new QatBgzfInputStream(FileChannel.open(file, StandardOpenOption.READ))) {
+      for (int i = 0; i < pointers.length; i++) {
+        in.seek(pointers[i]);
+        int offset = (i + 1) * step;
+        byte[] b = in.readNBytes(100);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(random, offset, offset + 100), b));
+      }
+    }
+  }
+
+  @Test
+  public void testConcatenatedFiles() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    for (int i = 0; i < 2; i++) {
+      ByteArrayOutputStream part = new ByteArrayOutputStream();
+      try (QatBgzfOutputStream out = new QatBgzfOutputStream(part)) {
+        out.write(src);
+      }
+      compressed.write(part.toByteArray());
+    }
+    try (InputStream in =
+        new QatBgzfInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      byte[] result = in.readAllBytes();
+      assertEquals(2 * src.length, result.length);
+      assertTrue(Arrays.equals(src, Arrays.copyOfRange(result, src.length, result.length)));
+    }
+  }
+
+  @Test
+  public void testSeekWithoutChannel() throws IOException {
+    try (QatBgzfInputStream in = new QatBgzfInputStream(new ByteArrayInputStream(new byte[0]))) {
+      in.seek(0);
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+}
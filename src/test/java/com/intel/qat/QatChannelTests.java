@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class QatChannelTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+  private static byte[] src;
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    src = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+  }
+
+  public static Stream<Arguments> provideModeAlgorithmParams() {
+    return QatTestSuite.FORCE_HARDWARE
+        ? Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE),
+            Arguments.of(Mode.AUTO, Algorithm.LZ4),
+            Arguments.of(Mode.HARDWARE, Algorithm.DEFLATE),
+            Arguments.of(Mode.HARDWARE, Algorithm.LZ4))
+        : Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE), Arguments.of(Mode.AUTO, Algorithm.LZ4));
+  }
+
+  /** A sink that, like a non-blocking socket, takes at most a few bytes and sometimes none. */
+  private static final class TrickleChannel implements WritableByteChannel {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int calls;
+
+    @Override
+    public int write(ByteBuffer src) {
+      if (calls++ % 3 == 0) return 0;
+      int n = Math.min(src.remaining(), 700);
+      for (int i = 0; i < n; i++) bytes.write(src.get());
+      return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  /** A source that, like a non-blocking socket, returns a few bytes and sometimes none. */
+  private static final class TrickleSource implements ReadableByteChannel {
+    final ByteBuffer data;
+    int calls;
+
+    TrickleSource(byte[] data) {
+      this.data = ByteBuffer.wrap(data);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+      if (calls++ % 3 == 0) return 0;
+      if (!data.hasRemaining()) return -1;
+      int n = Math.min(Math.min(dst.remaining(), data.remaining()), 300);
+      for (int i = 0; i < n; i++) dst.put(data.get());
+      return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static ByteBuffer directCopy(byte[] b, int off, int len) {
+    ByteBuffer buf = ByteBuffer.allocateDirect(len);
+    buf.put(b, off, len).flip();
+    return buf;
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testGatheringWrite(Mode mode, Algorithm algo) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (QatCompressingChannel channel =
+        new QatCompressingChannel(
+            Channels.newChannel(compressed), 1024, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode)) {
+      ByteBuffer[] srcs = {
+        ByteBuffer.wrap(src, 0, 100), directCopy(src, 100, 3000), directCopy(src, 3100, 1833)
+      };
+      assertEquals(src.length, channel.write(srcs));
+    }
+
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try (QatDecompressingChannel channel =
+        new QatDecompressingChannel(
+            Channels.newChannel(new ByteArrayInputStream(compressed.toByteArray())),
+            1024,
+            algo,
+            mode)) {
+      ByteBuffer dst = ByteBuffer.allocateDirect(4096);
+      while (channel.read(dst) >= 0) {
+        dst.flip();
+        while (dst.hasRemaining()) result.write(dst.get());
+        dst.clear();
+      }
+    }
+    assertTrue(Arrays.equals(src, result.toByteArray()));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testNonBlockingChannels(Mode mode, Algorithm algo) throws IOException {
+    TrickleChannel sink = new TrickleChannel();
+    QatCompressingChannel compressor =
+        new QatCompressingChannel(sink, 512, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode);
+    ByteBuffer input = ByteBuffer.wrap(src);
+    while (input.hasRemaining()) compressor.write(input);
+    while (!compressor.flush())
+      ;
+    compressor.close();
+    assertFalse(compressor.isOpen());
+
+    TrickleSource source = new TrickleSource(sink.bytes.toByteArray());
+    QatDecompressingChannel decompressor = new QatDecompressingChannel(source, 512, algo, mode);
+    ByteBuffer result = ByteBuffer.allocate(src.length);
+    while (result.hasRemaining()) decompressor.read(result);
+    int read;
+    while ((read = decompressor.read(ByteBuffer.allocate(1))) == 0)
+      ;
+    assertEquals(-1, read);
+    decompressor.close();
+    assertTrue(Arrays.equals(src, result.array()));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testMemberLargerThanBuffer(Mode mode, Algorithm algo) throws IOException {
+    // Random data does not compress, so each member is larger than the buffers.
+    byte[] random = new byte[8 * 1024];
+    new Random(3).nextBytes(random);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (QatCompressingChannel channel =
+        new QatCompressingChannel(
+            Channels.newChannel(compressed), 1024, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode)) {
+      channel.write(ByteBuffer.wrap(random));
+    }
+
+    ByteBuffer result = ByteBuffer.allocate(random.length);
+    try (QatDecompressingChannel channel =
+        new QatDecompressingChannel(
+            Channels.newChannel(new ByteArrayInputStream(compressed.toByteArray())),
+            1024,
+            algo,
+            mode)) {
+      while (result.hasRemaining()) assertTrue(channel.read(result) > 0);
+      assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+    }
+    assertTrue(Arrays.equals(random, result.array()));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testTruncatedMember(Mode mode, Algorithm algo) throws IOException {
+    QatZipper qzip = new QatZipper(algo, mode);
+    byte[] compressed = new byte[qzip.maxCompressedLength(src.length)];
+    int compressedLength = qzip.compress(src, compressed);
+    qzip.end();
+
+    try (QatDecompressingChannel channel =
+        new QatDecompressingChannel(
+            Channels.newChannel(new ByteArrayInputStream(compressed, 0, compressedLength - 10)),
+            1024,
+            algo,
+            mode)) {
+      ByteBuffer dst = ByteBuffer.allocate(4096);
+      while (channel.read(dst) >= 0) dst.clear();
+      fail("Failed to catch EOFException");
+    } catch (EOFException e) {
+      assertTrue(true);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testCloseWithPendingOutput(Mode mode, Algorithm algo) throws IOException {
+    boolean[] sinkClosed = new boolean[1];
+    WritableByteChannel sink =
+        new WritableByteChannel() {
+          @Override
+          public int write(ByteBuffer src) {
+            return 0;
+          }
+
+          @Override
+          public boolean isOpen() {
+            return !sinkClosed[0];
+          }
+
+          @Override
+          public void close() {
+            sinkClosed[0] = true;
+          }
+        };
+    QatCompressingChannel channel =
+        new QatCompressingChannel(sink, 1024, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode);
+    channel.write(ByteBuffer.wrap(src, 0, 100));
+    try {
+      channel.close();
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+    assertFalse(channel.isOpen());
+    assertTrue(sinkClosed[0]);
+    channel.close();
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testWriteAfterClose(Mode mode, Algorithm algo) throws IOException {
+    QatCompressingChannel channel =
+        new QatCompressingChannel(
+            Channels.newChannel(new ByteArrayOutputStream()),
+            1024,
+            algo,
+            QatZipper.DEFAULT_COMPRESS_LEVEL,
+            mode);
+    channel.close();
+    try {
+      channel.write(ByteBuffer.wrap(src));
+      fail("Failed to catch ClosedChannelException");
+    } catch (ClosedChannelException e) {
+      assertTrue(true);
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class QatCompressingInputStreamTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+
+  private static byte[] src;
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    byte[] sample = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+    Random rnd = new Random(5);
+    src = new byte[1024 * 1024 + 777];
+    for (int i = 0; i < src.length; i += sample.length) {
+      System.arraycopy(sample, 0, src, i, Math.min(sample.length, src.length - i));
+      src[i] = (byte) rnd.nextInt();
+    }
+  }
+
+  public static Stream<Arguments> provideModeAlgorithmParams() {
+    return QatTestSuite.FORCE_HARDWARE
+        ? Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE),
+            Arguments.of(Mode.AUTO, Algorithm.LZ4),
+            Arguments.of(Mode.HARDWARE, Algorithm.DEFLATE),
+            Arguments.of(Mode.HARDWARE, Algorithm.LZ4))
+        : Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE), Arguments.of(Mode.AUTO, Algorithm.LZ4));
+  }
+
+  private static byte[] decompress(byte[] compressed, Algorithm algo, Mode mode)
+      throws IOException {
+    try (QatDecompressorInputStream in =
+        new QatDecompressorInputStream(
+            new ByteArrayInputStream(compressed), 16 * 1024, algo, mode)) {
+      return in.readAllBytes();
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testRoundTrip(Mode mode, Algorithm algo) throws IOException {
+    for (int readAhead : new int[] {0, 1, 3}) {
+      byte[] compressed;
+      try (QatCompressingInputStream in =
+          new QatCompressingInputStream(
+              new ByteArrayInputStream(src), 64 * 1024, algo, 6, mode, readAhead)) {
+        compressed = in.readAllBytes();
+        assertEquals(-1, in.read());
+        assertEquals(0, in.available());
+      }
+      assertTrue(compressed.length < src.length);
+      assertTrue(Arrays.equals(src, decompress(compressed, algo, mode)));
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testSmallReads(Mode mode, Algorithm algo) throws IOException {
+    byte[] data = Arrays.copyOf(src, 100 * 1024);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // A source that returns a few bytes at a time, as network streams do.
+    InputStream trickle =
+        new ByteArrayInputStream(data) {
+          @Override
+          public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1000));
+          }
+        };
+    try (QatCompressingInputStream in =
+        new QatCompressingInputStream(trickle, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode)) {
+      int b;
+      while ((b = in.read()) != -1) {
+        out.write(b);
+        byte[] chunk = new byte[7];
+        int n = in.read(chunk);
+        if (n > 0) out.write(chunk, 0, n);
+      }
+    }
+    assertTrue(Arrays.equals(data, decompress(out.toByteArray(), algo, mode)));
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    try (QatCompressingInputStream in =
+        new QatCompressingInputStream(new ByteArrayInputStream(new byte[0]))) {
+      assertEquals(-1, in.read(new byte[10]));
+      assertEquals(0, in.available());
+    }
+  }
+
+  @Test
+  public void testReadAfterClose() throws IOException {
+    QatCompressingInputStream in = new QatCompressingInputStream(new ByteArrayInputStream(src));
+    in.close();
+    in.close();
+    try {
+      in.read();
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testCloseInterruptedReadAhead() throws IOException {
+    AtomicBoolean reading = new AtomicBoolean();
+    InputStream source =
+        new ByteArrayInputStream(src) {
+          @Override
+          public synchronized int read(byte[] b, int off, int len) {
+            reading.set(true);
+            // Ignores interrupts, as a blocking read of a file does.
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            while (System.nanoTime() < deadline) Thread.onSpinWait();
+            reading.set(false);
+            return super.read(b, off, len);
+          }
+
+          @Override
+          public void close() {
+            assertFalse(reading.get());
+          }
+        };
+    QatCompressingInputStream in =
+        new QatCompressingInputStream(
+            source, 1024, Algorithm.DEFLATE, QatZipper.DEFAULT_COMPRESS_LEVEL, Mode.AUTO, 2);
+    assertTrue(in.read() >= 0);
+    while (!reading.get()) Thread.onSpinWait();
+    Thread.currentThread().interrupt();
+    try {
+      in.close();
+      fail("Failed to catch InterruptedIOException");
+    } catch (InterruptedIOException e) {
+      // The read-ahead thread has stopped, so the source is no longer read.
+    } finally {
+      assertTrue(Thread.interrupted());
+    }
+    assertFalse(reading.get());
+  }
+
+  @Test
+  public void testBadArguments() {
+    try {
+      new QatCompressingInputStream(
+          new ByteArrayInputStream(src), 0, Algorithm.DEFLATE, 6, Mode.AUTO, 0);
+      fail("Failed to catch IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+    try {
+      new QatCompressingInputStream(
+          new ByteArrayInputStream(src), 1024, Algorithm.DEFLATE, 6, Mode.AUTO, -1);
+      fail("Failed to catch IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+  }
+}
@@ -13,12 +13,18 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -209,6 +215,219 @@ public class QatCompressorOutputStreamTests {
     assertTrue(Arrays.equals(src, result));
   }
 
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testOutputStreamBlockMode(Mode mode, Algorithm algo) throws IOException {
+    qzip = new QatZipper(algo);
+    byte[] src = new byte[3 * 1024 * 1024 + 100];
+    for (int i = 0; i < src.length; i++) src[i] = (byte) (rnd.nextInt(16) + 'a');
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (QatCompressorOutputStream compressedStream =
+        new QatCompressorOutputStream(
+            outputStream, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode, true)) {
+      compressedStream.write(src);
+    }
+    byte[] outputStreamBuf = outputStream.toByteArray();
+    byte[] result = new byte[src.length];
+    int decompressedLen =
+        qzip.decompress(outputStreamBuf, 0, outputStreamBuf.length, result, 0, result.length);
+
+    assertEquals(src.length, decompressedLen);
+    assertTrue(Arrays.equals(src, result));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testOutputStreamDirectBuffersToFile(Mode mode, Algorithm algo) throws IOException {
+    qzip = new QatZipper(algo);
+    Path file = Files.createTempFile("qat-java", ".out");
+    try {
+      try (QatCompressorOutputStream compressedStream =
+          new QatCompressorOutputStream(
+              new FileOutputStream(file.toFile()),
+              16 * 1024,
+              algo,
+              QatZipper.DEFAULT_COMPRESS_LEVEL,
+              mode,
+              true)) {
+        for (int i = 0; i < 10; i++) compressedStream.write(src);
+      }
+      byte[] outputStreamBuf = Files.readAllBytes(file);
+      byte[] result = new byte[10 * src.length];
+      int decompressedLen =
+          qzip.decompress(outputStreamBuf, 0, outputStreamBuf.length, result, 0, result.length);
+
+      assertEquals(result.length, decompressedLen);
+      for (int i = 0; i < 10; i++)
+        assertTrue(
+            Arrays.equals(src, Arrays.copyOfRange(result, i * src.length, (i + 1) * src.length)));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testOutputStreamBadPipelineDepth() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try {
+      try (QatCompressorOutputStream compressedStream =
+          new QatCompressorOutputStream(
+              outputStream,
+              16 * 1024,
+              Algorithm.DEFLATE,
+              QatZipper.DEFAULT_COMPRESS_LEVEL,
+              Mode.AUTO,
+              false,
+              0)) {
+        fail("Failed to catch IllegalArgumentException");
+      }
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testOutputStreamPipelined(Mode mode, Algorithm algo) throws IOException {
+    qzip = new QatZipper(algo);
+    byte[] src = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (QatCompressorOutputStream compressedStream =
+        new QatCompressorOutputStream(
+            outputStream, 16 * 1024, algo, QatZipper.DEFAULT_COMPRESS_LEVEL, mode, false, 3)) {
+      int len = 0;
+      for (int i = 0; i < src.length; i += len) {
+        len = Math.min(rnd.nextInt(20 * 1024), src.length - i);
+        compressedStream.write(src, i, len);
+        if (i % 3 == 0) compressedStream.flush();
+      }
+    }
+    byte[] outputStreamBuf = outputStream.toByteArray();
+    byte[] result = new byte[src.length];
+    int decompressedLen =
+        qzip.decompress(outputStreamBuf, 0, outputStreamBuf.length, result, 0, result.length);
+
+    assertEquals(src.length, decompressedLen);
+    assertTrue(Arrays.equals(src, result));
+  }
+
+  @Test
+  public void testOutputStreamPipelinedFailedWrite() throws IOException {
+    boolean[] sinkClosed = new boolean[1];
+    OutputStream sink =
+        new OutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            throw new IOException("Sink failed");
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            throw new IOException("Sink failed");
+          }
+
+          @Override
+          public void close() {
+            sinkClosed[0] = true;
+          }
+        };
+    QatCompressorOutputStream compressedStream =
+        new QatCompressorOutputStream(
+            sink,
+            16 * 1024,
+            Algorithm.DEFLATE,
+            QatZipper.DEFAULT_COMPRESS_LEVEL,
+            Mode.AUTO,
+            false,
+            3);
+    compressedStream.write(new byte[1024]);
+    try {
+      compressedStream.close();
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertEquals("Sink failed", e.getMessage());
+    }
+    assertTrue(sinkClosed[0]);
+    compressedStream.close();
+  }
+
+  @Test
+  public void testOutputStreamPipelinedCloseInterrupted() throws IOException {
+    AtomicBoolean writing = new AtomicBoolean();
+    OutputStream sink =
+        new OutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            writing.set(true);
+            try {
+              Thread.sleep(100);
+            } catch (InterruptedException e) {
+              throw new InterruptedIOException();
+            } finally {
+              writing.set(false);
+            }
+          }
+
+          @Override
+          public void close() {
+            assertFalse(writing.get());
+          }
+        };
+    QatCompressorOutputStream compressedStream =
+        new QatCompressorOutputStream(
+            sink,
+            16 * 1024,
+            Algorithm.DEFLATE,
+            QatZipper.DEFAULT_COMPRESS_LEVEL,
+            Mode.AUTO,
+            false,
+            3);
+    compressedStream.write(new byte[64 * 1024]);
+    Thread.currentThread().interrupt();
+    try {
+      compressedStream.close();
+      fail("Failed to catch InterruptedIOException");
+    } catch (InterruptedIOException e) {
+      // The background threads have stopped, so the sink is no longer written to.
+    } finally {
+      assertTrue(Thread.interrupted());
+    }
+    assertFalse(writing.get());
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testOutputStreamFlushPolicy(Mode mode, Algorithm algo) throws IOException {
+    int[] flushes = new int[1];
+    ByteArrayOutputStream outputStream =
+        new ByteArrayOutputStream() {
+          @Override
+          public void flush() {
+            flushes[0]++;
+          }
+        };
+    try (QatCompressorOutputStream compressedStream =
+        new QatCompressorOutputStream(outputStream, 1024, algo, mode)) {
+      assertEquals(QatCompressorOutputStream.FlushPolicy.SYNC, compressedStream.getFlushPolicy());
+      compressedStream.write(src);
+      assertEquals(0, flushes[0]);
+      compressedStream.flush();
+      assertEquals(1, flushes[0]);
+
+      compressedStream.setFlushPolicy(QatCompressorOutputStream.FlushPolicy.NO_SINK_FLUSH);
+      int size = outputStream.size();
+      compressedStream.write(src, 0, 100);
+      compressedStream.flush();
+      assertEquals(1, flushes[0]);
+      assertTrue(outputStream.size() > size);
+    }
+  }
+
   @ParameterizedTest
   @MethodSource("provideModeAlgorithmLengthParams")
   public void testOutputStreamWriteAll3(Mode mode, Algorithm algo, int size) throws IOException {
@@ -440,4 +659,29 @@ public class QatCompressorOutputStreamTests {
       }
     }
   }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testOutputStreamPassthrough(Mode mode, Algorithm algo) throws IOException {
+    byte[] data = new byte[300 * 1024];
+    rnd.nextBytes(data);
+    System.arraycopy(src, 0, data, 0, src.length);
+    for (QatZipper.Passthrough passthrough : QatZipper.Passthrough.values()) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      try (QatCompressorOutputStream compressedStream =
+          new QatCompressorOutputStream(outputStream, 64 * 1024, algo, 6, mode, true, 2)) {
+        compressedStream.setPassthrough(passthrough);
+        assertEquals(passthrough, compressedStream.getPassthrough());
+        compressedStream.write(data);
+      }
+      byte[] compressed = outputStream.toByteArray();
+      if (passthrough != QatZipper.Passthrough.NONE)
+        assertTrue(compressed.length < data.length + data.length / 100);
+      try (QatDecompressorInputStream decompressedStream =
+          new QatDecompressorInputStream(
+              new ByteArrayInputStream(compressed), 16 * 1024, algo, mode)) {
+        assertTrue(Arrays.equals(data, decompressedStream.readAllBytes()));
+      }
+    }
+  }
 }
@@ -21,6 +21,7 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -321,6 +322,92 @@ public class QatDecompressorInputStreamTests {
     assertTrue(Arrays.equals(src, result));
   }
 
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmLengthParams")
+  public void testInputStreamReadAhead(Mode mode, Algorithm algo, int bufferSize)
+      throws IOException {
+    ByteArrayInputStream inputStream =
+        new ByteArrayInputStream(algo.equals(Algorithm.LZ4) ? lz4Bytes : deflateBytes);
+    byte[] result = new byte[src.length];
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(inputStream, bufferSize, algo, mode, 3, 4)) {
+      int i;
+      int len = 0;
+      for (i = 0; i < result.length; i += len) {
+        if (i % 10 == 0) { // doReadByte
+          len = 1;
+          result[i] = (byte) decompressedStream.read();
+        } else {
+          len = Math.min(rnd.nextInt(20 * 1024), result.length - i);
+          int read = decompressedStream.read(result, i, len);
+          assertEquals(len, read);
+        }
+      }
+      assertEquals(result.length, i);
+      assertEquals(-1, decompressedStream.read());
+      assertEquals(0, decompressedStream.available());
+    }
+    assertTrue(Arrays.equals(src, result));
+  }
+
+  @Test
+  public void testInputStreamReadAheadPlainGzip() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    outputStream.write(deflateBytes);
+    try (GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream)) {
+      gzipStream.write(src);
+    }
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(
+            inputStream, 16 * 1024, Algorithm.DEFLATE, Mode.AUTO, 2, 2)) {
+      byte[] result = decompressedStream.readAllBytes();
+      assertEquals(2 * src.length, result.length);
+      assertTrue(Arrays.equals(src, Arrays.copyOf(result, src.length)));
+      assertTrue(Arrays.equals(src, Arrays.copyOfRange(result, src.length, result.length)));
+    }
+  }
+
+  @Test
+  public void testInputStreamReadAheadSkippableFrame() throws IOException {
+    byte[] data = new byte[256 * 1024];
+    rnd.nextBytes(data);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (QatCompressorOutputStream compressedStream =
+        new QatCompressorOutputStream(outputStream, 64 * 1024, Algorithm.LZ4)) {
+      compressedStream.write(data);
+    }
+    // A skippable frame holding four bytes, after the last frame.
+    outputStream.write(new byte[] {0x50, 0x2A, 0x4D, 0x18, 4, 0, 0, 0, 1, 2, 3, 4});
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(inputStream, 16 * 1024, Algorithm.LZ4, Mode.AUTO, 2, 2)) {
+      assertTrue(Arrays.equals(data, decompressedStream.readAllBytes()));
+      assertEquals(-1, decompressedStream.read());
+    }
+  }
+
+  @Test
+  public void testInputStreamReadAheadManySkippableFrames() throws IOException {
+    byte[] data = new byte[64 * 1024];
+    rnd.nextBytes(data);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    // Skippable frames that fill a unit each and decompress to nothing, before the data.
+    byte[] skippable = new byte[256];
+    Gzip.writeInt(skippable, 0, Lz4.SKIPPABLE_MAGIC);
+    Gzip.writeInt(skippable, 4, skippable.length - 8);
+    for (int i = 0; i < 50000; i++) outputStream.write(skippable);
+    try (QatCompressorOutputStream compressedStream =
+        new QatCompressorOutputStream(outputStream, 16 * 1024, Algorithm.LZ4)) {
+      compressedStream.write(data);
+    }
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(inputStream, 256, Algorithm.LZ4, Mode.AUTO, 2, 2)) {
+      assertTrue(Arrays.equals(data, decompressedStream.readAllBytes()));
+    }
+  }
+
   @ParameterizedTest
   @MethodSource("provideModeAlgorithmLengthParams")
   public void testInputStreamReadAvailable(Mode mode, Algorithm algo, int bufferSize)
@@ -436,6 +523,36 @@ public class QatDecompressorInputStreamTests {
     assertTrue(Arrays.equals(src, result2));
   }
 
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testInputStreamSkipPastEnd(Mode mode, Algorithm algo) throws IOException {
+    ByteArrayInputStream inputStream =
+        new ByteArrayInputStream(algo.equals(Algorithm.LZ4) ? lz4Bytes : deflateBytes);
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(inputStream, 512, algo, mode)) {
+      assertEquals(src[0], (byte) decompressedStream.read());
+      assertEquals(src.length - 1, decompressedStream.skip(Integer.MAX_VALUE + 1L));
+      assertEquals(0, decompressedStream.skip(1));
+      assertEquals(-1, decompressedStream.read());
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testInputStreamLargeRead(Mode mode, Algorithm algo) throws IOException {
+    ByteArrayInputStream inputStream =
+        new ByteArrayInputStream(algo.equals(Algorithm.LZ4) ? lz4Bytes : deflateBytes);
+    byte[] result = new byte[src.length + 100];
+    int read = 0;
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(inputStream, 64, algo, mode)) {
+      for (int n; (n = decompressedStream.read(result, read, result.length - read)) > 0; )
+        read += n;
+    }
+    assertEquals(src.length, read);
+    assertTrue(Arrays.equals(src, Arrays.copyOf(result, read)));
+  }
+
   @ParameterizedTest
   @MethodSource("provideModeAlgorithmParams")
   public void testInputStreamSkipNegative(Mode mode, Algorithm algo) throws IOException {
@@ -556,4 +673,66 @@ public class QatDecompressorInputStreamTests {
     }
     assertTrue(Arrays.equals(src, result));
   }
+
+  @ParameterizedTest
+  @EnumSource(Mode.class)
+  public void testInputStreamDetectFormats(Mode mode) throws IOException {
+    if (mode == Mode.HARDWARE && !QatTestSuite.FORCE_HARDWARE) return;
+    ByteArrayOutputStream mixed = new ByteArrayOutputStream();
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    mixed.write(deflateBytes);
+    expected.write(src);
+    GZIPOutputStream gzip = new GZIPOutputStream(mixed);
+    gzip.write(src, 0, src.length / 2);
+    gzip.finish();
+    expected.write(src, 0, src.length / 2);
+    mixed.write(lz4Bytes);
+    expected.write(src);
+    mixed.write(src, 0, 1000);
+    expected.write(src, 0, 1000);
+    byte[] input = mixed.toByteArray();
+    for (int bufferSize : new int[] {1, 100, 16 * 1024, 1024 * 1024}) {
+      try (QatDecompressorInputStream decompressedStream =
+          new QatDecompressorInputStream(new ByteArrayInputStream(input), bufferSize, null, mode)) {
+        assertTrue(Arrays.equals(expected.toByteArray(), decompressedStream.readAllBytes()));
+      }
+    }
+  }
+
+  @Test
+  public void testInputStreamDetectRaw() throws IOException {
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(new ByteArrayInputStream(src), 64, null, Mode.AUTO)) {
+      assertTrue(Arrays.equals(src, decompressedStream.readAllBytes()));
+    }
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(
+            new ByteArrayInputStream(new byte[2]), 64, null, Mode.AUTO)) {
+      assertTrue(Arrays.equals(new byte[2], decompressedStream.readAllBytes()));
+    }
+  }
+
+  @Test
+  public void testInputStreamDetectTruncated() throws IOException {
+    byte[] truncated = Arrays.copyOf(deflateBytes, deflateBytes.length - 10);
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(
+            new ByteArrayInputStream(truncated), 16 * 1024, null, Mode.AUTO)) {
+      decompressedStream.readAllBytes();
+      fail("A truncated member should fail");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testInputStreamDetectWithSessions() {
+    try {
+      new QatDecompressorInputStream(
+          new ByteArrayInputStream(deflateBytes), 16 * 1024, null, Mode.AUTO, 2, 2);
+      fail("Detecting formats with read-ahead sessions should fail");
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+  }
 }
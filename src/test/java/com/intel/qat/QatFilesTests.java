@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class QatFilesTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+
+  private static byte[] src;
+  private Path source;
+  private Path compressed;
+  private Path decompressed;
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    byte[] sample = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+    Random rnd = new Random(7);
+    src = new byte[3 * 1024 * 1024 + 4321];
+    for (int i = 0; i < src.length; i += sample.length) {
+      System.arraycopy(sample, 0, src, i, Math.min(sample.length, src.length - i));
+      src[i] = (byte) rnd.nextInt();
+    }
+  }
+
+  @BeforeEach
+  public void createFiles() throws IOException {
+    source = Files.createTempFile("qat-files", ".in");
+    compressed = Files.createTempFile("qat-files", ".qz");
+    decompressed = Files.createTempFile("qat-files", ".out");
+  }
+
+  @AfterEach
+  public void deleteFiles() throws IOException {
+    Files.deleteIfExists(source);
+    Files.deleteIfExists(compressed);
+    Files.deleteIfExists(decompressed);
+  }
+
+  public static Stream<Arguments> provideModeAlgorithmParams() {
+    return QatTestSuite.FORCE_HARDWARE
+        ? Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE),
+            Arguments.of(Mode.AUTO, Algorithm.LZ4),
+            Arguments.of(Mode.HARDWARE, Algorithm.DEFLATE),
+            Arguments.of(Mode.HARDWARE, Algorithm.LZ4))
+        : Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE), Arguments.of(Mode.AUTO, Algorithm.LZ4));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testRoundTrip(Mode mode, Algorithm algo) throws IOException {
+    Files.write(source, src);
+    long size = QatFiles.compress(source, compressed, algo, 6, mode, 4);
+    assertEquals(Files.size(compressed), size);
+    assertTrue(size < src.length);
+
+    assertEquals(src.length, QatFiles.decompress(compressed, decompressed, algo, mode, 4));
+    assertTrue(Arrays.equals(src, Files.readAllBytes(decompressed)));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testReadableByStreams(Mode mode, Algorithm algo) throws IOException {
+    Files.write(source, src);
+    QatFiles.compress(source, compressed, algo, 6, mode, 1);
+    try (QatDecompressorInputStream in =
+        new QatDecompressorInputStream(Files.newInputStream(compressed), 16 * 1024, algo, mode)) {
+      assertTrue(Arrays.equals(src, in.readAllBytes()));
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testEmptyFile(Mode mode, Algorithm algo) throws IOException {
+    assertEquals(0, QatFiles.compress(source, compressed, algo, 6, mode, 2));
+    assertEquals(0, Files.size(compressed));
+    assertEquals(0, QatFiles.decompress(compressed, decompressed, algo, mode, 2));
+    assertEquals(0, Files.size(decompressed));
+  }
+
+  @Test
+  public void testDecompressPlainGzip() throws IOException {
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+      out.write(src);
+    }
+    assertEquals(src.length, QatFiles.decompress(compressed, decompressed));
+    assertTrue(Arrays.equals(src, Files.readAllBytes(decompressed)));
+  }
+
+  @Test
+  public void testSameFile() throws IOException {
+    Files.write(source, src);
+    try {
+      QatFiles.compress(source, source);
+      fail("Compressing a file onto itself should fail");
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+    assertEquals(src.length, Files.size(source));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testCompressTree(Mode mode, Algorithm algo) throws IOException {
+    Path root = Files.createTempDirectory("qat-tree");
+    Path target = Files.createTempDirectory("qat-tree-out");
+    try {
+      Map<Path, byte[]> contents = new HashMap<>();
+      contents.put(root.resolve("large.bin"), src);
+      contents.put(root.resolve("empty.txt"), new byte[0]);
+      for (int i = 0; i < 50; i++)
+        contents.put(
+            root.resolve("dir" + i % 3).resolve("small" + i + ".txt"),
+            Arrays.copyOf(src, 100 * i + 1));
+      for (Map.Entry<Path, byte[]> e : contents.entrySet()) {
+        Files.createDirectories(e.getKey().getParent());
+        Files.write(e.getKey(), e.getValue());
+      }
+
+      List<QatFiles.FileStats> reported = Collections.synchronizedList(new ArrayList<>());
+      QatFiles.TreeStats stats =
+          QatFiles.compressTree(
+              root,
+              target,
+              algo,
+              6,
+              mode,
+              4,
+              2,
+              1024 * 1024,
+              (file, progress) -> reported.add(file));
+      assertEquals(contents.size(), stats.files());
+      assertEquals(0, stats.failedFiles());
+      assertEquals(contents.size(), reported.size());
+
+      long total = 0;
+      for (QatFiles.FileStats file : reported) {
+        byte[] expected = contents.get(file.source());
+        assertEquals(expected.length, file.size());
+        assertEquals(Files.size(file.target()), file.compressedSize());
+        total += file.size();
+        try (QatDecompressorInputStream in =
+            new QatDecompressorInputStream(
+                Files.newInputStream(file.target()), 16 * 1024, algo, mode)) {
+          assertTrue(Arrays.equals(expected, in.readAllBytes()));
+        }
+      }
+      assertEquals(total, stats.bytesRead());
+    } finally {
+      deleteTree(root);
+      deleteTree(target);
+    }
+  }
+
+  @Test
+  public void testCompressTreeSkipsTarget() throws IOException {
+    Path root = Files.createTempDirectory("qat-tree");
+    try {
+      Files.write(root.resolve("a.txt"), src);
+      Path target = root.resolve("out");
+      assertEquals(1, QatFiles.compressTree(root, target).files());
+      assertEquals(1, QatFiles.compressTree(root, target).files());
+      assertTrue(Files.exists(target.resolve("a.txt.gz")));
+      assertTrue(!Files.exists(target.resolve("out")));
+    } finally {
+      deleteTree(root);
+    }
+  }
+
+  @Test
+  public void testSessionPoolCloseInterrupted() throws IOException, InterruptedException {
+    SessionPool pool =
+        new SessionPool(Algorithm.DEFLATE, QatZipper.DEFAULT_COMPRESS_LEVEL, Mode.AUTO, 1);
+    CountDownLatch started = new CountDownLatch(1);
+    byte[] dst = new byte[2 * src.length];
+    Future<QatZipper> result =
+        pool.submit(
+            qzip -> {
+              started.countDown();
+              // Ignores interrupts, as a native call does, and then uses its session.
+              long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+              while (System.nanoTime() < deadline) Thread.onSpinWait();
+              qzip.compress(src, dst);
+              return qzip;
+            });
+    started.await();
+    Thread.currentThread().interrupt();
+    try {
+      pool.close();
+      fail("Failed to catch InterruptedIOException");
+    } catch (InterruptedIOException e) {
+      // The session is ended once the task has finished with it.
+    } finally {
+      assertTrue(Thread.interrupted());
+    }
+    QatZipper qzip = SessionPool.get(result);
+    assertThrows(IllegalStateException.class, () -> qzip.compress(src, dst));
+  }
+
+  private static String getText() {
+    Random rnd = new Random(11);
+    StringBuilder sb = new StringBuilder();
+    String[] terminators = {"\n", "\r\n", "\r", "\n\n"};
+    while (sb.length() < 3 * 1024 * 1024) {
+      int len = rnd.nextInt(10) == 0 ? rnd.nextInt(200000) : rnd.nextInt(120);
+      for (int i = 0; i < len; i++) sb.append((char) ('a' + rnd.nextInt(26)));
+      if (rnd.nextInt(50) == 0) sb.append("\u00e9\u4e2d");
+      sb.append(terminators[rnd.nextInt(terminators.length)]);
+    }
+    sb.append("last line without a terminator");
+    return sb.toString();
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testLines(Mode mode, Algorithm algo) throws IOException {
+    String text = getText();
+    Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+    QatFiles.compress(source, compressed, algo, 6, mode, 4);
+    List<String> expected = Files.readAllLines(source, StandardCharsets.UTF_8);
+
+    try (Stream<String> lines = QatFiles.lines(compressed, StandardCharsets.UTF_8, algo, mode)) {
+      assertEquals(expected, lines.collect(Collectors.toList()));
+    }
+    try (Stream<String> lines = QatFiles.lines(compressed, StandardCharsets.UTF_8, algo, mode)) {
+      assertEquals(expected, lines.parallel().collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testLinesPlainGzip() throws IOException {
+    String text = getText();
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+      out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+    Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+    List<String> expected = Files.readAllLines(source, StandardCharsets.UTF_8);
+    try (Stream<String> lines = QatFiles.lines(compressed)) {
+      assertEquals(expected, lines.parallel().collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testLinesUtf16() throws IOException {
+    String text = "first\nsecond\r\nthird \u4e2d";
+    Files.write(source, text.getBytes(StandardCharsets.UTF_16));
+    QatFiles.compress(source, compressed);
+    try (Stream<String> lines = QatFiles.lines(compressed, StandardCharsets.UTF_16)) {
+      assertEquals(
+          Arrays.asList("first", "second", "third \u4e2d"),
+          lines.parallel().collect(Collectors.toList()));
+    }
+  }
+
+  private static void deleteTree(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+        Files.delete(p);
+    }
+  }
+}
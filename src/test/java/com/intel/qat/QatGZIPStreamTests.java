@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class QatGZIPStreamTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+  private static byte[] src;
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    src = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+  }
+
+  @Test
+  public void testOutputReadableByGZIPInputStream() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new QatGZIPOutputStream(compressed)) {
+      for (int i = 0; i < 100; i++) out.write(src);
+    }
+    try (GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      byte[] result = in.readAllBytes();
+      assertEquals(100 * src.length, result.length);
+      for (int i = 0; i < 100; i++)
+        assertTrue(
+            Arrays.equals(src, Arrays.copyOfRange(result, i * src.length, (i + 1) * src.length)));
+    }
+  }
+
+  @Test
+  public void testReadMultiMemberGzip() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    for (int i = 0; i < 3; i++) {
+      GZIPOutputStream out = new GZIPOutputStream(compressed);
+      out.write(src);
+      out.finish();
+    }
+    try (GZIPInputStream in =
+        new QatGZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()), 1024)) {
+      byte[] result = in.readAllBytes();
+      assertEquals(3 * src.length, result.length);
+      assertTrue(Arrays.equals(src, Arrays.copyOfRange(result, 2 * src.length, result.length)));
+      assertEquals(0, in.available());
+    }
+  }
+
+  @Test
+  public void testEmptyStream() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    new QatGZIPOutputStream(compressed).close();
+    try (GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertEquals(-1, in.read());
+    }
+    try (GZIPInputStream in =
+        new QatGZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertEquals(-1, in.read());
+    }
+  }
+
+  @Test
+  public void testSyncFlush() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (QatGZIPOutputStream out = new QatGZIPOutputStream(compressed, true)) {
+      out.write(src);
+      out.flush();
+      try (GZIPInputStream in =
+          new QatGZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+        assertTrue(Arrays.equals(src, in.readAllBytes()));
+      }
+    }
+  }
+
+  @Test
+  public void testWriteAfterFinish() throws IOException {
+    QatGZIPOutputStream out = new QatGZIPOutputStream(new ByteArrayOutputStream());
+    out.finish();
+    try {
+      out.write(src);
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+    out.close();
+  }
+
+  @Test
+  public void testCloseClosesOutputWhenWriteFails() throws IOException {
+    AtomicBoolean outClosed = new AtomicBoolean();
+    OutputStream failing =
+        new OutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            throw new IOException("write failed");
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            throw new IOException("write failed");
+          }
+
+          @Override
+          public void close() {
+            outClosed.set(true);
+          }
+        };
+    QatGZIPOutputStream out = new QatGZIPOutputStream(failing);
+    out.write(src);
+    try {
+      out.close();
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+    assertTrue(outClosed.get());
+    out.close();
+  }
+
+  @Test
+  public void testBadBufferSize() throws IOException {
+    try {
+      new QatGZIPOutputStream(new ByteArrayOutputStream(), 0);
+      fail("Failed to catch IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class QatGzipIndexTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+  private static final long SPAN = 128 * 1024;
+
+  private static byte[] src;
+  private Path file;
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    byte[] sample = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+    Random rnd = new Random(7);
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    while (data.size() < 2 * 1024 * 1024) {
+      int off = rnd.nextInt(sample.length);
+      data.write(sample, off, Math.min(sample.length - off, rnd.nextInt(100)));
+      data.write(rnd.nextInt(256));
+    }
+    src = data.toByteArray();
+  }
+
+  @BeforeEach
+  public void createFile() throws IOException {
+    file = Files.createTempFile("qat-gzip-index", ".gz");
+  }
+
+  @AfterEach
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private static byte[] gzip(byte[] data, int level) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream out =
+        new GZIPOutputStream(compressed) {
+          {
+            def.setLevel(level);
+          }
+        }) {
+      out.write(data);
+    }
+    return compressed.toByteArray();
+  }
+
+  private void checkRandomReads(QatGzipIndex index) throws IOException {
+    Random rnd = new Random(11);
+    for (int i = 0; i < 20; i++) {
+      int offset = rnd.nextInt(src.length);
+      try (InputStream in = index.open(FileChannel.open(file, StandardOpenOption.READ), offset)) {
+        byte[] b = in.readNBytes(1000);
+        assertTrue(
+            Arrays.equals(Arrays.copyOfRange(src, offset, Math.min(src.length, offset + 1000)), b));
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION})
+  public void testSingleMember(int level) throws IOException {
+    Files.write(file, gzip(src, level));
+    QatGzipIndex index;
+    try (InputStream in = Files.newInputStream(file)) {
+      index = QatGzipIndex.build(in, SPAN);
+    }
+    assertEquals(src.length, index.length());
+    assertTrue(index.size() > 1);
+    checkRandomReads(index);
+  }
+
+  @Test
+  public void testMultiMember() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    int half = src.length / 2;
+    compressed.write(gzip(Arrays.copyOfRange(src, 0, half), 6));
+    compressed.write(gzip(Arrays.copyOfRange(src, half, src.length), 6));
+    Files.write(file, compressed.toByteArray());
+    QatGzipIndex index =
+        QatGzipIndex.build(new ByteArrayInputStream(compressed.toByteArray()), SPAN);
+    assertEquals(src.length, index.length());
+    checkRandomReads(index);
+    try (InputStream in = index.open(FileChannel.open(file, StandardOpenOption.READ), 10)) {
+      assertTrue(Arrays.equals(Arrays.copyOfRange(src, 10, src.length), in.readAllBytes()));
+    }
+  }
+
+  @Test
+  public void testLongHeaders() throws IOException {
+    // Members whose headers carry a file name longer than a read-ahead chunk.
+    byte[] name = new byte[100 * 1024];
+    Arrays.fill(name, (byte) 'a');
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    int half = src.length / 2;
+    byte[][] parts = {Arrays.copyOfRange(src, 0, half), Arrays.copyOfRange(src, half, src.length)};
+    for (byte[] part : parts) {
+      byte[] member = gzip(part, 6);
+      member[3] |= 0x08; // FNAME
+      compressed.write(member, 0, 10);
+      compressed.write(name);
+      compressed.write(0);
+      compressed.write(member, 10, member.length - 10);
+    }
+    Files.write(file, compressed.toByteArray());
+    QatGzipIndex index =
+        QatGzipIndex.build(new ByteArrayInputStream(compressed.toByteArray()), SPAN);
+    assertEquals(src.length, index.length());
+    checkRandomReads(index);
+  }
+
+  @Test
+  public void testWriteAndReadIndex() throws IOException {
+    Files.write(file, gzip(src, 6));
+    QatGzipIndex index;
+    try (InputStream in = Files.newInputStream(file)) {
+      index = QatGzipIndex.build(in, SPAN);
+    }
+    ByteArrayOutputStream sidecar = new ByteArrayOutputStream();
+    index.writeTo(sidecar);
+    QatGzipIndex copy = QatGzipIndex.readFrom(new ByteArrayInputStream(sidecar.toByteArray()));
+    assertEquals(index.size(), copy.size());
+    assertEquals(index.length(), copy.length());
+    checkRandomReads(copy);
+  }
+
+  @Test
+  public void testNotGzip() throws IOException {
+    try {
+      QatGzipIndex.build(new ByteArrayInputStream(src));
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+}
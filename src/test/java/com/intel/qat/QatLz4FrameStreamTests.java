@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class QatLz4FrameStreamTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+
+  /** The output of <code>lz4</code> for empty input. */
+  private static final byte[] EMPTY_FRAME = {
+    0x04, 0x22, 0x4D, 0x18, 0x64, 0x40, (byte) 0xA7, 0, 0, 0, 0, 0x05, 0x5D, (byte) 0xCC, 0x02
+  };
+
+  private static byte[] src;
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    byte[] sample = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+    src = new byte[300 * 1024];
+    for (int i = 0; i < src.length; i += sample.length)
+      System.arraycopy(sample, 0, src, i, Math.min(sample.length, src.length - i));
+  }
+
+  public static Stream<Arguments> provideModeFrameParams() {
+    Stream<Arguments> auto =
+        Stream.of(
+            Arguments.of(Mode.AUTO, 64 * 1024, false, true, false),
+            Arguments.of(Mode.AUTO, 256 * 1024, true, true, true),
+            Arguments.of(Mode.AUTO, 4 * 1024 * 1024, true, false, true),
+            Arguments.of(Mode.AUTO, 1024 * 1024, false, false, false));
+    return QatTestSuite.FORCE_HARDWARE
+        ? Stream.concat(
+            auto,
+            Stream.of(
+                Arguments.of(Mode.HARDWARE, 64 * 1024, false, true, false),
+                Arguments.of(Mode.HARDWARE, 256 * 1024, true, true, true)))
+        : auto;
+  }
+
+  @Test
+  public void testEmptyFrame() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    new QatLz4FrameOutputStream(compressed).close();
+    assertTrue(Arrays.equals(EMPTY_FRAME, compressed.toByteArray()));
+    try (InputStream in = new QatLz4FrameInputStream(new ByteArrayInputStream(EMPTY_FRAME))) {
+      assertEquals(-1, in.read());
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeFrameParams")
+  public void testRoundTrip(
+      Mode mode,
+      int blockSize,
+      boolean blockChecksum,
+      boolean contentChecksum,
+      boolean withContentSize)
+      throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    long contentSize = withContentSize ? src.length : -1;
+    try (QatLz4FrameOutputStream out =
+        new QatLz4FrameOutputStream(
+            compressed, blockSize, blockChecksum, contentChecksum, contentSize, 6, mode)) {
+      out.write(src, 0, 1000);
+      out.flush();
+      out.write(src, 1000, src.length - 1000);
+    }
+    byte[] frame = compressed.toByteArray();
+    assertEquals(Lz4.MAGIC, Gzip.readInt(frame, 0));
+    assertEquals(Lz4.blockDescriptor(blockSize), frame[5] & 0xFF);
+    if (withContentSize) assertEquals(src.length, Gzip.readInt(frame, 6));
+    try (InputStream in = new QatLz4FrameInputStream(new ByteArrayInputStream(frame), 1000)) {
+      assertTrue(Arrays.equals(src, in.readAllBytes()));
+    }
+  }
+
+  /**
+   * Frames of the test data as written by liblz4 1.9.4, with the preferences the <code>lz4</code>
+   * tool uses for the options in each file name. The tool defaults to independent blocks; {@code
+   * -BD} links them, so later blocks refer to data in earlier ones.
+   */
+  public static Stream<Arguments> provideLz4ToolFrames() {
+    return Stream.of(
+        Arguments.of("B4.lz4", true, false, false),
+        Arguments.of("B4-BD.lz4", false, false, false),
+        Arguments.of("B4-BD-BX-content-size.lz4", false, true, true));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideLz4ToolFrames")
+  public void testReadLz4ToolFrame(
+      String name, boolean independent, boolean blockChecksum, boolean withContentSize)
+      throws IOException {
+    byte[] frame = Files.readAllBytes(Paths.get("src/test/resources/lz4", name));
+    int flg = frame[4] & 0xFF;
+    assertEquals(independent, (flg & Lz4.FLG_BLOCK_INDEPENDENCE) != 0);
+    assertEquals(blockChecksum, (flg & Lz4.FLG_BLOCK_CHECKSUM) != 0);
+    assertEquals(withContentSize, (flg & Lz4.FLG_CONTENT_SIZE) != 0);
+    assertEquals(Lz4.blockDescriptor(64 * 1024), frame[5] & 0xFF);
+    try (InputStream in = new QatLz4FrameInputStream(new ByteArrayInputStream(frame), 1000)) {
+      assertTrue(Arrays.equals(src, in.readAllBytes()));
+    }
+  }
+
+  @Test
+  public void testReadQatCompressorOutput() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (QatCompressorOutputStream out =
+        new QatCompressorOutputStream(compressed, 16 * 1024, Algorithm.LZ4)) {
+      out.write(src);
+    }
+    try (InputStream in =
+        new QatLz4FrameInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertTrue(Arrays.equals(src, in.readAllBytes()));
+    }
+  }
+
+  @Test
+  public void testBlockChecksumMismatch() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (QatLz4FrameOutputStream out =
+        new QatLz4FrameOutputStream(compressed, 64 * 1024, true, false, -1)) {
+      out.write(src);
+    }
+    byte[] frame = compressed.toByteArray();
+    frame[20] ^= 1;
+    try (InputStream in = new QatLz4FrameInputStream(new ByteArrayInputStream(frame))) {
+      in.readAllBytes();
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testTruncatedFrame() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (QatLz4FrameOutputStream out = new QatLz4FrameOutputStream(compressed)) {
+      out.write(src);
+    }
+    byte[] frame = compressed.toByteArray();
+    try (InputStream in =
+        new QatLz4FrameInputStream(
+            new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 2)))) {
+      in.readAllBytes();
+      fail("Failed to catch EOFException");
+    } catch (EOFException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testContentSizeMismatch() throws IOException {
+    QatLz4FrameOutputStream out =
+        new QatLz4FrameOutputStream(new ByteArrayOutputStream(), src.length + 1);
+    out.write(src);
+    try {
+      out.close();
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testBadBlockSize() {
+    try {
+      new QatLz4FrameOutputStream(new ByteArrayOutputStream(), 100 * 1024, false, true, -1);
+      fail("Failed to catch IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class QatSeekableTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+  private static final int BLOCK_SIZE = 16 * 1024;
+
+  private static byte[] src;
+  private Path file;
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    byte[] sample = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+    src = new byte[10 * BLOCK_SIZE + 1234];
+    for (int i = 0; i < src.length; i += sample.length)
+      System.arraycopy(sample, 0, src, i, Math.min(sample.length, src.length - i));
+  }
+
+  @BeforeEach
+  public void createFile() throws IOException {
+    file = Files.createTempFile("qat-seekable", ".qs");
+  }
+
+  @AfterEach
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  public static Stream<Arguments> provideModeAlgorithmParams() {
+    return QatTestSuite.FORCE_HARDWARE
+        ? Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE),
+            Arguments.of(Mode.AUTO, Algorithm.LZ4),
+            Arguments.of(Mode.HARDWARE, Algorithm.DEFLATE),
+            Arguments.of(Mode.HARDWARE, Algorithm.LZ4))
+        : Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE), Arguments.of(Mode.AUTO, Algorithm.LZ4));
+  }
+
+  private void writeContainer(byte[] data, Algorithm algorithm, Mode mode) throws IOException {
+    try (OutputStream out =
+        new QatSeekableOutputStream(Files.newOutputStream(file), BLOCK_SIZE, algorithm, 6, mode)) {
+      out.write(data, 0, 100);
+      out.flush();
+      out.write(data, 100, data.length - 100);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testRandomReads(Mode mode, Algorithm algorithm) throws IOException {
+    writeContainer(src, algorithm, mode);
+    Random rnd = new Random(42);
+    try (QatSeekableChannel channel =
+        new QatSeekableChannel(FileChannel.open(file, StandardOpenOption.READ), mode, 2)) {
+      assertEquals(src.length, channel.size());
+      for (int i = 0; i < 50; i++) {
+        int pos = rnd.nextInt(src.length);
+        ByteBuffer dst = ByteBuffer.allocate(4096);
+        channel.position(pos);
+        int n = channel.read(dst);
+        assertEquals(Math.min(4096, src.length - pos), n);
+        assertEquals(pos + n, channel.position());
+        assertTrue(
+            Arrays.equals(Arrays.copyOfRange(src, pos, pos + n), Arrays.copyOf(dst.array(), n)));
+      }
+    }
+  }
+
+  @Test
+  public void testReadAll() throws IOException {
+    writeContainer(src, Algorithm.DEFLATE, Mode.AUTO);
+    try (QatSeekableChannel channel =
+        new QatSeekableChannel(FileChannel.open(file, StandardOpenOption.READ))) {
+      ByteBuffer dst = ByteBuffer.allocateDirect(src.length + 10);
+      assertEquals(src.length, channel.read(dst));
+      assertEquals(-1, channel.read(dst));
+      dst.flip();
+      byte[] result = new byte[dst.remaining()];
+      dst.get(result);
+      assertTrue(Arrays.equals(src, result));
+      channel.position(src.length + 100);
+      assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+    }
+  }
+
+  @Test
+  public void testEmptyContainer() throws IOException {
+    new QatSeekableOutputStream(Files.newOutputStream(file)).close();
+    try (QatSeekableChannel channel =
+        new QatSeekableChannel(FileChannel.open(file, StandardOpenOption.READ))) {
+      assertEquals(0, channel.size());
+      assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+    }
+  }
+
+  @Test
+  public void testNotAContainer() throws IOException {
+    Files.write(file, src);
+    try {
+      new QatSeekableChannel(FileChannel.open(file, StandardOpenOption.READ));
+      fail("Failed to catch IOException");
+    } catch (IOException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testCorruptBlock() throws IOException {
+    writeContainer(src, Algorithm.DEFLATE, Mode.AUTO);
+    byte[] container = Files.readAllBytes(file);
+    container[30] ^= (byte) 0xFF;
+    Files.write(file, container);
+    try (QatSeekableChannel channel =
+        new QatSeekableChannel(FileChannel.open(file, StandardOpenOption.READ))) {
+      try {
+        channel.read(ByteBuffer.allocate(10));
+        fail("Failed to catch IOException");
+      } catch (IOException e) {
+        assertTrue(true);
+      }
+      ByteBuffer dst = ByteBuffer.allocate(10);
+      channel.position(5 * BLOCK_SIZE);
+      channel.read(dst);
+      assertTrue(
+          Arrays.equals(Arrays.copyOfRange(src, 5 * BLOCK_SIZE, 5 * BLOCK_SIZE + 10), dst.array()));
+    }
+  }
+
+  @Test
+  public void testReadOnly() throws IOException {
+    writeContainer(src, Algorithm.DEFLATE, Mode.AUTO);
+    try (QatSeekableChannel channel =
+        new QatSeekableChannel(FileChannel.open(file, StandardOpenOption.READ))) {
+      channel.write(ByteBuffer.allocate(1));
+      fail("Failed to catch NonWritableChannelException");
+    } catch (NonWritableChannelException e) {
+      assertTrue(true);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (C) 2023 Intel Corporation
+ *
+ * SPDX-License-Identifier: BSD
+ ******************************************************************************/
+
+package com.intel.qat;
+
+import static com.intel.qat.QatZipper.Algorithm;
+import static com.intel.qat.QatZipper.Mode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class QatStreamsTests {
+  private static final String SAMPLE_TEXT_PATH = "src/test/resources/sample.txt";
+  private static byte[] src;
+
+  private Random rnd = new Random();
+
+  @BeforeAll
+  public static void setup() throws IOException {
+    src = Files.readAllBytes(Paths.get(SAMPLE_TEXT_PATH));
+  }
+
+  public static Stream<Arguments> provideModeAlgorithmParams() {
+    return QatTestSuite.FORCE_HARDWARE
+        ? Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE),
+            Arguments.of(Mode.AUTO, Algorithm.LZ4),
+            Arguments.of(Mode.HARDWARE, Algorithm.DEFLATE),
+            Arguments.of(Mode.HARDWARE, Algorithm.LZ4))
+        : Stream.of(
+            Arguments.of(Mode.AUTO, Algorithm.DEFLATE), Arguments.of(Mode.AUTO, Algorithm.LZ4));
+  }
+
+  private byte[] getLargeInput() {
+    byte[] input = new byte[3 * 1024 * 1024 + 100];
+    for (int i = 0; i < input.length; i++) input[i] = (byte) (rnd.nextInt(16) + 'a');
+    return input;
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testCompressTransferTo(Mode mode, Algorithm algo) throws IOException {
+    byte[] input = getLargeInput();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    long read =
+        QatStreams.compress(
+            new ByteArrayInputStream(input),
+            compressed,
+            algo,
+            QatZipper.DEFAULT_COMPRESS_LEVEL,
+            mode);
+    assertEquals(input.length, read);
+
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try (QatDecompressorInputStream decompressedStream =
+        new QatDecompressorInputStream(
+            new ByteArrayInputStream(compressed.toByteArray()), 16 * 1024, algo, mode)) {
+      decompressedStream.read();
+      assertEquals(input.length - 1, decompressedStream.transferTo(result));
+    }
+    assertTrue(Arrays.equals(Arrays.copyOfRange(input, 1, input.length), result.toByteArray()));
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testCompressFiles(Mode mode, Algorithm algo) throws IOException {
+    Path source = Files.createTempFile("qat-java", ".in");
+    Path target = Files.createTempFile("qat-java", ".out");
+    try {
+      Files.write(source, src);
+      try (FileInputStream in = new FileInputStream(source.toFile());
+          FileOutputStream out = new FileOutputStream(target.toFile())) {
+        assertEquals(src.length, QatStreams.compress(in, out, algo, 1, mode));
+      }
+      try (QatDecompressorInputStream decompressedStream =
+          new QatDecompressorInputStream(
+              new FileInputStream(target.toFile()), 16 * 1024, algo, mode, 2, 2)) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        assertEquals(src.length, decompressedStream.transferTo(result));
+        assertTrue(Arrays.equals(src, result.toByteArray()));
+      }
+    } finally {
+      Files.delete(source);
+      Files.delete(target);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testCompressEmpty(Mode mode, Algorithm algo) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    long read =
+        QatStreams.compress(
+            new ByteArrayInputStream(new byte[0]),
+            compressed,
+            algo,
+            QatZipper.DEFAULT_COMPRESS_LEVEL,
+            mode);
+    assertEquals(0, read);
+    assertEquals(0, compressed.size());
+  }
+}
@@ -8,7 +8,9 @@ package com.intel.qat;
 
 import static com.intel.qat.QatZipper.Algorithm;
 import static com.intel.qat.QatZipper.Mode;
+import static com.intel.qat.QatZipper.Passthrough;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -107,6 +109,11 @@ public class QatZipperTests {
     return Files.readAllBytes(Path.of(fileName));
   }
 
+  private byte[] compressAll(QatZipper qzip, byte[] src) {
+    byte[] dst = new byte[qzip.maxCompressedLength(src.length)];
+    return Arrays.copyOf(dst, qzip.compress(src, dst));
+  }
+
   @AfterEach
   public void cleanupSession() {
     if (qzip != null) qzip.end();
@@ -635,6 +642,50 @@ public class QatZipperTests {
     }
   }
 
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmLengthParams")
+  public void testReadOnlyHeapSrcDirectDst(Mode mode, Algorithm algo, int len) {
+    try {
+      qzip = new QatZipper(algo, mode);
+
+      byte[] src = getRandomBytes(len);
+      byte[] dec = new byte[src.length];
+
+      ByteBuffer srcBuf = ByteBuffer.wrap(src).asReadOnlyBuffer();
+      ByteBuffer dstBuf = ByteBuffer.allocateDirect(qzip.maxCompressedLength(src.length));
+      ByteBuffer decBuf = ByteBuffer.allocateDirect(src.length);
+
+      // Repeat to exercise reuse of the session's staging buffer.
+      for (int i = 0; i < 3; i++) {
+        srcBuf.rewind();
+        dstBuf.clear();
+        decBuf.clear();
+
+        int compressedSize = qzip.compress(srcBuf, dstBuf);
+        assertTrue(compressedSize > 0);
+        assertEquals(src.length, srcBuf.position());
+        assertEquals(compressedSize, dstBuf.position());
+
+        ByteBuffer compressed = ByteBuffer.allocate(compressedSize);
+        dstBuf.flip();
+        compressed.put(dstBuf);
+        compressed.flip();
+
+        int decompressedSize = qzip.decompress(compressed.asReadOnlyBuffer(), decBuf);
+        assertEquals(src.length, decompressedSize);
+
+        decBuf.flip();
+        decBuf.get(dec);
+        assertTrue(Arrays.equals(src, dec));
+      }
+    } catch (QatException
+        | IllegalStateException
+        | IllegalArgumentException
+        | ReadOnlyBufferException e) {
+      fail(e.getMessage());
+    }
+  }
+
   @ParameterizedTest
   @MethodSource("provideModeAlgorithmLengthParams")
   public void testCompressionDecompressionWithByteArray(Mode mode, Algorithm algo, int len) {
@@ -833,6 +884,122 @@ public class QatZipperTests {
     }
   }
 
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmLengthParams")
+  public void testReconfigureLevel(Mode mode, Algorithm algo, int len) {
+    try {
+      qzip = new QatZipper(algo, 1, mode);
+
+      byte[] src = getRandomBytes(len);
+      byte[] dst = new byte[qzip.maxCompressedLength(src.length)];
+      byte[] dec = new byte[src.length];
+
+      for (int level : new int[] {1, 9, 6}) {
+        qzip.reconfigure(level);
+        int compressedSize = qzip.compress(src, dst);
+        assertTrue(compressedSize > 0);
+
+        int decompressedSize = qzip.decompress(dst, 0, compressedSize, dec, 0, dec.length);
+        assertEquals(src.length, decompressedSize);
+        assertTrue(Arrays.equals(src, dec));
+      }
+
+      // A reconfigured session compresses as a new session at the same level does.
+      byte[] text = readAllBytes(SAMPLE_TEXT_PATH);
+      qzip.reconfigure(1);
+      byte[] fast = compressAll(qzip, text);
+      qzip.reconfigure(9);
+      byte[] best = compressAll(qzip, text);
+      for (int level : new int[] {1, 9}) {
+        QatZipper fresh = new QatZipper(algo, level, mode);
+        try {
+          assertTrue(Arrays.equals(compressAll(fresh, text), level == 1 ? fast : best));
+        } finally {
+          fresh.end();
+        }
+      }
+      if (algo == Algorithm.DEFLATE) assertFalse(Arrays.equals(fast, best));
+    } catch (QatException | IllegalStateException | IllegalArgumentException | IOException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(Mode.class)
+  public void testReconfigureAlgorithm(Mode mode) {
+    assumeTrue(mode == Mode.AUTO || QatTestSuite.FORCE_HARDWARE);
+    try {
+      qzip = new QatZipper(Algorithm.DEFLATE, mode);
+
+      byte[] src = readAllBytes(SAMPLE_TEXT_PATH);
+      byte[] dec = new byte[src.length];
+
+      for (Algorithm algo : new Algorithm[] {Algorithm.LZ4, Algorithm.DEFLATE}) {
+        qzip.reconfigure(algo, QatZipper.DEFAULT_COMPRESS_LEVEL);
+        byte[] dst = new byte[qzip.maxCompressedLength(src.length)];
+        int compressedSize = qzip.compress(src, dst);
+
+        QatZipper verifier = new QatZipper(algo, mode);
+        int decompressedSize = verifier.decompress(dst, 0, compressedSize, dec, 0, dec.length);
+        verifier.end();
+
+        assertEquals(src.length, decompressedSize);
+        assertTrue(Arrays.equals(src, dec));
+      }
+    } catch (QatException | IllegalStateException | IllegalArgumentException | IOException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testReconfigureInvalidLevel() {
+    qzip = new QatZipper(Mode.AUTO);
+    try {
+      qzip.reconfigure(10);
+      fail("Failed to catch IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+  }
+
+  @Test
+  public void testReconfigureAfterEnd() {
+    QatZipper qzip = new QatZipper(Mode.AUTO);
+    qzip.end();
+    try {
+      qzip.reconfigure(1);
+      fail("Failed to catch IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertTrue(true);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testSessionCheckpointRestore(Mode mode, Algorithm algo) {
+    try {
+      qzip = new QatZipper(algo, mode);
+      assumeTrue(qzip.session instanceof QatEngine.QatSession);
+      QatEngine.SessionResource resource =
+          new QatEngine.SessionResource((QatEngine.QatSession) qzip.session);
+
+      byte[] src = readAllBytes(SAMPLE_TEXT_PATH);
+      byte[] dst = new byte[qzip.maxCompressedLength(src.length)];
+      byte[] dec = new byte[src.length];
+
+      resource.beforeCheckpoint(null);
+      resource.afterRestore(null);
+
+      int compressedSize = qzip.compress(src, dst);
+      int decompressedSize = qzip.decompress(dst, 0, compressedSize, dec, 0, dec.length);
+
+      assertEquals(src.length, decompressedSize);
+      assertTrue(Arrays.equals(src, dec));
+    } catch (QatException | IllegalStateException | IOException e) {
+      fail(e.getMessage());
+    }
+  }
+
   @ParameterizedTest
   @MethodSource("provideModeAlgorithmLengthParams")
   public void testIllegalStateException(Mode mode, Algorithm algo, int len) {
@@ -1146,4 +1313,85 @@ public class QatZipperTests {
       assertTrue(true);
     }
   }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testPassthroughIncompressible(Mode mode, Algorithm algo) {
+    try {
+      qzip = new QatZipper(algo, mode);
+      assertEquals(Passthrough.NONE, qzip.getPassthrough());
+      byte[] src = getRandomBytes(200 * 1024);
+      for (Passthrough passthrough : new Passthrough[] {Passthrough.RESULT, Passthrough.SAMPLE}) {
+        qzip.setPassthrough(passthrough);
+        byte[] dst = new byte[qzip.maxCompressedLength(src.length)];
+        int compressedSize = qzip.compress(src, 0, src.length, dst, 0, dst.length);
+        assertTrue(compressedSize < src.length + src.length / 100);
+
+        byte[] dec = new byte[src.length];
+        assertEquals(src.length, qzip.decompress(dst, 0, compressedSize, dec, 0, dec.length));
+        assertTrue(Arrays.equals(src, dec));
+
+        ByteBuffer srcBuffer = ByteBuffer.allocateDirect(src.length);
+        srcBuffer.put(src).flip();
+        ByteBuffer dstBuffer = ByteBuffer.allocateDirect(dst.length);
+        assertEquals(compressedSize, qzip.compress(srcBuffer, dstBuffer));
+        assertEquals(src.length, srcBuffer.position());
+        assertEquals(compressedSize, dstBuffer.position());
+      }
+    } catch (QatException | IllegalArgumentException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testPassthroughCompressible(Mode mode, Algorithm algo) throws IOException {
+    try {
+      qzip = new QatZipper(algo, mode);
+      byte[] src = readAllBytes(SAMPLE_TEXT_PATH);
+      byte[] dst = new byte[qzip.maxCompressedLength(src.length)];
+      int compressedSize = qzip.compress(src, dst);
+      qzip.setPassthrough(Passthrough.SAMPLE);
+      assertEquals(compressedSize, qzip.compress(src, dst));
+      assertTrue(compressedSize < src.length);
+    } catch (QatException | IllegalArgumentException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideModeAlgorithmParams")
+  public void testEstimate(Mode mode, Algorithm algo) throws IOException {
+    try {
+      qzip = new QatZipper(algo, mode);
+      ByteBuffer random = ByteBuffer.allocateDirect(256 * 1024);
+      random.put(getRandomBytes(random.capacity())).flip();
+      QatZipper.Estimate estimate = qzip.estimate(random);
+      assertEquals(0, random.position());
+      assertEquals(random.capacity(), estimate.length());
+      assertTrue(estimate.ratio() > 0.95);
+      assertTrue(estimate.cost() > 20);
+
+      byte[] text = readAllBytes(SAMPLE_TEXT_PATH);
+      estimate = qzip.estimate(ByteBuffer.wrap(text));
+      byte[] dst = new byte[qzip.maxCompressedLength(text.length)];
+      double actual = (double) qzip.compress(text, dst) / text.length;
+      assertTrue(estimate.ratio() < 0.8);
+      assertTrue(Math.abs(estimate.ratio() - actual) < 0.25);
+      assertTrue(estimate.cost() < 5);
+    } catch (QatException | IllegalArgumentException e) {
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testEstimateEmpty() {
+    qzip = new QatZipper();
+    try {
+      qzip.estimate(ByteBuffer.allocate(0));
+      fail("Failed to catch IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertTrue(true);
+    }
+  }
 }